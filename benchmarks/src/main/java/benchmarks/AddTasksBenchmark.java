@@ -0,0 +1,69 @@
+package benchmarks;
+
+import model.Project;
+import model.Task;
+import model.TaskBatch;
+import model.TaskPrio;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds {@value #ADDED} tasks to a project of {@code taskCount} tasks, one at a time and with one
+ * batch. Every iteration starts with a new project, and generates the tasks to add beforehand.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class AddTasksBenchmark {
+    static final int ADDED = 10_000;
+
+    @Param({"0", "100000"})
+    public int taskCount;
+
+    private Project project;
+    private final String[] descriptions = new String[ADDED];
+    private final TaskPrio[] prios = new TaskPrio[ADDED];
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        DataGenerator generator = new DataGenerator();
+        project = generator.manager(1, taskCount).getProjects().get(0);
+        for (int i = 0; i < ADDED; i++) {
+            descriptions[i] = generator.description(4);
+            prios[i] = TaskPrio.values()[generator.nextInt(TaskPrio.values().length)];
+        }
+    }
+
+    @Benchmark
+    public int addTasksOneByOne() {
+        for (int i = 0; i < ADDED; i++) {
+            project.addTask(descriptions[i], prios[i]);
+        }
+        return project.getTaskCount();
+    }
+
+    @Benchmark
+    public List<Task> addTasksInBatch() {
+        TaskBatch batch = project.batch();
+        for (int i = 0; i < ADDED; i++) {
+            batch.add(descriptions[i], prios[i]);
+        }
+        return batch.apply();
+    }
+}
@@ -0,0 +1,93 @@
+package benchmarks;
+
+import model.Project;
+import model.ProjectsManager;
+import model.TaskBatch;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.util.Random;
+
+/**
+ * Generates synthetic projects and tasks for the benchmarks. The same seed gives the same data,
+ * so results of different runs and releases are comparable.
+ * <p>
+ * Descriptions are a few words from a small vocabulary, priorities are uniform, and tasks are
+ * taken by one of {@value #USER_COUNT} users, named {@code user0} and up, or by nobody. A quarter
+ * of the tasks are in progress and a quarter done.
+ */
+final class DataGenerator {
+    static final long SEED = 42;
+    static final int USER_COUNT = 50;
+    static final String[] WORDS = {
+            "fix", "login", "page", "update", "docs", "release", "notes", "review", "design", "api",
+            "test", "deploy", "server", "client", "cache", "index", "search", "report", "export", "import",
+            "user", "profile", "settings", "email", "upload", "download", "backup", "restore", "audit", "build"
+    };
+
+    private final Random random;
+
+    DataGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    DataGenerator() {
+        this(SEED);
+    }
+
+    /**
+     * Creates a manager with the given number of tasks, spread evenly over the given number of projects.
+     */
+    ProjectsManager manager(int projectCount, int taskCount) {
+        ProjectsManager manager = new ProjectsManager();
+        for (int p = 0; p < projectCount; p++) {
+            Project project = manager.addProject(projectTitle(p), description(8));
+            int tasks = taskCount / projectCount + (p < taskCount % projectCount ? 1 : 0);
+            addTasks(project, tasks);
+        }
+        return manager;
+    }
+
+    void addTasks(Project project, int count) {
+        batch(project.batch(), count).apply();
+    }
+
+    /**
+     * Adds the given number of generated tasks to a batch.
+     * @return The batch.
+     */
+    TaskBatch batch(TaskBatch batch, int count) {
+        for (int i = 0; i < count; i++) {
+            String description = description(4);
+            TaskPrio prio = TaskPrio.values()[random.nextInt(TaskPrio.values().length)];
+            int user = random.nextInt(USER_COUNT + USER_COUNT / 2);
+            int state = random.nextInt(4);
+            batch.add(description, prio, state == 0 ? TaskState.IN_PROGRESS : state == 1 ? TaskState.DONE : TaskState.TO_DO,
+                    user < USER_COUNT ? user(user) : null);
+        }
+        return batch;
+    }
+
+    String description(int words) {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                description.append(' ');
+            }
+            description.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return description.toString();
+    }
+
+    int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    static String projectTitle(int index) {
+        return "Project " + index;
+    }
+
+    static String user(int index) {
+        return "user" + index;
+    }
+}
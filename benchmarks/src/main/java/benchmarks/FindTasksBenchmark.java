@@ -0,0 +1,101 @@
+package benchmarks;
+
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskKey;
+import model.TaskPrio;
+import model.matcher.AndMatcher;
+import model.matcher.ITaskMatcher;
+import model.matcher.NotDoneMatcher;
+import model.matcher.NotMatcher;
+import model.matcher.OrMatcher;
+import model.matcher.PrioMatcher;
+import model.matcher.TakenByMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Task queries on one project of {@code taskCount} tasks, with each kind of matcher. The
+ * cross-project query runs on the same number of tasks spread over projects of a thousand tasks each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class FindTasksBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int taskCount;
+
+    /**
+     * The matcher of {@link #findTasks}: {@code all}, {@code prio}, {@code notDone},
+     * {@code takenBy}, {@code and}, {@code or} or {@code not}.
+     */
+    @Param({"all", "prio", "notDone", "takenBy", "and", "or", "not"})
+    public String matcher;
+
+    private Project project;
+    private ProjectsManager manager;
+    private ITaskMatcher taskMatcher;
+    private TaskKey middle;
+
+    @Setup
+    public void setUp() {
+        DataGenerator generator = new DataGenerator();
+        project = generator.manager(1, taskCount).getProjects().get(0);
+        manager = generator.manager(Math.max(1, taskCount / 1000), taskCount);
+        taskMatcher = matcher(matcher);
+        List<Task> matching = project.findTasks(taskMatcher);
+        middle = matching.isEmpty() ? null : TaskKey.of(matching.get(matching.size() / 2));
+    }
+
+    static ITaskMatcher matcher(String name) {
+        return switch (name) {
+            case "all" -> ITaskMatcher.all();
+            case "prio" -> new PrioMatcher(TaskPrio.HIGH);
+            case "notDone" -> new NotDoneMatcher();
+            case "takenBy" -> new TakenByMatcher(DataGenerator.user(7));
+            case "and" -> new AndMatcher(new PrioMatcher(TaskPrio.HIGH), new NotDoneMatcher(),
+                    new TakenByMatcher(DataGenerator.user(7)));
+            case "or" -> new OrMatcher(new TakenByMatcher(DataGenerator.user(7)),
+                    new TakenByMatcher(DataGenerator.user(8)));
+            case "not" -> new NotMatcher(new PrioMatcher(TaskPrio.LOW));
+            default -> throw new IllegalArgumentException("Unknown matcher " + name);
+        };
+    }
+
+    @Benchmark
+    public List<Task> findTasks() {
+        return project.findTasks(taskMatcher);
+    }
+
+    /**
+     * A page of a hundred matching tasks from the middle of the project, resumed after a key.
+     */
+    @Benchmark
+    public List<Task> findTasksPageAfterKey() {
+        return project.findTasks(taskMatcher, middle, 100);
+    }
+
+    /**
+     * The first page of a hundred tasks matching across all projects of the manager.
+     */
+    @Benchmark
+    public List<Task> findTasksAcrossProjects() {
+        return manager.findTasks(taskMatcher, 0, 100);
+    }
+}
@@ -0,0 +1,84 @@
+package benchmarks;
+
+import io.MappedProjectStore;
+import io.ProjectsFileIO;
+import model.Project;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing and reading a projects file of {@code taskCount} tasks, in projects of a thousand tasks each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class PersistenceBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int taskCount;
+
+    private List<Project> projects;
+    private File writeFile;
+    private File readFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        projects = new DataGenerator().manager(Math.max(1, taskCount / 1000), taskCount).getProjects();
+        writeFile = File.createTempFile("projects-write", ".bin");
+        readFile = File.createTempFile("projects-read", ".bin");
+        ProjectsFileIO.serializeToFile(readFile, projects);
+    }
+
+    @TearDown
+    public void tearDown() {
+        writeFile.delete();
+        readFile.delete();
+    }
+
+    @Benchmark
+    public File serializeToFile() throws IOException {
+        ProjectsFileIO.serializeToFile(writeFile, projects);
+        return writeFile;
+    }
+
+    @Benchmark
+    public List<Project> deSerializeFromFile() throws IOException, ClassNotFoundException {
+        return ProjectsFileIO.deSerializeFromFile(readFile);
+    }
+
+    /**
+     * Writes and reads back the same projects.
+     */
+    @Benchmark
+    public List<Project> roundTrip() throws IOException, ClassNotFoundException {
+        ProjectsFileIO.serializeToFile(writeFile, projects);
+        return ProjectsFileIO.deSerializeFromFile(writeFile);
+    }
+
+    /**
+     * Opens the file without loading any tasks, as the application does at startup.
+     */
+    @Benchmark
+    public int openMappedStore() throws IOException {
+        try (MappedProjectStore store = MappedProjectStore.open(readFile)) {
+            return store.getProjects().size();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package benchmarks;
+
+import model.Project;
+import model.ProjectState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The aggregates of one project of {@code taskCount} tasks, which should not depend on the task count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class ProjectAggregatesBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int taskCount;
+
+    private Project project;
+
+    @Setup
+    public void setUp() {
+        project = new DataGenerator().manager(1, taskCount).getProjects().get(0);
+    }
+
+    @Benchmark
+    public ProjectState getProjectState() {
+        return project.getProjectState();
+    }
+
+    @Benchmark
+    public LocalDate getLastUpdated() {
+        return project.getLastUpdated();
+    }
+
+    @Benchmark
+    public int getTaskCount() {
+        return project.getTaskCount();
+    }
+}
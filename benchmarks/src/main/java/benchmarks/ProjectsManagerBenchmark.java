@@ -0,0 +1,65 @@
+package benchmarks;
+
+import model.Project;
+import model.ProjectsManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project lookups and additions on a manager holding {@code projectCount} projects without tasks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectsManagerBenchmark {
+    @Param({"1000", "100000"})
+    public int projectCount;
+
+    private ProjectsManager manager;
+    private DataGenerator generator;
+    private int nextTitle;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        generator = new DataGenerator();
+        manager = generator.manager(projectCount, 0);
+        nextTitle = projectCount;
+    }
+
+    /**
+     * Adds to a manager that grows over the iteration, starting at {@code projectCount} projects.
+     */
+    @Benchmark
+    public Project addProject() {
+        return manager.addProject(DataGenerator.projectTitle(nextTitle++), "Added by the benchmark");
+    }
+
+    @Benchmark
+    public Project getProjectById() {
+        return manager.getProjectById(1 + generator.nextInt(projectCount));
+    }
+
+    /**
+     * Looks up titles containing a digit. Every lookup checks all titles.
+     */
+    @Benchmark
+    public List<Project> findProjects() {
+        return manager.findProjects(Integer.toString(generator.nextInt(10)));
+    }
+}
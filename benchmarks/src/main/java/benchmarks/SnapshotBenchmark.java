@@ -0,0 +1,96 @@
+package benchmarks;
+
+import model.Project;
+import model.Task;
+import model.TaskSnapshot;
+import model.TaskState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Three threads change the states of the tasks of one project of {@code taskCount} tasks, while
+ * a fourth counts the done tasks of the project, walking all of them as a report would: once
+ * through a snapshot, and once through a copy of the task list. Each read locks the project
+ * only long enough to build the snapshot of the changes made since the last one, not while it
+ * walks the tasks, so the editors should go nearly as fast as without a reader.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class SnapshotBenchmark {
+    @Param({"1000", "100000"})
+    public int taskCount;
+
+    private Project project;
+    private List<Task> tasks;
+
+    @Setup
+    public void setUp() {
+        project = new DataGenerator().manager(1, taskCount).getProjects().get(0);
+        tasks = project.getTasks();
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(3)
+    public void editWhileSnapshotRead() {
+        edit();
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(1)
+    public int countDoneInSnapshot() {
+        int done = 0;
+        for (TaskSnapshot task : project.snapshot().getTasks()) {
+            if (task.getState() == TaskState.DONE) {
+                done++;
+            }
+        }
+        return done;
+    }
+
+    @Benchmark
+    @Group("taskList")
+    @GroupThreads(3)
+    public void editWhileTaskListRead() {
+        edit();
+    }
+
+    @Benchmark
+    @Group("taskList")
+    @GroupThreads(1)
+    public int countDoneInTaskList() {
+        int done = 0;
+        for (Task task : project.getTasks()) {
+            if (task.getState() == TaskState.DONE) {
+                done++;
+            }
+        }
+        return done;
+    }
+
+    private void edit() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Task task = tasks.get(random.nextInt(tasks.size()));
+        task.setState(TaskState.values()[random.nextInt(TaskState.values().length)]);
+    }
+}
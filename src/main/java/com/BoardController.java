@@ -0,0 +1,157 @@
+package com;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.fxml.FXML;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.SelectionMode;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import model.Project;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The controls of the task board. The views only show what the {@link BoardModel} puts in
+ * its lists: the list and table are virtualized, so they make cells for the visible rows only,
+ * however many tasks a project has. Columns cannot be sorted by clicking them, as that would
+ * sort on the FX thread; the board sorts on its worker instead.
+ */
+public class BoardController {
+    private static final String ANY_PRIO = "Any priority";
+
+    @FXML
+    private ListView<Project> projectList;
+    @FXML
+    private TextField searchField;
+    @FXML
+    private ChoiceBox<String> prioChoice;
+    @FXML
+    private TextField takenByField;
+    @FXML
+    private CheckBox notDoneCheck;
+    @FXML
+    private ChoiceBox<TaskOrder> orderChoice;
+    @FXML
+    private TableView<TaskRow> taskTable;
+    @FXML
+    private TableColumn<TaskRow, Integer> idColumn;
+    @FXML
+    private TableColumn<TaskRow, String> descriptionColumn;
+    @FXML
+    private TableColumn<TaskRow, TaskPrio> prioColumn;
+    @FXML
+    private TableColumn<TaskRow, TaskState> stateColumn;
+    @FXML
+    private TableColumn<TaskRow, String> takenByColumn;
+    @FXML
+    private TableColumn<TaskRow, LocalDate> lastUpdatedColumn;
+    @FXML
+    private TextField newTaskField;
+    @FXML
+    private ChoiceBox<TaskPrio> newTaskPrioChoice;
+    @FXML
+    private TextField userField;
+    @FXML
+    private Label statusLabel;
+
+    private BoardModel model;
+
+    @FXML
+    private void initialize() {
+        projectList.setCellFactory(list -> new ProjectCell());
+        column(idColumn, TaskRow::id);
+        column(descriptionColumn, TaskRow::description);
+        column(prioColumn, TaskRow::prio);
+        column(stateColumn, TaskRow::state);
+        column(takenByColumn, TaskRow::takenBy);
+        column(lastUpdatedColumn, TaskRow::lastUpdated);
+        taskTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+
+        prioChoice.getItems().add(ANY_PRIO);
+        for (TaskPrio prio : TaskPrio.values()) {
+            prioChoice.getItems().add(prio.name());
+        }
+        prioChoice.setValue(ANY_PRIO);
+        orderChoice.getItems().setAll(TaskOrder.values());
+        orderChoice.setValue(TaskOrder.PRIORITY);
+        newTaskPrioChoice.getItems().setAll(TaskPrio.values());
+        newTaskPrioChoice.setValue(TaskPrio.MEDIUM);
+    }
+
+    /**
+     * Shows the lists of a model, and passes the choices made in the controls on to it.
+     * @param model The model of the board, not started yet.
+     */
+    void setModel(BoardModel model) {
+        this.model = model;
+        projectList.setItems(model.getProjects());
+        taskTable.setItems(model.getTasks());
+        statusLabel.textProperty().bind(model.statusProperty());
+
+        projectList.getSelectionModel().selectedItemProperty()
+                .addListener((observable, old, selected) -> model.select(selected));
+        searchField.textProperty().addListener(observable -> updateFilter());
+        prioChoice.valueProperty().addListener(observable -> updateFilter());
+        takenByField.textProperty().addListener(observable -> updateFilter());
+        notDoneCheck.selectedProperty().addListener(observable -> updateFilter());
+        orderChoice.valueProperty().addListener((observable, old, order) -> model.setOrder(order));
+    }
+
+    @FXML
+    private void onAddTask() {
+        String description = newTaskField.getText().strip();
+        if (!description.isEmpty()) {
+            model.addTask(description, newTaskPrioChoice.getValue());
+            newTaskField.clear();
+        }
+    }
+
+    @FXML
+    private void onTake() {
+        String user = userField.getText().strip();
+        if (!user.isEmpty()) {
+            model.take(selectedRows(), user);
+        }
+    }
+
+    @FXML
+    private void onDone() {
+        model.setState(selectedRows(), TaskState.DONE);
+    }
+
+    private List<TaskRow> selectedRows() {
+        return List.copyOf(taskTable.getSelectionModel().getSelectedItems());
+    }
+
+    private void updateFilter() {
+        String prio = prioChoice.getValue();
+        model.setFilter(new TaskFilter(ANY_PRIO.equals(prio) ? null : TaskPrio.valueOf(prio),
+                notDoneCheck.isSelected(), takenByField.getText(), searchField.getText()));
+    }
+
+    private static <T> void column(TableColumn<TaskRow, T> column, Function<TaskRow, T> value) {
+        column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(value.apply(cell.getValue())));
+        column.setSortable(false);
+    }
+
+    /**
+     * Shows a project with its number of tasks, which the project knows without loading them.
+     */
+    private static class ProjectCell extends ListCell<Project> {
+        @Override
+        protected void updateItem(Project project, boolean empty) {
+            super.updateItem(project, empty);
+            setText(empty || project == null ? null
+                    : project.getName() + " (" + project.getTaskCount() + " tasks, " + project.getProjectState() + ")");
+        }
+    }
+}
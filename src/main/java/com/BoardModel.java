@@ -0,0 +1,362 @@
+package com;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import model.Project;
+import model.ProjectsEvent;
+import model.ProjectsEventStream;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The data behind the task board: the projects, and the tasks of the selected project that
+ * pass the filter, in the chosen order.
+ * <p>
+ * Querying, filtering and sorting run on a worker thread of the board, which keeps its own
+ * copy of the lists the views show. Changes reach the board through a {@link ProjectsEventStream},
+ * which the worker reads every {@value #REFRESH_MILLIS} ms; it applies the changes to its copy
+ * and hands the FX thread the few rows to insert, replace or remove, so a change does not
+ * reload the table. Only selecting a project or changing the filter reloads it.
+ * <p>
+ * The FX thread only applies edits to the observable lists, whose order is that of the
+ * worker's copy, since the edits are applied in the order they were made.
+ */
+final class BoardModel implements AutoCloseable {
+    static final long REFRESH_MILLIS = 50;
+    private static final int MAX_EVENTS = 4096;
+
+    private final ProjectsManager manager;
+    private final ProjectsEventStream events;
+    private final ProjectsEventStream.Subscription subscription;
+    private final ScheduledExecutorService worker;
+    private final ObservableList<Project> projects = FXCollections.observableArrayList();
+    private final ObservableList<TaskRow> tasks = FXCollections.observableArrayList();
+    private final ReadOnlyStringWrapper status = new ReadOnlyStringWrapper("");
+    private final AtomicReference<TaskFilter> pendingFilter = new AtomicReference<>();
+
+    // owned by the worker thread
+    private final List<Project> shownProjects = new ArrayList<>();
+    private final List<TaskRow> shownTasks = new ArrayList<>();
+    private final Map<Task, TaskRow> rows = new IdentityHashMap<>();
+    private final List<ProjectsEvent> batch = new ArrayList<>();
+    private Project project;
+    private TaskFilter filter = TaskFilter.NONE;
+    private TaskOrder order = TaskOrder.PRIORITY;
+
+    BoardModel(ProjectsManager manager) {
+        this.manager = manager;
+        this.events = new ProjectsEventStream(manager);
+        this.subscription = events.subscribe();
+        this.worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "board-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads the projects and starts following the changes.
+     */
+    void start() {
+        run(this::reloadProjects);
+        worker.scheduleWithFixedDelay(() -> report(this::applyChanges), REFRESH_MILLIS, REFRESH_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    ObservableList<Project> getProjects() {
+        return projects;
+    }
+
+    ObservableList<TaskRow> getTasks() {
+        return tasks;
+    }
+
+    ReadOnlyStringProperty statusProperty() {
+        return status.getReadOnlyProperty();
+    }
+
+    /**
+     * Shows the tasks of a project, loading them on the worker thread.
+     * @param selected The project, or {@code null} to show no tasks.
+     */
+    void select(Project selected) {
+        run(() -> {
+            project = selected;
+            reloadTasks();
+        });
+    }
+
+    /**
+     * Filters the tasks again. While the worker is busy, filters set meanwhile are coalesced,
+     * so typing a search text runs one query for the latest text.
+     */
+    void setFilter(TaskFilter newFilter) {
+        if (pendingFilter.getAndSet(newFilter) == null) {
+            run(() -> {
+                filter = pendingFilter.getAndSet(null);
+                reloadTasks();
+            });
+        }
+    }
+
+    /**
+     * Sorts the tasks shown in another order, without querying them again.
+     */
+    void setOrder(TaskOrder newOrder) {
+        run(() -> {
+            order = newOrder;
+            shownTasks.sort(order.comparator());
+            showAllTasks();
+        });
+    }
+
+    void addTask(String description, TaskPrio prio) {
+        run(() -> {
+            if (project == null) {
+                showStatus("Select a project first");
+            } else {
+                project.addTask(description, prio);
+            }
+        });
+    }
+
+    void setState(List<TaskRow> selected, TaskState state) {
+        List<TaskRow> changed = List.copyOf(selected);
+        run(() -> changed.forEach(row -> row.task().setState(state)));
+    }
+
+    /**
+     * Takes the selected tasks for a user; tasks someone else has taken are left alone.
+     */
+    void take(List<TaskRow> selected, String user) {
+        List<TaskRow> changed = List.copyOf(selected);
+        run(() -> {
+            int taken = 0;
+            for (TaskRow row : changed) {
+                if (user.equals(row.task().claim(user))) {
+                    taken++;
+                }
+            }
+            showStatus(taken + " of " + changed.size() + " tasks taken by " + user);
+        });
+    }
+
+    @Override
+    public void close() {
+        events.close();
+        worker.shutdownNow();
+    }
+
+    /**
+     * Runs an action on the worker thread.
+     */
+    private void run(Runnable action) {
+        worker.execute(() -> report(action));
+    }
+
+    /**
+     * Runs an action, showing why it failed instead of throwing, so the worker keeps going.
+     */
+    private void report(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            showStatus("Error: " + e.getMessage());
+        }
+    }
+
+    private void reloadProjects() {
+        shownProjects.clear();
+        shownProjects.addAll(manager.getProjects());
+        List<Project> all = List.copyOf(shownProjects);
+        Platform.runLater(() -> projects.setAll(all));
+        if (project != null && !shownProjects.contains(project)) {
+            project = null;
+        }
+        reloadTasks();
+    }
+
+    private void reloadTasks() {
+        shownTasks.clear();
+        rows.clear();
+        if (project != null) {
+            showStatus("Loading " + project.getName() + "...");
+            for (Task task : project.findTasks(filter.matcher())) {
+                TaskRow row = TaskRow.of(task);
+                if (filter.test(row)) {
+                    shownTasks.add(row);
+                    rows.put(task, row);
+                }
+            }
+            // the rows are sorted by the values they hold, which may be newer than those
+            // findTasks sorted by; in priority order the rows are sorted already, or nearly
+            shownTasks.sort(order.comparator());
+        }
+        showAllTasks();
+    }
+
+    private void showAllTasks() {
+        List<TaskRow> all = new ArrayList<>(shownTasks);
+        Platform.runLater(() -> tasks.setAll(all));
+        showTaskCount();
+    }
+
+    /**
+     * Reads the events published since the last call, and hands the resulting edits to the
+     * FX thread in one go. Falls back to reloading everything if events were missed.
+     */
+    private void applyChanges() {
+        List<Edit<TaskRow>> taskEdits = new ArrayList<>();
+        List<Edit<Project>> projectEdits = new ArrayList<>();
+        Set<Project> changedProjects = new LinkedHashSet<>();
+        try {
+            int count;
+            while ((count = subscription.poll(batch, MAX_EVENTS)) > 0) {
+                for (ProjectsEvent event : batch) {
+                    apply(event, taskEdits, projectEdits, changedProjects);
+                }
+                batch.clear();
+                if (count < MAX_EVENTS) {
+                    break;
+                }
+            }
+        } catch (IllegalStateException e) {
+            batch.clear();
+            subscription.resync();
+            reloadProjects();
+            return;
+        }
+        // a project's cell shows its task counts, so refresh the cells of changed projects
+        for (Project changed : changedProjects) {
+            int index = shownProjects.indexOf(changed);
+            if (index >= 0) {
+                projectEdits.add(new Edit<>(Edit.Kind.SET, index, changed));
+            }
+        }
+        if (!projectEdits.isEmpty()) {
+            Platform.runLater(() -> Edit.applyAll(projectEdits, projects));
+        }
+        if (taskEdits.size() > shownTasks.size() / 4 + 64) {
+            // cheaper to replace the whole list than to shift it for every edit
+            showAllTasks();
+        } else if (!taskEdits.isEmpty()) {
+            Platform.runLater(() -> Edit.applyAll(taskEdits, tasks));
+            showTaskCount();
+        }
+    }
+
+    private void apply(ProjectsEvent event, List<Edit<TaskRow>> taskEdits, List<Edit<Project>> projectEdits,
+                       Set<Project> changedProjects) {
+        Project eventProject = event.getProject();
+        switch (event.getType()) {
+            case PROJECT_ADDED -> {
+                if (!shownProjects.contains(eventProject)) {
+                    shownProjects.add(eventProject);
+                    projectEdits.add(new Edit<>(Edit.Kind.ADD, shownProjects.size() - 1, eventProject));
+                }
+            }
+            case PROJECT_REMOVED -> {
+                int index = shownProjects.indexOf(eventProject);
+                if (index >= 0) {
+                    shownProjects.remove(index);
+                    projectEdits.add(new Edit<>(Edit.Kind.REMOVE, index, null));
+                }
+                changedProjects.remove(eventProject);
+                if (eventProject == project) {
+                    project = null;
+                    taskEdits.clear();
+                    reloadTasks();
+                }
+            }
+            default -> {
+                changedProjects.add(eventProject);
+                if (eventProject == project) {
+                    applyTaskEvent(event, taskEdits);
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts, replaces or removes the row of the task of an event, keeping the rows in order.
+     * An event for a task that is already shown replaces its row, so events of changes the
+     * last reload already saw do no harm.
+     */
+    private void applyTaskEvent(ProjectsEvent event, List<Edit<TaskRow>> edits) {
+        Comparator<TaskRow> comparator = order.comparator();
+        TaskRow old = rows.get(event.getTask());
+        int oldIndex = old == null ? -1 : Collections.binarySearch(shownTasks, old, comparator);
+        TaskRow row = event.getType() == ProjectsEvent.Type.TASK_REMOVED ? null : TaskRow.of(event);
+        if (row != null && !filter.test(row)) {
+            row = null;
+        }
+        if (oldIndex >= 0) {
+            int found = row == null ? -1 : Collections.binarySearch(shownTasks, row, comparator);
+            // the new row sorts equal to the old one, or between its neighbours
+            if (row != null && (found >= 0 || -found - 1 == oldIndex || -found - 1 == oldIndex + 1)) {
+                shownTasks.set(oldIndex, row);
+                rows.put(row.task(), row);
+                edits.add(new Edit<>(Edit.Kind.SET, oldIndex, row));
+                return;
+            }
+            shownTasks.remove(oldIndex);
+            rows.remove(old.task());
+            edits.add(new Edit<>(Edit.Kind.REMOVE, oldIndex, null));
+        }
+        if (row != null) {
+            int index = -Collections.binarySearch(shownTasks, row, comparator) - 1;
+            shownTasks.add(index, row);
+            rows.put(row.task(), row);
+            edits.add(new Edit<>(Edit.Kind.ADD, index, row));
+        }
+    }
+
+    private void showTaskCount() {
+        Project shown = project;
+        if (shown == null) {
+            showStatus(shownProjects.size() + " projects");
+        } else {
+            showStatus(String.format("%,d of %,d tasks of %s", shownTasks.size(), shown.getTaskCount(),
+                    shown.getName()));
+        }
+    }
+
+    private void showStatus(String text) {
+        Platform.runLater(() -> status.set(text));
+    }
+
+    /**
+     * An insertion, replacement or removal of one item of a list.
+     */
+    private record Edit<T>(Kind kind, int index, T item) {
+        enum Kind { ADD, SET, REMOVE }
+
+        static <T> void applyAll(List<Edit<T>> edits, List<T> list) {
+            for (Edit<T> edit : edits) {
+                switch (edit.kind) {
+                    case ADD -> list.add(edit.index, edit.item);
+                    case SET -> list.set(edit.index, edit.item);
+                    case REMOVE -> list.remove(edit.index);
+                }
+            }
+        }
+    }
+}
@@ -1,23 +1,53 @@
 package com;
 
+import io.ProjectsStorage;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import model.ProjectsManager;
 
-import java.io.IOException;
+import java.io.File;
 
+/**
+ * The task board: the projects and their tasks, stored like the console application stores them.
+ */
 public class HelloApplication extends Application {
+    private static final String FILE_NAME = "project.ser";
+
+    private ProjectsStorage storage;
+    private BoardModel model;
+
     @Override
-    public void start(Stage stage) throws IOException {
-        FXMLLoader fxmlLoader = new FXMLLoader(HelloApplication.class.getResource("hello-view.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 320, 240);
-        stage.setTitle("Hello!");
+    public void start(Stage stage) throws Exception {
+        ProjectsManager manager = new ProjectsManager();
+        storage = ProjectsStorage.open(new File(FILE_NAME), manager);
+        model = new BoardModel(manager);
+
+        FXMLLoader fxmlLoader = new FXMLLoader(HelloApplication.class.getResource("board-view.fxml"));
+        Scene scene = new Scene(fxmlLoader.load(), 1000, 640);
+        BoardController controller = fxmlLoader.getController();
+        controller.setModel(model);
+        model.start();
+
+        stage.setTitle("Projects");
         stage.setScene(scene);
         stage.show();
     }
 
+    @Override
+    public void stop() throws Exception {
+        if (model != null) {
+            model.close();
+        }
+        // fold the journal into the data file; close waits for the fold
+        if (storage != null) {
+            storage.compact();
+            storage.close();
+        }
+    }
+
     public static void main(String[] args) {
         launch();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,62 @@
+package com;
+
+import model.TaskPrio;
+import model.TaskState;
+import model.matcher.AndMatcher;
+import model.matcher.ITaskMatcher;
+import model.matcher.NotDoneMatcher;
+import model.matcher.PrioMatcher;
+import model.matcher.TakenByMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The filter of the task table.
+ * @param prio    The priority of the tasks shown, or {@code null} for all.
+ * @param notDone Whether only tasks that are not done are shown.
+ * @param takenBy The user whose tasks are shown, or {@code null} for all.
+ * @param text    Text the description of the tasks shown contains, ignoring case; empty for all.
+ */
+record TaskFilter(TaskPrio prio, boolean notDone, String takenBy, String text) {
+    static final TaskFilter NONE = new TaskFilter(null, false, null, "");
+
+    TaskFilter {
+        takenBy = takenBy == null || takenBy.isBlank() ? null : takenBy.strip();
+        text = text == null ? "" : text.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return The matcher that selects the tasks to show from the task indexes; the text is
+     *         not indexed, it is checked by {@link #test}.
+     */
+    ITaskMatcher matcher() {
+        List<ITaskMatcher> matchers = new ArrayList<>();
+        if (prio != null) {
+            matchers.add(new PrioMatcher(prio));
+        }
+        if (takenBy != null) {
+            matchers.add(new TakenByMatcher(takenBy));
+        }
+        if (notDone) {
+            matchers.add(new NotDoneMatcher());
+        }
+        return switch (matchers.size()) {
+            case 0 -> ITaskMatcher.all();
+            case 1 -> matchers.get(0);
+            default -> new AndMatcher(matchers.toArray(new ITaskMatcher[0]));
+        };
+    }
+
+    /**
+     * @return Whether the row is shown.
+     */
+    boolean test(TaskRow row) {
+        return (prio == null || row.prio() == prio)
+                && (takenBy == null || Objects.equals(row.takenBy(), takenBy))
+                && (!notDone || row.state() != TaskState.DONE)
+                && (text.isEmpty() || row.description().toLowerCase(Locale.ROOT).contains(text));
+    }
+}
@@ -0,0 +1,34 @@
+package com;
+
+import java.util.Comparator;
+
+/**
+ * The orders the task table can be sorted in. Every order ends with the task ID, so no two
+ * rows compare equal and a row can be found by binary search.
+ */
+enum TaskOrder {
+    PRIORITY("Priority", Comparator.comparing(TaskRow::prio).thenComparing(TaskRow::description)),
+    LAST_UPDATED("Last updated", Comparator.comparing(TaskRow::lastUpdated).reversed()),
+    STATE("State", Comparator.comparing(TaskRow::state).thenComparing(TaskRow::prio)),
+    TAKEN_BY("Taken by", Comparator.comparing(TaskRow::takenBy, Comparator.nullsLast(Comparator.naturalOrder())));
+
+    private final String label;
+    private final Comparator<TaskRow> comparator;
+
+    TaskOrder(String label, Comparator<TaskRow> comparator) {
+        this.label = label;
+        this.comparator = comparator.thenComparingInt(TaskRow::id);
+    }
+
+    /**
+     * @return The comparator of the rows.
+     */
+    Comparator<TaskRow> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
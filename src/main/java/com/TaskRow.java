@@ -0,0 +1,30 @@
+package com;
+
+import model.ProjectsEvent;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.time.LocalDate;
+
+/**
+ * A row of the task table: the values of a task when the row was made. Tasks are changed by
+ * other threads, so the table shows snapshots, and a change replaces the row of its task.
+ */
+record TaskRow(Task task, int id, String description, TaskPrio prio, TaskState state, String takenBy,
+               LocalDate lastUpdated) {
+
+    static TaskRow of(Task task) {
+        return new TaskRow(task, task.getId(), task.getDescription(), task.getPrio(), task.getState(),
+                task.getTakenBy(), task.getLastUpdated());
+    }
+
+    /**
+     * @param event A task event, whose values are newer than or as new as those of earlier events.
+     */
+    static TaskRow of(ProjectsEvent event) {
+        Task task = event.getTask();
+        return new TaskRow(task, task.getId(), task.getDescription(), event.getPrio(), event.getState(),
+                event.getTakenBy(), task.getLastUpdated());
+    }
+}
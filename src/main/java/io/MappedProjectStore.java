@@ -0,0 +1,290 @@
+package io;
+
+import metrics.Metrics;
+import metrics.Operation;
+import model.Project;
+import model.ProjectSnapshot;
+import model.TaskLoader;
+import model.TaskSnapshot;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A view of a projects file that loads tasks on demand.
+ * Opening the store reads only the header and the project index, and creates the projects
+ * without their tasks. The segment holding the tasks of a project is read the first time
+ * the project's tasks are used, so startup time does not grow with the number of tasks, and
+ * projects whose tasks are never used keep only their title and description in memory.
+ * <p>
+ * A store opened for writing saves changes incrementally with {@link #commit}: only the
+ * segments of dirty projects are appended to the file, followed by an index of the changed
+ * projects that links to the previous index, and the header is then switched to the new index. Until that single write of the index offset the
+ * file still holds the previous index and segments, so a failed commit loses nothing.
+ * Segments are never overwritten, so other stores reading the same file are not affected.
+ * <p>
+ * The store must stay open as long as projects with unloaded tasks are in use, and is
+ * closed when the application exits, after the projects have been saved.
+ */
+public class MappedProjectStore implements Closeable {
+    /**
+     * The most indexes linked to each other, after which a commit writes a complete index, so
+     * opening the file does not read ever more of them.
+     */
+    private static final int MAX_INDEX_LINKS = 16;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ProjectsBinaryFormat.Schema schema;
+    private int journalGeneration;
+    private final List<Project> projects;
+    private final Set<Integer> indexed;
+    private long indexOffset;
+    private int indexLength;
+    private int indexLinks;
+    private long indexChainLength;
+
+    private MappedProjectStore(File file, FileChannel channel, ProjectsBinaryFormat.Schema schema,
+                               long indexOffset, ProjectsBinaryFormat.Index index) {
+        this.file = file;
+        this.channel = channel;
+        this.schema = schema;
+        this.journalGeneration = index.journalGeneration();
+        this.projects = new ArrayList<>(index.entries().size());
+        this.indexed = new HashSet<>();
+        this.indexOffset = indexOffset;
+        this.indexLength = index.length();
+        this.indexLinks = index.links();
+        this.indexChainLength = index.chainLength();
+        for (ProjectsBinaryFormat.IndexEntry entry : index.entries()) {
+            indexed.add(entry.id());
+            projects.add(Project.restore(entry.id(), entry.title(), entry.description(), entry.created(),
+                    entry.nextTaskId(), new Segment(entry.offset(), entry.length(), entry.taskCount()), entry.summary()));
+        }
+    }
+
+    /**
+     * Opens a projects file in the current binary format.
+     * Files in the legacy or an older binary format must first be converted with
+     * {@link ProjectsFileIO#migrateLegacyFile(File)}.
+     * @throws IOException if the file cannot be read or is not in the current format.
+     */
+    public static MappedProjectStore open(File file) throws IOException {
+        return open(file, false);
+    }
+
+    /**
+     * Opens a projects file in the current binary format, for reading or also for {@link #commit}.
+     * @throws IOException if the file cannot be opened or is not in the current format.
+     */
+    public static MappedProjectStore open(File file, boolean writable) throws IOException {
+        long start = Metrics.start();
+        FileChannel channel = writable
+                ? FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ProjectsBinaryFormat.Header header = ProjectsBinaryFormat.readHeader(new BinaryInput(channel));
+            if (header.version() != ProjectsBinaryFormat.VERSION) {
+                throw new IOException("Projects file version " + header.version() + " must be converted first");
+            }
+            return new MappedProjectStore(file, channel, header.schema(), header.indexOffset(),
+                    ProjectsBinaryFormat.readIndex(channel, header));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        } finally {
+            Metrics.record(Operation.OPEN_STORE, start);
+        }
+    }
+
+    /**
+     * @return The projects of the file, with their tasks not yet loaded.
+     */
+    public List<Project> getProjects() {
+        return Collections.unmodifiableList(projects);
+    }
+
+    /**
+     * @return The first journal generation whose changes are not in the file.
+     */
+    public int getJournalGeneration() {
+        return journalGeneration;
+    }
+
+    /**
+     * Saves the given projects to the file of this store, writing only what has changed.
+     * Projects of this store that are not dirty keep their segments, the others get a new
+     * segment appended to the file. Then an index of the new segments and removed projects is
+     * appended, linked to the previous index, or a complete one once {@value #MAX_INDEX_LINKS}
+     * indexes are linked or most projects changed. The file is forced to disk before and after
+     * the header is switched to the new index. Afterwards the saved
+     * projects load their tasks from their segments in this file, and are no longer dirty
+     * unless they changed while they were saved: each project is saved as of its snapshot.
+     * <p>
+     * Appending stops paying off when most of the file holds segments no index refers to, or
+     * indexes that are no longer linked.
+     * The same holds for a file written with other enum constants, since new segments store
+     * the ordinals of the current ones. In these cases nothing is written and {@code false}
+     * returned, and the caller should rewrite the file with {@link ProjectsFileIO#serializeToFile}.
+     * @param projects          The projects to save, replacing those in the file.
+     * @param journalGeneration The first journal generation whose changes are not in the projects.
+     * @return {@code true} if the projects were saved.
+     */
+    public synchronized boolean commit(List<Project> projects, int journalGeneration) throws IOException {
+        long start = Metrics.start();
+        try {
+            return commitProjects(projects, journalGeneration);
+        } finally {
+            Metrics.record(Operation.COMMIT_STORE, start);
+        }
+    }
+
+    private boolean commitProjects(List<Project> projects, int journalGeneration) throws IOException {
+        if (!schema.isCurrent()) {
+            return false;
+        }
+        long fileSize = channel.size();
+        long reused = 0;
+        for (Project project : projects) {
+            if (isReusable(project)) {
+                reused += ((Segment) project.getTaskLoader()).length;
+            }
+        }
+        // the linked indexes are in use, like the segments of the unchanged projects
+        if (fileSize - reused - indexChainLength > fileSize / 2) {
+            return false;
+        }
+
+        List<ProjectsBinaryFormat.IndexEntry> entries = new ArrayList<>(projects.size());
+        List<ProjectsBinaryFormat.IndexEntry> changed = new ArrayList<>();
+        Set<Integer> removed = new HashSet<>(indexed);
+        List<Segment> segments = new ArrayList<>(projects.size());
+        List<ProjectSnapshot> snapshots = new ArrayList<>(projects.size());
+        channel.position(fileSize);
+        long indexOffset;
+        int indexLength;
+        boolean complete;
+        try (BinaryOutput out = new BinaryOutput(channel)) {
+            for (Project project : projects) {
+                // the snapshot before the dirty flag: a project that is not dirty is stored as of the snapshot
+                ProjectSnapshot snapshot = project.snapshot();
+                boolean reusable = isReusable(project);
+                Segment segment;
+                if (reusable) {
+                    segment = (Segment) project.getTaskLoader();
+                } else {
+                    long offset = fileSize + out.position();
+                    Collection<TaskSnapshot> tasks = snapshot.getTasks();
+                    ProjectsBinaryFormat.writeTasks(out, tasks);
+                    segment = new Segment(offset, (int) (fileSize + out.position() - offset), tasks.size());
+                }
+                segments.add(segment);
+                snapshots.add(snapshot);
+                ProjectsBinaryFormat.IndexEntry entry = new ProjectsBinaryFormat.IndexEntry(project.getId(),
+                        project.getName(), project.getDescription(), project.getCreated(), snapshot.getNextTaskId(),
+                        segment.taskCount, segment.offset, segment.length, snapshot.getSummary());
+                entries.add(entry);
+                // a reused segment is that of the current index entry, which is unchanged as well
+                if (!reusable || !removed.contains(project.getId())) {
+                    changed.add(entry);
+                }
+                removed.remove(project.getId());
+            }
+            indexOffset = fileSize + out.position();
+            complete = indexLinks >= MAX_INDEX_LINKS || 2 * (changed.size() + removed.size()) >= entries.size();
+            if (complete) {
+                ProjectsBinaryFormat.writeIndex(out, journalGeneration, 0, 0, entries, List.of());
+            } else {
+                ProjectsBinaryFormat.writeIndex(out, journalGeneration, this.indexOffset, this.indexLength, changed, removed);
+            }
+            indexLength = (int) (fileSize + out.position() - indexOffset);
+        }
+        channel.force(true);
+        ProjectsBinaryFormat.writeIndexOffset(channel, indexOffset);
+        channel.force(true);
+
+        this.indexOffset = indexOffset;
+        this.indexLength = indexLength;
+        this.indexLinks = complete ? 1 : indexLinks + 1;
+        this.indexChainLength = (complete ? 0 : indexChainLength) + indexLength;
+        this.journalGeneration = journalGeneration;
+        indexed.clear();
+        for (Project project : projects) {
+            indexed.add(project.getId());
+        }
+        for (int i = 0; i < projects.size(); i++) {
+            projects.get(i).markStored(segments.get(i), snapshots.get(i));
+        }
+        return true;
+    }
+
+    private boolean isReusable(Project project) {
+        return !project.isDirty() && project.getTaskLoader() instanceof Segment segment && segment.store() == this;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * The stored tasks of one project, loaded into the project on first use.
+     */
+    final class Segment implements TaskLoader {
+        private final long offset;
+        private final int length;
+        private final int taskCount;
+
+        private Segment(long offset, int length, int taskCount) {
+            this.offset = offset;
+            this.length = length;
+            this.taskCount = taskCount;
+        }
+
+        @Override
+        public void loadTasks(Project project) throws IOException {
+            ProjectsBinaryFormat.readTasks(new BinaryInput(bytes()), project, schema);
+        }
+
+        /**
+         * Reads the stored tasks one at a time, without adding them to a project.
+         */
+        void visitTasks(ProjectsBinaryFormat.TaskVisitor visitor) throws IOException {
+            ProjectsBinaryFormat.readTasks(new BinaryInput(bytes()), schema, visitor);
+        }
+
+        /**
+         * Reads the segment from the file. It is read rather than mapped, since a mapping is only
+         * released when the garbage collector frees it.
+         */
+        ByteBuffer bytes() throws IOException {
+            return ProjectsBinaryFormat.readSegment(channel, offset, length, null);
+        }
+
+        int taskCount() {
+            return taskCount;
+        }
+
+        MappedProjectStore store() {
+            return MappedProjectStore.this;
+        }
+
+        boolean hasCurrentSchema() {
+            return schema.isCurrent();
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package io;
+
+import model.Project;
+import model.ProjectSnapshot;
+import model.ProjectSummary;
+import model.TaskBatch;
+import model.TaskPrio;
+import model.TaskSnapshot;
+import model.TaskState;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The versioned binary file format for lists of projects.
+ * <p>
+ * A file starts with a header: the magic number {@code "PRJB"}, the format version, the file
+ * offset of the project index, and the schema of the enums, as the names of all
+ * {@code TaskState} and {@code TaskPrio} constants. Tasks store enum ordinals, which are
+ * mapped back through the names, so reordering or adding enum constants does not break old files.
+ * <p>
+ * The header is followed by one segment per project, holding its tasks, and then by the
+ * project index. The index starts with the journal generation of the file: the file holds all
+ * changes journaled in earlier generations, see {@link ProjectsJournal}. It then lists, per
+ * project, its fields, the offset and length of its segment, and its summary: the last update
+ * date and the number of tasks per state and priority, in schema order. So projects can be
+ * read without their tasks, answer their aggregates, and load the tasks later, see
+ * {@link MappedProjectStore}.
+ * <p>
+ * An index may also hold only the entries that changed since a previous index: it then links
+ * to that index by its offset and length, and lists the IDs of the projects removed since.
+ * The entries of an index replace those with the same ID in the index it links to, and
+ * entries for new projects follow the others. A file written at once has a single index;
+ * {@link MappedProjectStore#commit} appends linked ones.
+ * <p>
+ * A segment holds a string table with the distinct {@code takenBy} values of its tasks, and the
+ * tasks. A task refers to its {@code takenBy} value by position in the table, {@code 0} meaning
+ * not taken. IDs and lengths are varints, dates are epoch days, and the last update date is
+ * stored as a difference to the creation date.
+ * <p>
+ * Version 1 files, which store each project with its tasks and have no index, version 2
+ * files, which have no journal generation, version 3 files, which have no project summaries,
+ * and version 4 files, whose index cannot link to a previous one, are still read.
+ */
+final class ProjectsBinaryFormat {
+    static final int MAGIC = 0x50524A42; // "PRJB"
+    static final int VERSION = 5;
+    static final int INDEX_OFFSET_POSITION = 5;
+
+    /**
+     * Writes the header, a segment for each project and the index to the channel, which must
+     * be positioned at the start of an empty file. The stored tasks of projects opened from a
+     * {@link MappedProjectStore} that are not dirty are copied without encoding them again.
+     * Each project is written as of its current snapshot, so projects can change meanwhile.
+     * @param journalGeneration The first journal generation whose changes are not in the projects.
+     */
+    static void write(List<Project> projects, FileChannel channel, int journalGeneration) throws IOException {
+        List<IndexEntry> entries = new ArrayList<>(projects.size());
+        long indexOffset;
+        try (BinaryOutput out = new BinaryOutput(channel)) {
+            writeHeader(out);
+            for (Project project : projects) {
+                long offset = out.position();
+                int taskCount;
+                // the snapshot before the dirty flag: a project that is not dirty is stored as of the snapshot
+                ProjectSnapshot snapshot = project.snapshot();
+                if (!project.isDirty() && project.getTaskLoader() instanceof MappedProjectStore.Segment segment
+                        && segment.hasCurrentSchema()) {
+                    out.writeBytes(segment.bytes());
+                    taskCount = segment.taskCount();
+                } else {
+                    Collection<TaskSnapshot> tasks = snapshot.getTasks();
+                    writeTasks(out, tasks);
+                    taskCount = tasks.size();
+                }
+                entries.add(new IndexEntry(project.getId(), project.getName(), project.getDescription(),
+                        project.getCreated(), snapshot.getNextTaskId(), taskCount,
+                        offset, (int) (out.position() - offset), snapshot.getSummary()));
+            }
+            indexOffset = out.position();
+            writeIndex(out, journalGeneration, 0, 0, entries, List.of());
+        }
+        writeIndexOffset(channel, indexOffset);
+    }
+
+    /**
+     * Reads all projects and their tasks from the channel.
+     * @throws IOException if the input is not in this format, or is of an unknown version.
+     */
+    static List<Project> read(FileChannel channel) throws IOException {
+        BinaryInput in = new BinaryInput(channel);
+        Header header = readHeader(in);
+        if (header.version() == 1) {
+            int count = in.readVarInt();
+            List<Project> projects = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                projects.add(readVersion1Project(in, header.schema()));
+            }
+            return projects;
+        }
+        List<IndexEntry> entries = readIndex(channel, header).entries();
+        List<Project> projects = new ArrayList<>(entries.size());
+        ByteBuffer segment = null;
+        for (IndexEntry entry : entries) {
+            segment = readSegment(channel, entry.offset(), entry.length(), segment);
+            Project project = entry.restore();
+            readTasks(new BinaryInput(segment), project, header.schema());
+            if (entry.summary() != null) {
+                // after the tasks, whose dates do not show a later removal
+                project.restoreLastUpdated(entry.summary().getLastUpdated());
+            }
+            projects.add(project);
+        }
+        return projects;
+    }
+
+    /**
+     * Reads a segment into a heap buffer, rather than mapping it, so reading many segments
+     * does not leave a mapping per segment until the garbage collector frees them.
+     * @param reuse A buffer to read into if it is large enough, or {@code null}.
+     * @return The buffer holding the segment.
+     */
+    static ByteBuffer readSegment(FileChannel channel, long offset, int length, ByteBuffer reuse) throws IOException {
+        ByteBuffer buffer = reuse != null && reuse.capacity() >= length
+                ? reuse.clear().limit(length) : ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Segment at " + offset + " ends past the end of the file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    static void writeHeader(BinaryOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeVarInt(VERSION);
+        out.writeLong(0); // index offset, written when the index is
+        writeSchema(out);
+    }
+
+    /**
+     * Writes the names of the current enum constants, in ordinal order.
+     */
+    static void writeSchema(BinaryOutput out) throws IOException {
+        out.writeVarInt(TaskState.values().length);
+        for (TaskState state : TaskState.values()) {
+            out.writeString(state.name());
+        }
+        out.writeVarInt(TaskPrio.values().length);
+        for (TaskPrio prio : TaskPrio.values()) {
+            out.writeString(prio.name());
+        }
+    }
+
+    static Header readHeader(BinaryInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a binary projects file");
+        }
+        int version = in.readVarInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported projects file version " + version);
+        }
+        long indexOffset = version >= 2 ? in.readLong() : -1;
+        return new Header(version, indexOffset, readSchema(in));
+    }
+
+    static Schema readSchema(BinaryInput in) throws IOException {
+        TaskState[] states = new TaskState[in.readVarInt()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = TaskState.valueOf(in.readString());
+        }
+        TaskPrio[] prios = new TaskPrio[in.readVarInt()];
+        for (int i = 0; i < prios.length; i++) {
+            prios[i] = TaskPrio.valueOf(in.readString());
+        }
+        return new Schema(states, prios);
+    }
+
+    static void writeIndexOffset(FileChannel channel, long indexOffset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, indexOffset);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, INDEX_OFFSET_POSITION + buffer.position());
+        }
+    }
+
+    /**
+     * Writes an index, complete or linked to a previous one.
+     * @param previousOffset The offset of the index this one links to, or {@code 0} for a complete index.
+     * @param previousLength The length of the index this one links to.
+     * @param entries        The entries of all projects, or of those changed since the previous index.
+     * @param removed        The IDs of the projects removed since the previous index.
+     */
+    static void writeIndex(BinaryOutput out, int journalGeneration, long previousOffset, int previousLength,
+                           List<IndexEntry> entries, Collection<Integer> removed) throws IOException {
+        out.writeVarInt(journalGeneration);
+        out.writeLong(previousOffset);
+        out.writeVarInt(previousLength);
+        out.writeVarInt(entries.size());
+        for (IndexEntry entry : entries) {
+            out.writeVarInt(entry.id());
+            out.writeString(entry.title());
+            out.writeString(entry.description());
+            out.writeVarInt((int) entry.created().toEpochDay());
+            out.writeVarInt(entry.nextTaskId());
+            out.writeVarInt(entry.taskCount());
+            out.writeLong(entry.offset());
+            out.writeVarInt(entry.length());
+            writeSummary(out, entry.summary());
+        }
+        out.writeVarInt(removed.size());
+        for (int id : removed) {
+            out.writeVarInt(id);
+        }
+    }
+
+    private static void writeSummary(BinaryOutput out, ProjectSummary summary) throws IOException {
+        out.writeVarInt((int) summary.getLastUpdated().toEpochDay());
+        for (TaskState state : TaskState.values()) {
+            out.writeVarInt(summary.getTaskCount(state));
+        }
+        for (TaskPrio prio : TaskPrio.values()) {
+            out.writeVarInt(summary.getTaskCount(prio));
+        }
+    }
+
+    /**
+     * Reads a summary written with the schema of the file, mapping its counts to the current enums.
+     */
+    private static ProjectSummary readSummary(BinaryInput in, Schema schema) throws IOException {
+        LocalDate lastUpdated = LocalDate.ofEpochDay(in.readVarInt());
+        int[] stateCounts = new int[TaskState.values().length];
+        for (TaskState state : schema.states()) {
+            stateCounts[state.ordinal()] = in.readVarInt();
+        }
+        int[] prioCounts = new int[TaskPrio.values().length];
+        for (TaskPrio prio : schema.prios()) {
+            prioCounts[prio.ordinal()] = in.readVarInt();
+        }
+        try {
+            return new ProjectSummary(stateCounts, prioCounts, lastUpdated);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Bad project summary: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the index of the file, following the links of an index to the previous ones, and
+     * applies them from the first complete index on.
+     */
+    static Index readIndex(FileChannel channel, Header header) throws IOException {
+        long indexOffset = header.indexOffset();
+        if (indexOffset <= 0 || indexOffset > channel.size()) {
+            throw new IOException("Bad project index offset " + indexOffset);
+        }
+        int indexLength = (int) (channel.size() - indexOffset);
+        // the linked indexes, the last one first
+        List<BinaryInput> chain = new ArrayList<>();
+        int journalGeneration = 0;
+        long offset = indexOffset;
+        int length = indexLength;
+        long chainLength = 0;
+        while (true) {
+            BinaryInput in = new BinaryInput(readSegment(channel, offset, length, null));
+            int generation = header.version() >= 3 ? in.readVarInt() : 0;
+            if (chain.isEmpty()) {
+                journalGeneration = generation;
+            }
+            chain.add(in);
+            chainLength += length;
+            long previousOffset = header.version() >= 5 ? in.readLong() : 0;
+            int previousLength = header.version() >= 5 ? in.readVarInt() : 0;
+            if (previousOffset == 0) {
+                break;
+            }
+            if (previousOffset < 0 || previousLength <= 0 || previousOffset + previousLength > offset) {
+                throw new IOException("Bad link from the project index at " + offset + " to " + previousOffset);
+            }
+            offset = previousOffset;
+            length = previousLength;
+        }
+
+        Map<Integer, IndexEntry> entries = new LinkedHashMap<>();
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            BinaryInput in = chain.get(i);
+            int count = in.readVarInt();
+            for (int j = 0; j < count; j++) {
+                IndexEntry entry = new IndexEntry(in.readVarInt(), in.readString(), in.readString(),
+                        LocalDate.ofEpochDay(in.readVarInt()), in.readVarInt(), in.readVarInt(),
+                        in.readLong(), in.readVarInt(), header.version() >= 4 ? readSummary(in, header.schema()) : null);
+                entries.put(entry.id(), entry);
+            }
+            int removed = header.version() >= 5 ? in.readVarInt() : 0;
+            for (int j = 0; j < removed; j++) {
+                entries.remove(in.readVarInt());
+            }
+        }
+        return new Index(journalGeneration, new ArrayList<>(entries.values()), indexLength, chain.size(), chainLength);
+    }
+
+    static void writeTasks(BinaryOutput out, Collection<TaskSnapshot> tasks) throws IOException {
+        Map<String, Integer> stringTable = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (TaskSnapshot task : tasks) {
+            String takenBy = task.getTakenBy();
+            if (takenBy != null && !stringTable.containsKey(takenBy)) {
+                stringTable.put(takenBy, strings.size() + 1);
+                strings.add(takenBy);
+            }
+        }
+        out.writeVarInt(strings.size());
+        for (String s : strings) {
+            out.writeString(s);
+        }
+
+        out.writeVarInt(tasks.size());
+        for (TaskSnapshot task : tasks) {
+            int created = (int) task.getCreated().toEpochDay();
+            out.writeVarInt(task.getId());
+            out.writeString(task.getDescription());
+            out.writeByte(task.getState().ordinal());
+            out.writeByte(task.getPrio().ordinal());
+            out.writeVarInt(task.getTakenBy() == null ? 0 : stringTable.get(task.getTakenBy()));
+            out.writeVarInt(created);
+            out.writeSignedVarInt((int) task.getLastUpdated().toEpochDay() - created);
+        }
+    }
+
+    /**
+     * Reads the tasks of a segment into a project, restoring them with one batch, so the
+     * indexes of the project are built once rather than a task at a time.
+     */
+    static void readTasks(BinaryInput in, Project project, Schema schema) throws IOException {
+        TaskBatch batch = project.batch();
+        readTasks(in, schema, batch::restore);
+        batch.apply();
+    }
+
+    /**
+     * Reads the tasks of a segment one at a time, passing each to the visitor.
+     */
+    static void readTasks(BinaryInput in, Schema schema, TaskVisitor visitor) throws IOException {
+        String[] strings = new String[in.readVarInt() + 1];
+        for (int i = 1; i < strings.length; i++) {
+            strings[i] = in.readString();
+        }
+
+        int taskCount = in.readVarInt();
+        for (int i = 0; i < taskCount; i++) {
+            int taskId = in.readVarInt();
+            String taskDescription = in.readString();
+            TaskState state = schema.state(in.readByte());
+            TaskPrio prio = schema.prio(in.readByte());
+            int takenByRef = in.readVarInt();
+            if (takenByRef >= strings.length) {
+                throw new IOException("Bad string reference " + takenByRef + " of task " + taskId);
+            }
+            int taskCreated = in.readVarInt();
+            int lastUpdated = taskCreated + in.readSignedVarInt();
+            visitor.visit(taskId, taskDescription, prio, state, strings[takenByRef],
+                    LocalDate.ofEpochDay(taskCreated), LocalDate.ofEpochDay(lastUpdated));
+        }
+    }
+
+    private static Project readVersion1Project(BinaryInput in, Schema schema) throws IOException {
+        int id = in.readVarInt();
+        String title = in.readString();
+        String description = in.readString();
+        LocalDate created = LocalDate.ofEpochDay(in.readVarInt());
+        int nextTaskId = in.readVarInt();
+        Project project = Project.restore(id, title, description, created, nextTaskId);
+        readTasks(in, project, schema);
+        return project;
+    }
+
+    /**
+     * Receives the fields of stored tasks, see {@link #readTasks(BinaryInput, Schema, TaskVisitor)}.
+     */
+    @FunctionalInterface
+    interface TaskVisitor {
+        void visit(int id, String description, TaskPrio prio, TaskState state, String takenBy,
+                   LocalDate created, LocalDate lastUpdated) throws IOException;
+    }
+
+    /**
+     * The fixed part of a file: its version, the offset of its index, and its enum schema.
+     */
+    record Header(int version, long indexOffset, Schema schema) {}
+
+    /**
+     * The project index as read: the journal generation of the file, and an entry per project.
+     * @param length      The length of the last index, which a following one links to.
+     * @param links       The number of linked indexes read, including the complete one.
+     * @param chainLength The length of all linked indexes read.
+     */
+    record Index(int journalGeneration, List<IndexEntry> entries, int length, int links, long chainLength) {}
+
+    /**
+     * An entry of the project index: the project fields, where its segment is stored, and its
+     * summary, which is {@code null} in files before version 4.
+     */
+    record IndexEntry(int id, String title, String description, LocalDate created, int nextTaskId,
+                      int taskCount, long offset, int length, ProjectSummary summary) {
+        Project restore() {
+            return Project.restore(id, title, description, created, nextTaskId);
+        }
+    }
+
+    /**
+     * The enum constants of the file that was read, indexed by the ordinals stored in it.
+     */
+    record Schema(TaskState[] states, TaskPrio[] prios) {
+        TaskState state(int ordinal) throws IOException {
+            if (ordinal >= states.length) {
+                throw new IOException("Bad task state " + ordinal);
+            }
+            return states[ordinal];
+        }
+
+        TaskPrio prio(int ordinal) throws IOException {
+            if (ordinal >= prios.length) {
+                throw new IOException("Bad task priority " + ordinal);
+            }
+            return prios[ordinal];
+        }
+
+        /**
+         * @return {@code true} if the ordinals in the file are those of the current enums,
+         *         so stored tasks can be copied as they are.
+         */
+        boolean isCurrent() {
+            return Arrays.equals(states, TaskState.values())
+                    && Arrays.equals(prios, TaskPrio.values());
+        }
+    }
+
+    private ProjectsBinaryFormat() {}
+}
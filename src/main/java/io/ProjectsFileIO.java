@@ -1,36 +1,125 @@
 package io;
 
+import metrics.Metrics;
+import metrics.Operation;
 import model.Project;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 
 /**
- * Hints on how to implement serialization and deserialization
- * of lists of projects and users.
+ * Stores and loads lists of projects, in the binary format of {@link ProjectsBinaryFormat}.
+ * Files written with Java serialization or an older binary format can still be read, and
+ * converted with {@link #migrateLegacyFile(File)}. To load tasks on demand instead of all at
+ * once, open the file with {@link MappedProjectStore}.
  */
 public class ProjectsFileIO {
 
+    // Every Java serialization stream starts with this magic number.
+    private static final short LEGACY_MAGIC = (short) 0xACED;
+
     /**
-     * Call this method before the application exits, to store the users and projects,
-     * in serialized form.
+     * Call this method before the application exits, to store the projects.
+     * The data is written to a temporary file which then replaces the given file, so a failed
+     * save leaves the previous file intact. Projects opened from a {@link MappedProjectStore}
+     * whose tasks were never used are copied without loading their tasks.
      */
     public static void serializeToFile(File file, List<Project> data) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-            oos.writeObject(data);
+        serializeToFile(file, data, 0);
+    }
+
+    /**
+     * Stores the projects, recording the journal generation they are up to date with.
+     * @see ProjectsStorage
+     */
+    static void serializeToFile(File file, List<Project> data, int journalGeneration) throws IOException {
+        long start = Metrics.start();
+        Path target = file.toPath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ProjectsBinaryFormat.write(data, channel, journalGeneration);
+                channel.force(false);
+            }
+            replace(tmp, target);
+        } finally {
+            Metrics.record(Operation.SAVE_FILE, start);
         }
     }
 
     /**
-     * Call this method at startup of the application, to deserialize the users and
-     * from file the specified file.
+     * Call this method at startup of the application, to read the projects from the specified file.
+     * Both the binary format and the legacy serialized format are read.
      */
-    @SuppressWarnings("unchecked")
     public static List<Project> deSerializeFromFile(File file) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+        long start = Metrics.start();
+        try {
+            if (isLegacyFile(file)) {
+                return deSerializeLegacyFile(file);
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                return ProjectsBinaryFormat.read(channel);
+            }
+        } finally {
+            Metrics.record(Operation.READ_FILE, start);
+        }
+    }
+
+    /**
+     * Converts a file written with Java serialization or an older binary format to the current
+     * binary format, in place. Files already in the current format are left untouched.
+     * @return {@code true} if the file was converted.
+     */
+    public static boolean migrateLegacyFile(File file) throws IOException, ClassNotFoundException {
+        if (!file.exists()) {
+            return false;
+        }
+        if (!isLegacyFile(file)) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                if (ProjectsBinaryFormat.readHeader(new BinaryInput(channel)).version() == ProjectsBinaryFormat.VERSION) {
+                    return false;
+                }
+            }
+        }
+        serializeToFile(file, deSerializeFromFile(file));
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the file starts like a Java serialization stream.
+     */
+    public static boolean isLegacyFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(2);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // read until the magic number is complete or the file ends
+            }
+            return !magic.hasRemaining() && magic.getShort(0) == LEGACY_MAGIC;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Project> deSerializeLegacyFile(File file) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
             return (List<Project>) ois.readObject();
         }
     }
 
+    static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     private ProjectsFileIO() {}
-}
\ No newline at end of file
+}
@@ -0,0 +1,695 @@
+package io;
+
+import model.Dates;
+import model.Project;
+import model.ProjectsBatch;
+import model.ProjectsListener;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskBatch;
+import model.TaskChanges;
+import model.TaskPrio;
+import model.TaskSnapshot;
+import model.TaskState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the changes made to the projects and their tasks.
+ * <p>
+ * Registered as a {@link ProjectsListener}, the journal appends a small record for every
+ * change, so the cost of persisting a change does not depend on the number of projects.
+ * Records are buffered in memory, and written and forced to disk by {@link #flush()}, which
+ * {@link ProjectsStorage} calls periodically to batch the fsyncs of many changes. A flush
+ * takes the buffered records and writes them without holding the lock that appending takes,
+ * so a change is never held up by a write or an fsync in progress.
+ * <p>
+ * A journal file starts with a header: the magic number {@code "PRJJ"}, the journal version,
+ * the generation of the journal and the enum schema. Each record holds its length, a CRC32
+ * checksum and the change. A record that was only partly written when the application stopped
+ * fails the checksum, and is cut off when the journal is replayed.
+ * <p>
+ * The names of the users who take tasks are written once per journal, in a record of their
+ * own before the first record that uses them; task records refer to a name by its number in
+ * the journal, {@code 0} meaning not taken. Version 1 journals, which write the name in every
+ * task record, are still replayed.
+ * <p>
+ * The changes of a {@link TaskBatch}, and those of a {@link ProjectsBatch} with the projects it
+ * adds, are written as one batch record holding a record of every change, so a batch is
+ * replayed completely or not at all, and its new tasks are restored with one batch. Batches of
+ * more than about {@value #MAX_BATCH_LENGTH} bytes are written as several batch part records
+ * followed by a final batch record, all in one piece; replay applies the parts only once it
+ * has read the final record, and cuts off parts that are not followed by one. Version 4 and
+ * older journals, which split batches into batch records that stand on their own, and write a
+ * batch over several projects per project, and version 2 journals, which have no batch
+ * records, are still replayed as well.
+ * <p>
+ * Besides the listener methods, which read the task when they are called, the journal takes
+ * changes as the {@link TaskSnapshot}s of their tasks, so a change can be appended after the
+ * task has changed again, as {@link ProjectsStorage} does.
+ * <p>
+ * A task removal holds the date it was made on, as it counts as an update of the project.
+ * Removals in version 3 and older journals, which have no date, leave the last update date
+ * of the project as it was.
+ */
+public class ProjectsJournal implements ProjectsListener, Closeable {
+    static final int MAGIC = 0x50524A4A; // "PRJJ"
+    static final int VERSION = 5;
+
+    private static final int MAX_RECORD_LENGTH = 16 * 1024 * 1024;
+    static final int MAX_BATCH_LENGTH = 1024 * 1024;
+
+    private static final byte PROJECT_ADDED = 1;
+    private static final byte PROJECT_REMOVED = 2;
+    private static final byte TASK_ADDED = 3;
+    private static final byte TASK_REMOVED = 4;
+    private static final byte TASK_UPDATED = 5;
+    private static final byte NAME_DEFINED = 6;
+    private static final byte BATCH = 7;
+    private static final byte BATCH_PART = 8;
+
+    private final int generation;
+    private final FileChannel channel;
+    private final Object writeLock = new Object();
+    private final ByteArrayOutputStream recordBytes;
+    private final BinaryOutput record;
+    private final ByteArrayOutputStream batchBytes;
+    private final BinaryOutput batchRecord;
+    private final CRC32 crc;
+    private final Map<String, Integer> names;
+    private final byte[] recordHeader = new byte[8];
+    private Batch pending;
+    private Batch writing;
+    private long size;
+    private long batchStart; // the position of the batch output where the current batch record starts
+    private int batchParts; // the batch part records of the batch being appended
+
+    private ProjectsJournal(FileChannel channel, int generation, long size) throws IOException {
+        this.generation = generation;
+        this.channel = channel;
+        this.size = size;
+        this.pending = new Batch();
+        this.writing = new Batch();
+        this.recordBytes = new ByteArrayOutputStream();
+        this.record = new BinaryOutput(Channels.newChannel(recordBytes));
+        this.batchBytes = new ByteArrayOutputStream();
+        this.batchRecord = new BinaryOutput(Channels.newChannel(batchBytes));
+        this.crc = new CRC32();
+        this.names = new HashMap<>();
+    }
+
+    /**
+     * Creates a new, empty journal file.
+     * @param file       The journal file, which must not exist.
+     * @param generation The generation of the journal.
+     */
+    public static ProjectsJournal create(File file, int generation) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            BinaryOutput header = new BinaryOutput(channel);
+            header.writeInt(MAGIC);
+            header.writeVarInt(VERSION);
+            header.writeVarInt(generation);
+            ProjectsBinaryFormat.writeSchema(header);
+            header.flush();
+            channel.force(false);
+            return new ProjectsJournal(channel, generation, header.position());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing journal file, to append records at its end. The journal must have
+     * been replayed first, so a partly written record at its end has been cut off.
+     * @param file The journal file.
+     * @return The journal, or {@code null} if its records use an older version or enum schema,
+     *         so a new journal has to be started instead.
+     */
+    public static ProjectsJournal openForAppend(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            BinaryInput in = new BinaryInput(channel);
+            if (in.readInt() != MAGIC || in.readVarInt() != VERSION) {
+                channel.close();
+                return null;
+            }
+            int generation = in.readVarInt();
+            if (!ProjectsBinaryFormat.readSchema(in).isCurrent()) {
+                channel.close();
+                return null;
+            }
+            List<String> names = new ArrayList<>();
+            readRecords(in, record -> {
+                if (record.readByte() == NAME_DEFINED) {
+                    names.add(record.readString());
+                }
+                return true;
+            });
+            channel.position(channel.size());
+            ProjectsJournal journal = new ProjectsJournal(channel, generation, channel.size());
+            for (String name : names) {
+                journal.names.put(name, journal.names.size() + 1);
+            }
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return The size of the journal, including records not yet flushed.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void projectAdded(Project project) {
+        append(() -> writeProjectAdded(record, project));
+    }
+
+    @Override
+    public synchronized void projectRemoved(Project project) {
+        append(() -> {
+            record.writeByte(PROJECT_REMOVED);
+            record.writeVarInt(project.getId());
+        });
+    }
+
+    @Override
+    public void taskAdded(Project project, Task task) {
+        taskAdded(project, task.snapshot());
+    }
+
+    /**
+     * Appends the addition of a task with the given values.
+     */
+    public synchronized void taskAdded(Project project, TaskSnapshot task) {
+        int takenBy = nameNumber(task.getTakenBy());
+        append(() -> writeTaskAdded(record, project, task, takenBy));
+    }
+
+    @Override
+    public void taskRemoved(Project project, Task task) {
+        taskRemoved(project, task, Dates.today());
+    }
+
+    /**
+     * Appends the removal of a task made on the given date.
+     */
+    public synchronized void taskRemoved(Project project, Task task, LocalDate removed) {
+        append(() -> writeTaskRemoved(record, project, task, removed));
+    }
+
+    @Override
+    public void taskUpdated(Project project, Task task) {
+        taskUpdated(project, task.snapshot());
+    }
+
+    /**
+     * Appends the update of a task to the given values.
+     */
+    public synchronized void taskUpdated(Project project, TaskSnapshot task) {
+        int takenBy = nameNumber(task.getTakenBy());
+        append(() -> writeTaskUpdated(record, project, task, takenBy));
+    }
+
+    @Override
+    public void tasksChanged(Project project, List<Task> added, List<Task> updated, List<Task> removed) {
+        tasksChanged(project, snapshots(added), snapshots(updated), removed, Dates.today());
+    }
+
+    /**
+     * Appends the changes of a batch as batch records, with the values of the added and
+     * updated tasks, and the date of the removals. The names the batch uses are defined
+     * first, in records of their own.
+     */
+    public void tasksChanged(Project project, List<TaskSnapshot> added, List<TaskSnapshot> updated,
+                             List<Task> removed, LocalDate removedOn) {
+        batchApplied(List.of(), List.of(new BatchValues(project, added, updated, removed)), removedOn);
+    }
+
+    @Override
+    public void batchApplied(List<Project> added, List<TaskChanges> changes) {
+        batchApplied(added, values(changes), Dates.today());
+    }
+
+    /**
+     * Appends a batch over several projects, with the projects it added and the values of the
+     * tasks it changed per project, as one batch that is replayed completely or not at all.
+     */
+    synchronized void batchApplied(List<Project> added, List<BatchValues> changes, LocalDate removedOn) {
+        try {
+            int count = 0;
+            for (Project project : added) {
+                writeProjectAdded(batchRecord, project);
+                count = endBatchChange(count);
+            }
+            for (BatchValues change : changes) {
+                Project project = change.project();
+                for (TaskSnapshot task : change.added()) {
+                    int takenBy = nameNumber(task.getTakenBy());
+                    writeTaskAdded(batchRecord, project, task, takenBy);
+                    count = endBatchChange(count);
+                }
+                for (TaskSnapshot task : change.updated()) {
+                    int takenBy = nameNumber(task.getTakenBy());
+                    writeTaskUpdated(batchRecord, project, task, takenBy);
+                    count = endBatchChange(count);
+                }
+                for (Task task : change.removed()) {
+                    writeTaskRemoved(batchRecord, project, task, removedOn);
+                    count = endBatchChange(count);
+                }
+            }
+            if (count > 0 || batchParts > 0) {
+                appendBatch(BATCH, count);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not journal a change", e);
+        } finally {
+            batchParts = 0;
+        }
+    }
+
+    /**
+     * Counts a change written to the batch record, and appends the record as a batch part
+     * once it is big enough.
+     * @return The number of changes in the batch record now.
+     */
+    private int endBatchChange(int count) throws IOException {
+        if (batchRecord.position() - batchStart < MAX_BATCH_LENGTH) {
+            return count + 1;
+        }
+        appendBatch(BATCH_PART, count + 1);
+        batchParts++;
+        return 0;
+    }
+
+    private void appendBatch(byte type, int count) throws IOException {
+        batchRecord.flush();
+        byte[] changes = batchBytes.toByteArray();
+        batchBytes.reset();
+        batchStart = batchRecord.position();
+        append(() -> {
+            record.writeByte(type);
+            record.writeVarInt(count);
+            record.writeBytes(changes);
+        });
+    }
+
+    /**
+     * Writes the buffered records to the file and forces them to disk. Changes can be
+     * appended while the records are written; they are written by the next flush.
+     */
+    public void flush() throws IOException {
+        synchronized (writeLock) {
+            Batch batch;
+            synchronized (this) {
+                if (pending.size() == 0) {
+                    return;
+                }
+                batch = pending;
+                pending = writing;
+                writing = batch;
+            }
+            try {
+                ByteBuffer bytes = batch.bytes();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+            } finally {
+                batch.reset();
+            }
+        }
+    }
+
+    /**
+     * Flushes the journal and closes its file. No changes may be appended any more.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * @return The current values of the tasks.
+     */
+    static List<TaskSnapshot> snapshots(List<Task> tasks) {
+        List<TaskSnapshot> snapshots = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            snapshots.add(task.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return The task changes of a batch, with the current values of their tasks.
+     */
+    static List<BatchValues> values(List<TaskChanges> changes) {
+        List<BatchValues> values = new ArrayList<>(changes.size());
+        for (TaskChanges change : changes) {
+            values.add(new BatchValues(change.project(), snapshots(change.added()), snapshots(change.updated()),
+                    change.removed()));
+        }
+        return values;
+    }
+
+    private static void writeProjectAdded(BinaryOutput out, Project project) throws IOException {
+        out.writeByte(PROJECT_ADDED);
+        out.writeVarInt(project.getId());
+        out.writeString(project.getName());
+        out.writeString(project.getDescription());
+        out.writeVarInt((int) project.getCreated().toEpochDay());
+    }
+
+    private static void writeTaskAdded(BinaryOutput out, Project project, TaskSnapshot task, int takenBy)
+            throws IOException {
+        out.writeByte(TASK_ADDED);
+        out.writeVarInt(project.getId());
+        out.writeVarInt(task.getId());
+        out.writeString(task.getDescription());
+        out.writeVarInt((int) task.getCreated().toEpochDay());
+        writeTaskState(out, task, takenBy);
+    }
+
+    private static void writeTaskRemoved(BinaryOutput out, Project project, Task task, LocalDate removed)
+            throws IOException {
+        out.writeByte(TASK_REMOVED);
+        out.writeVarInt(project.getId());
+        out.writeVarInt(task.getId());
+        out.writeVarInt((int) removed.toEpochDay());
+    }
+
+    private static void writeTaskUpdated(BinaryOutput out, Project project, TaskSnapshot task, int takenBy)
+            throws IOException {
+        out.writeByte(TASK_UPDATED);
+        out.writeVarInt(project.getId());
+        out.writeVarInt(task.getId());
+        writeTaskState(out, task, takenBy);
+    }
+
+    private static void writeTaskState(BinaryOutput out, TaskSnapshot task, int takenBy) throws IOException {
+        out.writeByte(task.getState().ordinal());
+        out.writeByte(task.getPrio().ordinal());
+        out.writeVarInt(takenBy);
+        out.writeVarInt((int) task.getLastUpdated().toEpochDay());
+    }
+
+    /**
+     * Returns the number of a name in this journal, first appending a record that defines
+     * it if the name is new.
+     * @return The number of the name, or {@code 0} for {@code null}.
+     */
+    private int nameNumber(String name) {
+        if (name == null) {
+            return 0;
+        }
+        Integer number = names.get(name);
+        if (number == null) {
+            append(() -> {
+                record.writeByte(NAME_DEFINED);
+                record.writeString(name);
+            });
+            number = names.size() + 1;
+            names.put(name, number);
+        }
+        return number;
+    }
+
+    private void append(RecordWriter writer) {
+        try {
+            writer.write();
+            record.flush();
+            byte[] bytes = recordBytes.toByteArray();
+            recordBytes.reset();
+            crc.reset();
+            crc.update(bytes);
+            ByteBuffer.wrap(recordHeader).putInt(bytes.length).putInt((int) crc.getValue());
+            pending.writeBytes(recordHeader);
+            pending.writeBytes(bytes);
+            size += recordHeader.length + bytes.length;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not journal a change", e);
+        }
+    }
+
+    /**
+     * Records waiting to be written, which a flush can write without copying them.
+     */
+    private static final class Batch extends ByteArrayOutputStream {
+        ByteBuffer bytes() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write() throws IOException;
+    }
+
+    /**
+     * The task changes of a batch to one project, with the values the batch left the added
+     * and updated tasks with.
+     */
+    record BatchValues(Project project, List<TaskSnapshot> added, List<TaskSnapshot> updated, List<Task> removed) {
+    }
+
+    /**
+     * Applies the changes in a journal file to the projects of a manager, in the order they
+     * were made. Changes to projects or tasks that do not exist are skipped. A partly written
+     * record at the end of the file is cut off, and so are the parts of a batch whose final
+     * record is missing.
+     * @param file    The journal file.
+     * @param manager The manager holding the projects the journal was written for.
+     * @return The generation of the journal.
+     * @throws IOException if the file cannot be read, or is not a journal.
+     */
+    public static int replay(File file, ProjectsManager manager) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            BinaryInput in = new BinaryInput(channel);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a journal file: " + file);
+            }
+            int version = in.readVarInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported journal version " + version);
+            }
+            int generation = in.readVarInt();
+            ProjectsBinaryFormat.Schema schema = ProjectsBinaryFormat.readSchema(in);
+            List<String> names = version >= 2 ? new ArrayList<>() : null;
+            boolean removalDates = version >= 4;
+            List<BinaryInput> batchParts = new ArrayList<>();
+            long end = readRecords(in, record -> apply(record, manager, schema, names, removalDates, batchParts));
+            if (end < channel.size()) {
+                channel.truncate(end);
+            }
+            return generation;
+        }
+    }
+
+    /**
+     * Reads the records from the position of the input on, up to the end or the first record
+     * that was cut off or fails its checksum.
+     * @return The position after the last complete record the reader ended a change with.
+     */
+    private static long readRecords(BinaryInput in, RecordReader reader) throws IOException {
+        CRC32 crc = new CRC32();
+        long end = in.position();
+        try {
+            while (true) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || length > MAX_RECORD_LENGTH) {
+                    break;
+                }
+                byte[] bytes = in.readBytes(length);
+                crc.reset();
+                crc.update(bytes);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                if (reader.read(new BinaryInput(ByteBuffer.wrap(bytes)))) {
+                    end = in.position();
+                }
+            }
+        } catch (EOFException e) {
+            // the last record ends here
+        }
+        return end;
+    }
+
+    @FunctionalInterface
+    private interface RecordReader {
+        /**
+         * @return {@code false} if the record starts or continues a change that later records
+         *         end, so the journal cannot be cut off after it.
+         */
+        boolean read(BinaryInput record) throws IOException;
+    }
+
+    /**
+     * Applies one record, or keeps it if it is a batch part, until the final record of its batch.
+     * @param names        The names defined so far in a version 2 or later journal, or {@code null} for version 1.
+     * @param removalDates Whether removals hold their date, as in version 4 and later journals.
+     * @param batchParts   The batch parts read since the last complete change.
+     * @return {@code false} while the parts of a batch are waiting for its final record.
+     */
+    private static boolean apply(BinaryInput in, ProjectsManager manager, ProjectsBinaryFormat.Schema schema,
+                                 List<String> names, boolean removalDates, List<BinaryInput> batchParts)
+            throws IOException {
+        int type = in.readByte();
+        if (type == NAME_DEFINED) {
+            if (names == null) {
+                throw new IOException("Name record in a version 1 journal");
+            }
+            names.add(in.readString());
+            return batchParts.isEmpty();
+        }
+        if (type == BATCH_PART) {
+            batchParts.add(in);
+            return false;
+        }
+        if (!batchParts.isEmpty() && type != BATCH) {
+            throw new IOException("Journal record type " + type + " between the parts of a batch");
+        }
+        if (type == BATCH) {
+            for (BinaryInput part : batchParts) {
+                applyBatch(part, manager, schema, names, removalDates);
+            }
+            batchParts.clear();
+            applyBatch(in, manager, schema, names, removalDates);
+            return true;
+        }
+        Project project = type == PROJECT_ADDED ? null : manager.getProjectById(in.readVarInt());
+        apply(type, project, in, manager, schema, names, removalDates, null);
+        return true;
+    }
+
+    /**
+     * Applies the changes of a batch record: new projects and task changes. New tasks that
+     * follow each other are restored with one batch, applied before the next change of
+     * another kind or project.
+     */
+    private static void applyBatch(BinaryInput in, ProjectsManager manager, ProjectsBinaryFormat.Schema schema,
+                                   List<String> names, boolean removalDates) throws IOException {
+        int count = in.readVarInt();
+        TaskBatch restored = null;
+        for (int i = 0; i < count; i++) {
+            int type = in.readByte();
+            if (type != PROJECT_ADDED && type != TASK_ADDED && type != TASK_UPDATED && type != TASK_REMOVED) {
+                throw new IOException("Journal record type " + type + " in a batch");
+            }
+            Project project = type == PROJECT_ADDED ? null : manager.getProjectById(in.readVarInt());
+            if (restored != null && (type != TASK_ADDED || restored.getProject() != project)) {
+                restored.apply();
+                restored = null;
+            }
+            if (restored == null && type == TASK_ADDED && project != null) {
+                restored = project.batch();
+            }
+            apply(type, project, in, manager, schema, names, removalDates, restored);
+        }
+        if (restored != null) {
+            restored.apply();
+        }
+    }
+
+    /**
+     * Applies a record of the given type to a project, after the type and project ID.
+     * @param restored The batch new tasks are restored with, or {@code null} to restore them one by one.
+     */
+    private static void apply(int type, Project project, BinaryInput in, ProjectsManager manager,
+                              ProjectsBinaryFormat.Schema schema, List<String> names, boolean removalDates,
+                              TaskBatch restored) throws IOException {
+        switch (type) {
+            case PROJECT_ADDED -> {
+                int id = in.readVarInt();
+                String title = in.readString();
+                String description = in.readString();
+                LocalDate created = LocalDate.ofEpochDay(in.readVarInt());
+                if (manager.getProjectById(id) == null && manager.isTitleUnique(title)) {
+                    manager.restoreProject(Project.restore(id, title, description, created, 1));
+                }
+            }
+            case PROJECT_REMOVED -> manager.removeProject(project);
+            case TASK_ADDED -> {
+                int taskId = in.readVarInt();
+                String description = in.readString();
+                LocalDate created = LocalDate.ofEpochDay(in.readVarInt());
+                TaskState state = schema.state(in.readByte());
+                TaskPrio prio = schema.prio(in.readByte());
+                String takenBy = readTakenBy(in, names);
+                LocalDate lastUpdated = LocalDate.ofEpochDay(in.readVarInt());
+                if (project != null && project.getTaskById(taskId) == null) {
+                    if (restored != null) {
+                        restored.restore(taskId, description, prio, state, takenBy, created, lastUpdated);
+                    } else {
+                        project.restoreTask(taskId, description, prio, state, takenBy, created, lastUpdated);
+                    }
+                }
+            }
+            case TASK_REMOVED -> {
+                int taskId = in.readVarInt();
+                LocalDate removed = removalDates ? LocalDate.ofEpochDay(in.readVarInt()) : null;
+                Task task = project == null ? null : project.getTaskById(taskId);
+                if (task != null) {
+                    project.removeTask(task, removed != null ? removed : task.getLastUpdated());
+                }
+            }
+            case TASK_UPDATED -> {
+                int taskId = in.readVarInt();
+                TaskState state = schema.state(in.readByte());
+                TaskPrio prio = schema.prio(in.readByte());
+                String takenBy = readTakenBy(in, names);
+                LocalDate lastUpdated = LocalDate.ofEpochDay(in.readVarInt());
+                Task task = project == null ? null : project.getTaskById(taskId);
+                if (task != null) {
+                    task.restoreState(state, prio, takenBy, lastUpdated);
+                }
+            }
+            default -> throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    private static String readTakenBy(BinaryInput in, List<String> names) throws IOException {
+        if (names == null) {
+            String takenBy = in.readString();
+            return in.readByte() == 0 ? null : takenBy;
+        }
+        int number = in.readVarInt();
+        if (number > names.size()) {
+            throw new IOException("Undefined name " + number + " in journal");
+        }
+        return number == 0 ? null : names.get(number - 1);
+    }
+}
@@ -0,0 +1,232 @@
+package io;
+
+import model.Project;
+import model.ProjectsBatch;
+import model.ProjectsManager;
+import model.TaskBatch;
+import model.TaskLoader;
+import model.TaskPrio;
+import model.TaskSnapshot;
+import model.TaskState;
+import utils.Json;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams projects to and from line-delimited JSON, one project or task per line, for moving
+ * large task sets between environments.
+ * <p>
+ * Every project line is followed by the lines of its tasks:
+ * <pre>
+ * {"type":"project","id":1,"title":"Website","description":"New site","created":"2024-05-02"}
+ * {"type":"task","project":1,"id":1,"description":"Design","prio":"HIGH","state":"DONE","takenBy":"ann","created":"2024-05-02","lastUpdated":"2024-05-10"}
+ * </pre>
+ * Exporting writes the tasks of a project that has not been loaded straight from its stored
+ * segment, so it holds at most one task in memory besides the loaded projects. Importing reads
+ * {@value #BATCH_SIZE} lines at a time, and adds the projects and tasks of each batch of lines
+ * with one {@link ProjectsBatch}, so they get new IDs and creation dates, are journaled like
+ * changes made by the user, and the indexes of a project are updated once per batch of lines.
+ */
+public final class ProjectsJsonLines {
+    static final int BATCH_SIZE = 1000;
+
+    private ProjectsJsonLines() {
+    }
+
+    /**
+     * Writes the projects and their tasks as line-delimited JSON. The tasks of each project
+     * are written as of its current snapshot, without holding up changes to the project.
+     * @param projects The projects to export.
+     * @param out      The writer to write to. It is not closed.
+     */
+    public static void exportProjects(List<Project> projects, Writer out) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        for (Project project : projects) {
+            line.setLength(0);
+            line.append("{\"type\":\"project\",\"id\":").append(project.getId());
+            appendField(line, "title", project.getName());
+            appendField(line, "description", project.getDescription());
+            appendField(line, "created", project.getCreated().toString());
+            out.append(line.append("}\n"));
+
+            TaskLoader loader = project.getTaskLoader();
+            if (!project.isLoaded() && loader instanceof MappedProjectStore.Segment segment) {
+                segment.visitTasks((id, description, prio, state, takenBy, created, lastUpdated) ->
+                        writeTask(out, line, project.getId(), id, description, prio, state, takenBy, created, lastUpdated));
+            } else {
+                for (TaskSnapshot task : project.snapshot().getTasks()) {
+                    writeTask(out, line, project.getId(), task.getId(), task.getDescription(), task.getPrio(),
+                            task.getState(), task.getTakenBy(), task.getCreated(), task.getLastUpdated());
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads line-delimited JSON written by {@link #exportProjects} and adds its projects and
+     * tasks to the manager. The tasks of a project must follow its line. Dates and IDs in the
+     * input are not kept.
+     * @param in         The reader to read from. It is not closed.
+     * @param manager    The manager to add the projects to.
+     * @param afterBatch Called after every batch of lines is added, for instance to flush the
+     *                   journal, or {@code null}.
+     * @return The number of tasks imported.
+     * @throws IOException if a line cannot be read or parsed, or a project title is already in use.
+     *                     Nothing of the batch of lines with the bad line is added, but the
+     *                     batches before it stay added.
+     */
+    public static int importProjects(Reader in, ProjectsManager manager, Runnable afterBatch) throws IOException {
+        BufferedReader reader = in instanceof BufferedReader buffered ? buffered : new BufferedReader(in);
+        List<Record> batch = new ArrayList<>(BATCH_SIZE);
+        Importer importer = new Importer(manager);
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                batch.add(new Record(lineNumber, Json.parseObject(line)));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+            if (batch.size() == BATCH_SIZE) {
+                importer.add(batch);
+                batch.clear();
+                if (afterBatch != null) {
+                    afterBatch.run();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            importer.add(batch);
+            if (afterBatch != null) {
+                afterBatch.run();
+            }
+        }
+        return importer.taskCount;
+    }
+
+    private static void writeTask(Writer out, StringBuilder line, int projectId, int id, String description,
+                                  TaskPrio prio, TaskState state, String takenBy,
+                                  LocalDate created, LocalDate lastUpdated) throws IOException {
+        line.setLength(0);
+        line.append("{\"type\":\"task\",\"project\":").append(projectId).append(",\"id\":").append(id);
+        appendField(line, "description", description);
+        appendField(line, "prio", prio.name());
+        appendField(line, "state", state.name());
+        appendField(line, "takenBy", takenBy);
+        appendField(line, "created", created.toString());
+        appendField(line, "lastUpdated", lastUpdated.toString());
+        out.append(line.append("}\n"));
+    }
+
+    private static void appendField(StringBuilder line, String name, String value) {
+        line.append(",\"").append(name).append("\":");
+        Json.appendString(line, value);
+    }
+
+    /**
+     * A parsed line, with its number for error messages.
+     */
+    private record Record(int lineNumber, Map<String, Object> fields) {
+    }
+
+    /**
+     * Adds parsed lines to the manager, a batch of lines at a time, remembering the project
+     * the following tasks belong to.
+     */
+    private static final class Importer {
+        private final ProjectsManager manager;
+        private long currentId = -1;
+        private Project current;
+        private ProjectsBatch changes;
+        private TaskBatch currentTasks;
+        private int taskCount;
+
+        Importer(ProjectsManager manager) {
+            this.manager = manager;
+        }
+
+        void add(List<Record> batch) throws IOException {
+            changes = manager.batch();
+            currentTasks = current == null ? null : changes.tasks(current);
+            int pendingTasks = 0;
+            for (Record record : batch) {
+                try {
+                    if (add(record.fields())) {
+                        pendingTasks++;
+                    }
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    throw new IOException("Line " + record.lineNumber() + ": " + e.getMessage(), e);
+                }
+            }
+            try {
+                changes.apply();
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                throw new IOException("Lines " + batch.get(0).lineNumber() + " to "
+                        + batch.get(batch.size() - 1).lineNumber() + ": " + e.getMessage(), e);
+            }
+            taskCount += pendingTasks;
+        }
+
+        /**
+         * Adds a line to the batch.
+         * @return {@code true} if the line is a task.
+         */
+        private boolean add(Map<String, Object> fields) {
+            String type = text(fields, "type", true);
+            switch (type) {
+                case "project" -> {
+                    String title = text(fields, "title", true);
+                    if (!manager.isTitleUnique(title)) {
+                        throw new IllegalArgumentException("A project titled '" + title + "' already exists");
+                    }
+                    currentTasks = changes.addProject(title, text(fields, "description", false));
+                    current = currentTasks.getProject();
+                    currentId = number(fields, "id");
+                    return false;
+                }
+                case "task" -> {
+                    if (current == null || number(fields, "project") != currentId) {
+                        throw new IllegalArgumentException("Task does not follow the line of its project");
+                    }
+                    currentTasks.add(text(fields, "description", true), TaskPrio.valueOf(text(fields, "prio", true)),
+                            TaskState.valueOf(text(fields, "state", true)), text(fields, "takenBy", false));
+                    return true;
+                }
+                default -> throw new IllegalArgumentException("Unknown record type '" + type + "'");
+            }
+        }
+
+        private static String text(Map<String, Object> fields, String name, boolean required) {
+            Object value = fields.get(name);
+            if (value == null) {
+                if (required) {
+                    throw new IllegalArgumentException("Missing field '" + name + "'");
+                }
+                return null;
+            }
+            if (!(value instanceof String text)) {
+                throw new IllegalArgumentException("Field '" + name + "' is not a string");
+            }
+            return text;
+        }
+
+        private static long number(Map<String, Object> fields, String name) {
+            if (!(fields.get(name) instanceof Long number)) {
+                throw new IllegalArgumentException("Field '" + name + "' is not a number");
+            }
+            return number;
+        }
+    }
+}
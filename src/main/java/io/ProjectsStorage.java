@@ -0,0 +1,484 @@
+package io;
+
+import metrics.Metrics;
+import metrics.Operation;
+import model.Dates;
+import model.Project;
+import model.ProjectsListener;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskChanges;
+import model.TaskSnapshot;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the projects of a {@code ProjectsManager} stored in a data file plus journals.
+ * <p>
+ * Opening the storage loads the data file lazily through a {@link MappedProjectStore}, and
+ * replays the journals written since the data file was last compacted. From then on every
+ * change is appended to the current {@link ProjectsJournal}, which is flushed and forced to
+ * disk in batches, every {@value #FLUSH_INTERVAL_MILLIS} ms. A crash loses at most the changes
+ * of the last interval.
+ * <p>
+ * When the journal has grown past {@value #COMPACT_THRESHOLD} bytes, the storage starts a new
+ * journal generation and, in the background, folds the older journals into the data file.
+ * Only the projects changed by the journals are written, see {@link MappedProjectStore#commit}.
+ * The data file records the first journal generation it does not contain, so journals
+ * already folded in are never replayed twice. Compaction only reads the data file and the
+ * journals, never the live projects, so it does not need to synchronize with the application.
+ * <p>
+ * Changing a project only puts the change, with the values of its tasks, see
+ * {@link Task#snapshot()}, on a lock-free queue, so the thread making the change takes no lock
+ * of the storage while it holds the lock of the project. Encoding the records, writing,
+ * forcing and compacting all happen on the storage's own threads, or in {@link #flush()}, so
+ * the thread making the change never waits for the disk. A compaction requested while one is
+ * running is coalesced into a single compaction that starts when the running one ends.
+ * {@link #flush()} and {@link #awaitCompaction()} wait for the changes to be on disk, for
+ * instance at shutdown.
+ * <p>
+ * Once the journal could not be written, changes are no longer journaled. They are still
+ * made, in memory only, since a change is journaled after it has been made: the failure is
+ * reported by {@link #getFailure()}, and thrown by {@link #flush()} and {@link #close()}.
+ * <p>
+ * Journals are stored next to the data file, named after it with the suffix
+ * {@code .journal.<generation>}.
+ */
+public class ProjectsStorage implements Closeable {
+    static final long FLUSH_INTERVAL_MILLIS = 100;
+    static final long COMPACT_THRESHOLD = 8 * 1024 * 1024;
+
+    private final File dataFile;
+    private final ProjectsManager manager;
+    private final MappedProjectStore store;
+    private final ProjectsListener journalListener;
+    private final ScheduledExecutorService flusher;
+    private final ExecutorService compactor;
+    private final Object compactLock = new Object();
+    private final Queue<Consumer<ProjectsJournal>> changes = new ConcurrentLinkedQueue<>();
+    private volatile IOException failure;
+    private ProjectsJournal journal;
+    private Future<?> compaction;
+    private boolean compacting;
+    private boolean compactAgain;
+
+    private ProjectsStorage(File dataFile, ProjectsManager manager, MappedProjectStore store, ProjectsJournal journal) {
+        this.dataFile = dataFile;
+        this.manager = manager;
+        this.store = store;
+        this.journal = journal;
+        this.journalListener = new JournalListener();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(daemon("journal-flusher"));
+        this.compactor = Executors.newSingleThreadExecutor(daemon("journal-compactor"));
+        flusher.scheduleWithFixedDelay(this::flushInBackground, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+        manager.addListener(journalListener);
+    }
+
+    /**
+     * Loads the projects stored in the data file and its journals into the manager, and
+     * starts journaling the changes made to them.
+     * A data file in the legacy or an older binary format is converted first.
+     * @param dataFile The data file, which does not have to exist.
+     * @param manager  The manager to load the projects into.
+     * @return The opened storage.
+     */
+    public static ProjectsStorage open(File dataFile, ProjectsManager manager)
+            throws IOException, ClassNotFoundException {
+        ProjectsFileIO.migrateLegacyFile(dataFile);
+        MappedProjectStore store = null;
+        int generation = 0;
+        if (dataFile.exists()) {
+            store = MappedProjectStore.open(dataFile);
+            manager.setProjects(store.getProjects());
+            generation = store.getJournalGeneration();
+        } else {
+            manager.setProjects(null);
+        }
+        try {
+            File lastJournal = null;
+            for (var journal : journalFiles(dataFile).entrySet()) {
+                if (journal.getKey() < generation) {
+                    deleteFile(journal.getValue());
+                } else {
+                    ProjectsJournal.replay(journal.getValue(), manager);
+                    lastJournal = journal.getValue();
+                    generation = journal.getKey() + 1;
+                }
+            }
+            // keep appending to the last journal, unless it was written with another schema
+            ProjectsJournal journal = lastJournal == null ? null : ProjectsJournal.openForAppend(lastJournal);
+            if (journal == null) {
+                journal = ProjectsJournal.create(journalFile(dataFile, generation), generation);
+            }
+            return new ProjectsStorage(dataFile, manager, store, journal);
+        } catch (IOException | RuntimeException e) {
+            if (store != null) {
+                store.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Starts a new journal generation and folds the previous ones into the data file, in the
+     * background. If a compaction is already running, another one is started when it ends,
+     * however often this is called meanwhile.
+     */
+    public void compact() throws IOException {
+        synchronized (compactLock) {
+            if (compacting) {
+                compactAgain = true;
+            } else {
+                startCompaction();
+            }
+        }
+    }
+
+    /**
+     * Writes all journaled changes to disk.
+     * @throws IOException if the journal could not be written, now or before.
+     */
+    public void flush() throws IOException {
+        checkFailure();
+        ProjectsJournal current;
+        synchronized (this) {
+            appendChanges();
+            current = journal;
+        }
+        long start = Metrics.start();
+        try {
+            current.flush();
+        } catch (IOException e) {
+            failed(e);
+            throw e;
+        } finally {
+            Metrics.record(Operation.FLUSH_JOURNAL, start);
+        }
+    }
+
+    /**
+     * Waits until the running compaction, and any compaction requested while it ran, have
+     * ended. A compaction that fails leaves its journals in place, so the next one folds them
+     * again; only the failure of the last one is reported.
+     * @throws IOException if the last compaction failed.
+     */
+    public void awaitCompaction() throws IOException, InterruptedException {
+        Future<?> last;
+        synchronized (compactLock) {
+            while (compacting) {
+                compactLock.wait();
+            }
+            last = compaction;
+        }
+        if (last != null) {
+            try {
+                last.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Compaction failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Stops journaling, waits for the compactions that were requested and writes all
+     * journaled changes to disk.
+     * @throws IOException if the journal could not be written, now or before.
+     */
+    @Override
+    public void close() throws IOException {
+        manager.removeListener(journalListener);
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.MINUTES);
+            awaitCompaction();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            compactor.shutdown();
+            synchronized (this) {
+                appendChanges();
+                journal.close();
+            }
+            if (store != null) {
+                store.close();
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Updates the data file with the changes in all journals of generations before the given
+     * one, then deletes those journals. Only the projects the journals changed are written,
+     * unless the data file has to be rewritten to drop the space taken by replaced segments.
+     */
+    private void fold(int foldedGeneration) throws IOException {
+        ProjectsManager folded = new ProjectsManager();
+        MappedProjectStore base = dataFile.exists() ? MappedProjectStore.open(dataFile, true) : null;
+        try {
+            int baseGeneration = 0;
+            if (base != null) {
+                folded.setProjects(base.getProjects());
+                baseGeneration = base.getJournalGeneration();
+            }
+            List<File> replayed = new ArrayList<>();
+            for (var journal : journalFiles(dataFile).entrySet()) {
+                if (journal.getKey() >= foldedGeneration) {
+                    break;
+                }
+                if (journal.getKey() >= baseGeneration) {
+                    ProjectsJournal.replay(journal.getValue(), folded);
+                }
+                replayed.add(journal.getValue());
+            }
+            if (base == null || !base.commit(folded.getProjects(), foldedGeneration)) {
+                ProjectsFileIO.serializeToFile(dataFile, folded.getProjects(), foldedGeneration);
+            }
+            for (File file : replayed) {
+                deleteFile(file);
+            }
+        } finally {
+            if (base != null) {
+                base.close();
+            }
+        }
+    }
+
+    /**
+     * Starts the next journal generation, so that changes are appended to it from now on, and
+     * closes the current one.
+     * @return The journal that was current.
+     */
+    private ProjectsJournal nextJournal() throws IOException {
+        ProjectsJournal previous;
+        synchronized (this) {
+            previous = journal;
+        }
+        int generation = previous.getGeneration() + 1;
+        ProjectsJournal next = ProjectsJournal.create(journalFile(dataFile, generation), generation);
+        synchronized (this) {
+            // the changes queued so far go to the previous journal, so they are folded before the later ones
+            appendChanges();
+            journal = next;
+        }
+        previous.close();
+        return previous;
+    }
+
+    /**
+     * Switches to the next journal generation and folds the previous ones on the compactor thread.
+     * Called holding the compaction lock.
+     */
+    private void startCompaction() throws IOException {
+        int foldedGeneration = nextJournal().getGeneration() + 1;
+        compaction = compactor.submit(() -> {
+            try {
+                fold(foldedGeneration);
+            } finally {
+                compactionEnded();
+            }
+            return null;
+        });
+        compacting = true;
+    }
+
+    /**
+     * Starts the compaction that was requested while the one that just ended was running, if any.
+     */
+    private void compactionEnded() {
+        synchronized (compactLock) {
+            compacting = false;
+            if (compactAgain) {
+                compactAgain = false;
+                try {
+                    startCompaction();
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+            compactLock.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the failure that stopped the journal. Changes made since are in memory only.
+     * @return The first failure to write the journal, or {@code null} while the journal works.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Queues a change to be appended to the journal, holding the lock of the changed project.
+     * Takes no lock. Once the journal could not be written the change is dropped, as it has
+     * been made already; {@link #getFailure()} reports that it was not journaled.
+     */
+    private void append(Consumer<ProjectsJournal> change) {
+        if (failure == null) {
+            changes.add(change);
+        }
+    }
+
+    /**
+     * Appends the queued changes to the current journal, in the order they were queued,
+     * holding the storage lock. Nothing is appended once the journal could not be written.
+     */
+    private void appendChanges() {
+        Consumer<ProjectsJournal> change;
+        while (failure == null && (change = changes.poll()) != null) {
+            try {
+                change.accept(journal);
+            } catch (UncheckedIOException e) {
+                failed(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Records the first failure to write the journal, to be reported by {@link #getFailure()}
+     * and thrown by the next flush or close. The changes still queued are dropped.
+     */
+    synchronized void failed(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        changes.clear();
+    }
+
+    private void checkFailure() throws IOException {
+        IOException failed = failure;
+        if (failed != null) {
+            throw new IOException("The journal could not be written", failed);
+        }
+    }
+
+    /**
+     * Flushes the journal, and starts a compaction if the journal has grown too big. Runs
+     * periodically on the flusher thread, until the journal could not be written.
+     */
+    private void flushInBackground() {
+        if (failure != null) {
+            return;
+        }
+        try {
+            flush();
+            long size;
+            synchronized (this) {
+                size = journal.size();
+            }
+            if (size > COMPACT_THRESHOLD) {
+                synchronized (compactLock) {
+                    if (!compacting) {
+                        startCompaction();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private static File journalFile(File dataFile, int generation) {
+        return new File(dataFile.getPath() + ".journal." + generation);
+    }
+
+    /**
+     * @return The journal files of the data file, by generation.
+     */
+    private static TreeMap<Integer, File> journalFiles(File dataFile) {
+        TreeMap<Integer, File> journals = new TreeMap<>();
+        File dir = dataFile.getAbsoluteFile().getParentFile();
+        String prefix = dataFile.getName() + ".journal.";
+        File[] files = dir.listFiles((d, name) -> name.startsWith(prefix));
+        if (files != null) {
+            for (File file : files) {
+                try {
+                    journals.put(Integer.parseInt(file.getName().substring(prefix.length())), file);
+                } catch (NumberFormatException e) {
+                    // not a journal
+                }
+            }
+        }
+        return journals;
+    }
+
+    private static void deleteFile(File file) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not delete " + file);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Queues every change, with the values the change left its tasks with, to be appended to
+     * the current journal.
+     */
+    private class JournalListener implements ProjectsListener {
+        @Override
+        public void projectAdded(Project project) {
+            append(journal -> journal.projectAdded(project));
+        }
+
+        @Override
+        public void projectRemoved(Project project) {
+            append(journal -> journal.projectRemoved(project));
+        }
+
+        @Override
+        public void taskAdded(Project project, Task task) {
+            TaskSnapshot values = task.snapshot();
+            append(journal -> journal.taskAdded(project, values));
+        }
+
+        @Override
+        public void taskRemoved(Project project, Task task) {
+            LocalDate removed = Dates.today();
+            append(journal -> journal.taskRemoved(project, task, removed));
+        }
+
+        @Override
+        public void taskUpdated(Project project, Task task) {
+            TaskSnapshot values = task.snapshot();
+            append(journal -> journal.taskUpdated(project, values));
+        }
+
+        @Override
+        public void tasksChanged(Project project, List<Task> added, List<Task> updated, List<Task> removed) {
+            List<TaskSnapshot> addedValues = ProjectsJournal.snapshots(added);
+            List<TaskSnapshot> updatedValues = ProjectsJournal.snapshots(updated);
+            LocalDate removedOn = Dates.today();
+            append(journal -> journal.tasksChanged(project, addedValues, updatedValues, removed, removedOn));
+        }
+
+        @Override
+        public void batchApplied(List<Project> added, List<TaskChanges> changes) {
+            List<ProjectsJournal.BatchValues> values = ProjectsJournal.values(changes);
+            LocalDate removedOn = Dates.today();
+            append(journal -> journal.batchApplied(added, values, removedOn));
+        }
+    }
+}
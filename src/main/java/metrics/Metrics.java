@@ -0,0 +1,198 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Runtime metrics of the application: a latency histogram per {@link Operation}, and gauges,
+ * such as the number of projects, that are read when the metrics are.
+ * <p>
+ * An operation is timed by taking a start time, and recording it when the operation ends:
+ * <pre>
+ * long start = Metrics.start();
+ * try {
+ *     ...
+ * } finally {
+ *     Metrics.record(Operation.FIND_TASKS, start);
+ * }
+ * </pre>
+ * Metrics are off unless the system property {@value #ENABLED_PROPERTY} is {@code true}, or
+ * they are switched on through JMX. While off, {@link #start()} reads one volatile flag and
+ * does not read the clock, and {@link #record} returns at once.
+ * <p>
+ * The metrics are published through JMX by {@link #registerMBean()}, and as text by {@link #dump()}.
+ */
+public final class Metrics {
+    public static final String ENABLED_PROPERTY = "projects.metrics";
+    public static final String OBJECT_NAME = "projects:type=Metrics";
+
+    private static final LatencyHistogram[] HISTOGRAMS = new LatencyHistogram[Operation.values().length];
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new LatencyHistogram();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * @return The start time of an operation to pass to {@link #record}, or {@code 0} if
+     *         metrics are off.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the duration of an operation.
+     * @param operation The operation that ended.
+     * @param start     What {@link #start()} returned when it began. Nothing is recorded if
+     *                  it is {@code 0}, so an operation started while metrics were off is not counted.
+     */
+    public static void record(Operation operation, long start) {
+        if (start != 0) {
+            HISTOGRAMS[operation.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return The histogram of the operation.
+     */
+    public static LatencyHistogram histogram(Operation operation) {
+        return HISTOGRAMS[operation.ordinal()];
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name. The supplier is called each
+     * time the metrics are read, from the reading thread.
+     * @param name  The name of the gauge, for instance {@code "projects"}.
+     * @param value Supplies the current value.
+     */
+    public static void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    public static void removeGauge(String name) {
+        GAUGES.remove(name);
+    }
+
+    /**
+     * @return The figures of every operation, by {@link Operation#label()}, in declaration order.
+     */
+    public static Map<String, OperationStats> operations() {
+        Map<String, OperationStats> operations = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            operations.put(operation.label(), OperationStats.of(histogram(operation)));
+        }
+        return operations;
+    }
+
+    /**
+     * @return The current value of every gauge, by name.
+     */
+    public static Map<String, Long> gauges() {
+        Map<String, Long> gauges = new LinkedHashMap<>();
+        GAUGES.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(gauge -> gauges.put(gauge.getKey(), gauge.getValue().getAsLong()));
+        return gauges;
+    }
+
+    /**
+     * Clears the histograms. The gauges stay registered.
+     */
+    public static void reset() {
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Formats the gauges, and the figures of the operations that were recorded, as a table.
+     * @return The text dump, one line per gauge and operation.
+     */
+    public static String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append("metrics ").append(enabled ? "enabled" : "disabled").append('\n');
+        for (Map.Entry<String, Long> gauge : gauges().entrySet()) {
+            text.append(String.format(Locale.ROOT, "%-26s %12d%n", gauge.getKey(), gauge.getValue()));
+        }
+        text.append(String.format(Locale.ROOT, "%-26s %10s %10s %10s %10s %10s %10s%n",
+                "operation (us)", "count", "mean", "p50", "p99", "p99.9", "max"));
+        for (Map.Entry<String, OperationStats> entry : operations().entrySet()) {
+            OperationStats stats = entry.getValue();
+            if (stats.getCount() > 0) {
+                text.append(String.format(Locale.ROOT, "%-26s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                        entry.getKey(), stats.getCount(), stats.getMeanMicros(), stats.getP50Micros(),
+                        stats.getP99Micros(), stats.getP999Micros(), stats.getMaxMicros()));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, as {@value #OBJECT_NAME}.
+     * Does nothing if they are already registered.
+     * @throws IllegalStateException if the MBean server refuses the registration.
+     */
+    public static void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MBean(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // registered before
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register the metrics MBean", e);
+        }
+    }
+
+    private static final class MBean implements MetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            Metrics.setEnabled(enabled);
+        }
+
+        @Override
+        public Map<String, OperationStats> getOperations() {
+            return operations();
+        }
+
+        @Override
+        public Map<String, Long> getGauges() {
+            return gauges();
+        }
+
+        @Override
+        public String dump() {
+            return Metrics.dump();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * The metrics as seen through JMX, registered as {@value Metrics#OBJECT_NAME}.
+ */
+public interface MetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return The figures per operation, by {@link Operation#label()}.
+     */
+    Map<String, OperationStats> getOperations();
+
+    /**
+     * @return The current value of every gauge, by name.
+     */
+    Map<String, Long> getGauges();
+
+    /**
+     * @return The text dump, see {@link Metrics#dump()}.
+     */
+    String dump();
+
+    /**
+     * Clears the histograms.
+     */
+    void reset();
+}
@@ -0,0 +1,35 @@
+package metrics;
+
+/**
+ * The timed operations, each with its own {@link LatencyHistogram}.
+ */
+public enum Operation {
+    ADD_PROJECT("addProject"),
+    FIND_PROJECTS("findProjects"),
+    SEARCH_PROJECTS("searchProjects"),
+    FIND_TASKS_ACROSS_PROJECTS("findTasksAcrossProjects"),
+    ADD_TASK("addTask"),
+    APPLY_BATCH("applyBatch"),
+    FIND_TASKS("findTasks"),
+    SEARCH_TASKS("searchTasks"),
+    CLAIM_TASKS("claimTasks"),
+    LOAD_TASKS("loadTasks"),
+    SAVE_FILE("saveFile"),
+    READ_FILE("readFile"),
+    OPEN_STORE("openStore"),
+    COMMIT_STORE("commitStore"),
+    FLUSH_JOURNAL("flushJournal");
+
+    private final String label;
+
+    Operation(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return The name of the operation in dumps and JMX, after the method it times.
+     */
+    public String label() {
+        return label;
+    }
+}
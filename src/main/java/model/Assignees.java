@@ -0,0 +1,73 @@
+package model;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The dictionary of the names of users who take tasks. Each name is kept once, and every task
+ * refers to the one shared instance of its name, so thousands of tasks taken by the same user
+ * share one string. The shared instance identifies the user: two tasks are taken by the same
+ * user exactly when their {@link Task#getTakenBy()} are the same instance, so matching a user
+ * compares references instead of characters.
+ * <p>
+ * The dictionary is shared by all projects and can be used by any number of threads. It holds
+ * its names weakly: a name that no task, snapshot or matcher refers to any more is dropped, so
+ * the dictionary does not grow with every name that was ever asked for. Dropping a name does
+ * not break the identity above, since nothing holds the dropped instance to compare it with.
+ */
+public final class Assignees {
+    private static final Map<String, WeakReference<String>> NAMES = new WeakHashMap<>();
+
+    private Assignees() {
+    }
+
+    /**
+     * Returns the shared instance of a name, adding the name if it is new. Only names that are
+     * stored in a task should be added, see {@link #find} for queries.
+     * @param name A name, or {@code null}.
+     * @return The shared instance equal to the name, or {@code null}.
+     */
+    public static String shared(String name) {
+        if (name == null) {
+            return null;
+        }
+        synchronized (NAMES) {
+            String shared = get(name);
+            if (shared == null) {
+                NAMES.put(name, new WeakReference<>(name));
+                shared = name;
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Looks up the shared instance of a name without adding it, for queries: a name that is
+     * not in the dictionary is not held by any task.
+     * @param name A name.
+     * @return The shared instance equal to the name, or {@code null} if there is none.
+     */
+    public static String find(String name) {
+        if (name == null) {
+            return null;
+        }
+        synchronized (NAMES) {
+            return get(name);
+        }
+    }
+
+    /**
+     * @return The number of distinct names still in use, or not yet dropped.
+     */
+    public static int size() {
+        synchronized (NAMES) {
+            return NAMES.size();
+        }
+    }
+
+    private static String get(String name) {
+        WeakReference<String> shared = NAMES.get(name);
+        return shared == null ? null : shared.get();
+    }
+}
@@ -0,0 +1,46 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared {@code LocalDate} instances for the dates of tasks. Every task has a creation and
+ * a last update date, but millions of tasks have only a few thousand distinct dates between
+ * them, so tasks refer to one shared instance per date instead of each holding its own.
+ * Dates are immutable, so sharing them is safe. The table only grows, by one entry per distinct date.
+ * <p>
+ * {@link #today()} is the clock changes are dated with. Code outside the model that records
+ * the date of a change, such as the journal, takes it from there as well.
+ */
+public final class Dates {
+    private static final Map<LocalDate, LocalDate> SHARED = new ConcurrentHashMap<>();
+
+    private Dates() {
+    }
+
+    /**
+     * @param date A date, or {@code null}.
+     * @return The shared instance equal to the date, or {@code null}.
+     */
+    static LocalDate shared(LocalDate date) {
+        if (date == null) {
+            return null;
+        }
+        LocalDate shared = SHARED.get(date);
+        if (shared == null) {
+            shared = SHARED.putIfAbsent(date, date);
+            if (shared == null) {
+                shared = date;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * @return The shared instance of the current date.
+     */
+    public static LocalDate today() {
+        return shared(LocalDate.now());
+    }
+}
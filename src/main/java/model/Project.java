@@ -1,26 +1,79 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
+import metrics.Metrics;
+import metrics.Operation;
 import model.matcher.ITaskMatcher;
+import model.matcher.SortedTasks;
+import model.matcher.TaskIndex;
+import utils.PersistentIntMap;
+import utils.TextIndex;
 
 /**
  * Represents a project that contains a collection of tasks.
  * Each project has a unique ID, title, description, creation date, and a list of tasks.
  * The class allows for adding, retrieving, filtering, and removing tasks.
+ * Tasks are indexed by ID, state, priority and the user who has taken them. The indexes are
+ * not serialized but rebuilt when a project is read.
+ * A stored project can be restored without its tasks, which are then loaded by a
+ * {@link TaskLoader} the first time they are needed.
+ * A project is dirty when its tasks differ from those it was stored with, so only dirty
+ * projects have to be written when the projects are saved.
+ * <p>
+ * A project can be shared between threads. Changes to the project and its tasks hold the
+ * lock of the project, so projects are changed independently of each other. Lookups and
+ * queries, {@link #getTaskById} and {@link #findTasks}, do not lock; they read the concurrent
+ * task indexes and may miss a task that is changed at the same time.
+ * <p>
+ * Readers that need all tasks as of one moment, such as reports and saves, take a version of
+ * the tasks, a {@link ProjectSnapshot}, with {@link #snapshot()}, and read it without locking.
+ * Every change publishes the next version before it releases the lock, through a volatile
+ * field, and hands it to the manager, see {@link ProjectsManager#snapshot()}. Building a
+ * version copies no task: it holds the values each task holds itself, see {@link TaskSnapshot},
+ * and shares the unchanged ones with the version before. {@link #getTasks()} and the
+ * aggregates are read from the published version, so they never wait for a change.
+ * <p>
+ * The number of tasks per state and priority, and the last update date, are kept up to date
+ * as tasks change, so they are answered without walking the tasks. A project whose tasks are
+ * not loaded answers them from the {@link ProjectSummary} it was restored with, if any.
  */
 public class Project implements Comparable<Project>, Serializable {
+    private static final long serialVersionUID = -3439099712514847960L;
+
     private final String title;
     private final int id;
     private final String description;
     private final LocalDate created;
-    private  int nextTaskId;
-    private final ArrayList<Task> tasks;
+    private volatile int nextTaskId;
+    private final ArrayList<Task> tasks; // only filled while the project is serialized, see writeObject
+    private transient volatile TaskIndexes index;
+    private transient volatile ProjectSnapshot current; // the published snapshot, replaced by every change
+    private transient PersistentIntMap.Builder<TaskSnapshot> values; // the current values of the tasks, by ID
+    private transient long version;
+    private transient volatile TaskLoader taskLoader;
+    private transient volatile boolean loaded;
+    private transient boolean loading;
+    private transient volatile boolean dirty;
+    private transient volatile LocalDate lastUpdated;
+    private transient volatile ProjectSummary storedSummary;
+    private transient volatile ProjectsListener listener;
+    private transient volatile ProjectsManager manager;
+    private transient ReentrantLock lock;
 
     /**
      * Constructs a new {@code Project} with the specified title, description, and ID.
@@ -36,6 +89,117 @@ public class Project implements Comparable<Project>, Serializable {
         this.created = LocalDate.now();
         this.nextTaskId = 1;
         this.tasks = new ArrayList<>();
+        this.lock = new ReentrantLock();
+        this.loaded = true;
+        this.dirty = true;
+        initIndexes();
+        snapshotAll();
+    }
+
+    private Project(String title, String description, int id, LocalDate created, int nextTaskId) {
+        this.title = title;
+        this.description = description;
+        this.id = id;
+        this.created = created;
+        this.nextTaskId = nextTaskId;
+        this.tasks = new ArrayList<>();
+        this.lock = new ReentrantLock();
+        this.loaded = true;
+        this.dirty = true;
+        initIndexes();
+        snapshotAll();
+    }
+
+    /**
+     * Restores a stored project, without tasks. Used by the persistence code, which adds the
+     * stored tasks with {@link #restoreTask} or {@link TaskBatch#restore}; the project is then passed to
+     * {@code ProjectsManager.setProjects}.
+     * @param id          The unique identifier of the project.
+     * @param title       The title of the project.
+     * @param description The description of the project.
+     * @param created     The creation date of the project.
+     * @param nextTaskId  The ID the next new task will get.
+     * @return The restored project.
+     */
+    public static Project restore(int id, String title, String description, LocalDate created, int nextTaskId) {
+        return new Project(title, description, id, created, nextTaskId);
+    }
+
+    /**
+     * Restores a stored project whose tasks are loaded later. The loader is called the first
+     * time the tasks of the project are used. The project is not dirty until it is changed.
+     * @param taskLoader Loads the tasks of the project.
+     * @return The restored project.
+     * @see #restore(int, String, String, LocalDate, int)
+     */
+    public static Project restore(int id, String title, String description, LocalDate created, int nextTaskId,
+                                  TaskLoader taskLoader) {
+        Project project = new Project(title, description, id, created, nextTaskId);
+        project.taskLoader = taskLoader;
+        project.loaded = false;
+        project.dirty = false;
+        project.current = new ProjectSnapshot(project, 0, nextTaskId, null, null);
+        return project;
+    }
+
+    /**
+     * Restores a stored project whose tasks are loaded later, with the aggregates it was
+     * stored with. Until the tasks are loaded, the aggregates are answered from the summary.
+     * @param summary The aggregates of the stored tasks.
+     * @return The restored project.
+     * @see #restore(int, String, String, LocalDate, int, TaskLoader)
+     */
+    public static Project restore(int id, String title, String description, LocalDate created, int nextTaskId,
+                                  TaskLoader taskLoader, ProjectSummary summary) {
+        Project project = restore(id, title, description, created, nextTaskId, taskLoader);
+        project.storedSummary = summary;
+        project.current = new ProjectSnapshot(project, 0, nextTaskId, null, summary);
+        return project;
+    }
+
+    /**
+     * Restores a stored task into this project, keeping its ID, state and dates.
+     * @return The restored task.
+     * @throws IllegalArgumentException if the project already has a task with the same ID.
+     */
+    public Task restoreTask(int id, String descr, TaskPrio prio, TaskState state, String takenBy,
+                            LocalDate created, LocalDate lastUpdated) {
+        lock.lock();
+        try {
+            ensureLoaded();
+            if (index.get(id) != null) {
+                throw new IllegalArgumentException("Duplicate task id " + id + " in project " + this.id);
+            }
+            Task task = new Task(id, descr, prio, state, takenBy, created, lastUpdated);
+            nextTaskId = Math.max(nextTaskId, id + 1);
+            // owned before it is indexed, so a reader changing it at once locks this project
+            task.setProject(this);
+            index.add(task);
+            updated(lastUpdated);
+            publish(task);
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restores the last update date a project was stored with. Removing a task moves the date
+     * of its project, so it can be later than the dates of the stored tasks.
+     * @param lastUpdated The stored date. An earlier date than that of the restored tasks is ignored.
+     */
+    public void restoreLastUpdated(LocalDate lastUpdated) {
+        lock.lock();
+        try {
+            ensureLoaded();
+            LocalDate last = this.lastUpdated;
+            updated(lastUpdated);
+            if (this.lastUpdated != last) {
+                changed();
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -45,12 +209,8 @@ public class Project implements Comparable<Project>, Serializable {
      * @return The task with the specified ID, or {@code null} if not found.
      */
     public Task getTaskById(int id) {
-        for (Task t : tasks) {
-            if (t.getId() == id) {
-                return t;
-            }
-        }
-        return null;
+        ensureLoaded();
+        return index.get(id);
     }
     /**
      * Adds a new task to the project with the specified description and priority.
@@ -62,24 +222,214 @@ public class Project implements Comparable<Project>, Serializable {
      * @return The newly created {@code Task}.
      */
     public Task addTask(String descr, TaskPrio prio) {
-        Task task = new Task(nextTaskId, descr, prio);
-        nextTaskId++;
-        tasks.add(task);
-        return task;
+        lock.lock();
+        try {
+            long start = Metrics.start();
+            ensureLoaded();
+            Task task = new Task(nextTaskId, descr, prio);
+            nextTaskId++;
+            task.setProject(this);
+            index.add(task);
+            updated(task.getLastUpdated());
+            publish(task);
+            if (listener != null) {
+                listener.taskAdded(this, task);
+            }
+            Metrics.record(Operation.ADD_TASK, start);
+            return task;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
      * Finds and returns tasks that match the specified criteria using an {@code ITaskMatcher}.
-     * The matched tasks are sorted by their natural order (priority, then description).
+     * Only the candidates the matcher selects from the task indexes are checked, see
+     * {@link ITaskMatcher#candidates(TaskIndex)}. The indexes are kept sorted, so the
+     * candidates are walked in order and the result is not sorted again.
      * @param matcher The matcher used to filter tasks.
      * @return A list of tasks that match the given criteria, sorted by natural order.
      */
     public List<Task> findTasks(ITaskMatcher matcher) {
-        List<Task> matchedTasks = tasks.stream().filter(matcher::match).collect(Collectors.toList());
-        matchedTasks.sort(Comparator.naturalOrder());
+        return findTasks(matcher, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the first tasks, in natural order, that match the specified criteria.
+     * Stops checking candidates once enough tasks are found.
+     * @param matcher The matcher used to filter tasks.
+     * @param limit   The maximum number of tasks to return.
+     * @return At most {@code limit} matching tasks, sorted by natural order.
+     * @see #findTasks(ITaskMatcher)
+     */
+    public List<Task> findTasks(ITaskMatcher matcher, int limit) {
+        return findTasks(matcher, null, limit);
+    }
+
+    /**
+     * Finds a page of tasks, in natural order, that match the specified criteria: the first
+     * tasks after the given key. To page through the tasks, pass the key of the last task of
+     * a page to get the next one. The key is looked up in the indexes, so the tasks before it
+     * are not checked again.
+     * @param matcher The matcher used to filter tasks.
+     * @param after   The key to start after, or {@code null} to start at the first task.
+     * @param limit   The maximum number of tasks to return.
+     * @return At most {@code limit} matching tasks after the key, sorted by natural order.
+     * @see TaskKey#of(Task)
+     */
+    public List<Task> findTasks(ITaskMatcher matcher, TaskKey after, int limit) {
+        long start = Metrics.start();
+        Iterator<Task> tasks = iterateTasks(matcher, after);
+        List<Task> matchedTasks = new ArrayList<>();
+        while (matchedTasks.size() < limit && tasks.hasNext()) {
+            matchedTasks.add(tasks.next());
+        }
+        Metrics.record(Operation.FIND_TASKS, start);
         return matchedTasks;
     }
 
+    /**
+     * Iterates over the tasks that match the specified criteria, in natural order, after the
+     * given key. The iterator is lazy: each task is matched when the iterator gets to it, so
+     * a caller that stops early does not pay for the rest, and nothing is copied. Like the
+     * indexes it walks, the iterator does not fail when tasks change meanwhile, but may or
+     * may not see the tasks that changed.
+     * @param matcher The matcher used to filter tasks.
+     * @param after   The key to start after, or {@code null} to start at the first task.
+     * @return An iterator over the matching tasks.
+     */
+    public Iterator<Task> iterateTasks(ITaskMatcher matcher, TaskKey after) {
+        ensureLoaded();
+        Iterator<Task> candidates = SortedTasks.tailIterator(matcher.candidates(index),
+                after == null ? null : after.probe());
+        return new Iterator<>() {
+            private Task next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && candidates.hasNext()) {
+                    Task task = candidates.next();
+                    if (matcher.match(task)) {
+                        next = task;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Task next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Task task = next;
+                next = null;
+                return task;
+            }
+        };
+    }
+
+    /**
+     * Claims up to {@code count} tasks with the given priority that nobody has taken and that
+     * are not done, for the given user, in natural order. Each task is claimed with a
+     * compare-and-set, see {@link Task#claim}, so workers claiming from the same project at
+     * the same time get different tasks, and skip the tasks others win instead of waiting.
+     * The claims are recorded in the indexes and reported under one lock for the whole batch.
+     * @param user  The name of the user taking the tasks.
+     * @param prio  The priority of the tasks to claim.
+     * @param count The maximum number of tasks to claim.
+     * @return The claimed tasks, fewer than {@code count} if no more tasks are free.
+     * @throws IllegalArgumentException if the user is {@code null} or empty.
+     */
+    public List<Task> claimTasks(String user, TaskPrio prio, int count) {
+        if (Task.isFree(user)) {
+            throw new IllegalArgumentException("Tasks must be claimed by a user");
+        }
+        long start = Metrics.start();
+        ensureLoaded();
+        List<Task> claimed = new ArrayList<>(Math.min(count, 64));
+        for (Task task : index.unassigned(prio)) {
+            if (claimed.size() >= count) {
+                break;
+            }
+            if (task.getState() != TaskState.DONE && task.compareAndSetTakenBy(user) == null) {
+                claimed.add(task);
+            }
+        }
+        if (!claimed.isEmpty()) {
+            lock.lock();
+            try {
+                for (Task task : claimed) {
+                    recordClaim(task);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        Metrics.record(Operation.CLAIM_TASKS, start);
+        return claimed;
+    }
+
+    /**
+     * Searches the task descriptions for the words of the query. Every word must occur in a
+     * found task; a word ending in {@code *} matches any word starting with it. The tasks are
+     * ranked by how often, and how rare, the matched words are. See {@link TextIndex}.
+     * The search index is built the first time the tasks of the project are searched.
+     * @param query The words to search for, for instance {@code "fix login*"}.
+     * @param limit The maximum number of tasks to return.
+     * @return The best matching tasks, best first.
+     */
+    public List<Task> searchTasks(String query, int limit) {
+        return searchTasks(query, ITaskMatcher.all(), limit);
+    }
+
+    /**
+     * Searches the task descriptions like {@link #searchTasks(String, int)}, keeping the tasks
+     * the matcher accepts. The limit applies to the accepted tasks.
+     * @param query   The words to search for.
+     * @param matcher The tasks to keep.
+     * @param limit   The maximum number of tasks to return.
+     * @return The best matching tasks the matcher accepts, best first.
+     */
+    public List<Task> searchTasks(String query, ITaskMatcher matcher, int limit) {
+        long start = Metrics.start();
+        ensureLoaded();
+        TextIndex<Task> descriptions = index.descriptions();
+        if (descriptions == null) {
+            lock.lock();
+            try {
+                index.buildDescriptions();
+                descriptions = index.descriptions();
+            } finally {
+                lock.unlock();
+            }
+        }
+        List<Task> found = descriptions.search(query, matcher::match, limit);
+        Metrics.record(Operation.SEARCH_TASKS, start);
+        return found;
+    }
+
+    /**
+     * Estimates how many tasks {@link #findTasks(ITaskMatcher)} has to check for the given matcher.
+     * @param matcher The matcher to estimate.
+     * @return The estimated number of tasks checked.
+     */
+    public int estimateCost(ITaskMatcher matcher) {
+        ensureLoaded();
+        return matcher.estimateCost(index);
+    }
+
+    /**
+     * Estimates the cost of a query without loading the tasks: a project whose tasks are not
+     * loaded is estimated by its task count, or the number of task IDs it handed out.
+     */
+    int estimateCostWithoutLoading(ITaskMatcher matcher) {
+        if (loaded) {
+            return matcher.estimateCost(index);
+        }
+        ProjectSummary summary = storedSummary;
+        return summary != null ? summary.getTaskCount() : nextTaskId - 1;
+    }
+
     /**
      * Determines the current state of the project based on the state of its tasks.
      * Returns {@code ProjectState.EMPTY} if the project has no tasks, {@code ProjectState.ONGOING}
@@ -87,25 +437,57 @@ public class Project implements Comparable<Project>, Serializable {
      * @return The current state of the project.
      */
     public ProjectState getProjectState() {
-        if (tasks.isEmpty()) {return ProjectState.EMPTY;}
-        for (int i = 0; i < tasks.size(); i++) {
-            tasks.get(i).getState();
-            if (tasks.get(i).getState() == TaskState.IN_PROGRESS) {return ProjectState.ONGOING;}
-        }
-        return ProjectState.COMPLETED;
+        return snapshot().getProjectState();
     }
 
     /**
-     * Returns the last update date of the project.
-     * If the project has no tasks, the creation date of the project is returned.
+     * Returns the last update date of the project: the latest date a task was added, changed
+     * or removed. If no task was ever added, the creation date of the project is returned.
      * @return The most recent update date of the project or its tasks.
      */
     public LocalDate getLastUpdated() {
-        LocalDate lastUpdated;
-        if (tasks.isEmpty()) {
-            return created;
-        }
-        return tasks.stream().map(Task::getLastUpdated).max(LocalDate::compareTo).orElse(created);
+        return snapshot().getLastUpdated();
+    }
+
+    /**
+     * @return The number of tasks of the project.
+     */
+    public int getTaskCount() {
+        return snapshot().getTaskCount();
+    }
+
+    /**
+     * @param state The state to count.
+     * @return The number of tasks of the project in the given state.
+     */
+    public int getTaskCount(TaskState state) {
+        return snapshot().getTaskCount(state);
+    }
+
+    /**
+     * @param prio The priority to count.
+     * @return The number of tasks of the project with the given priority.
+     */
+    public int getTaskCount(TaskPrio prio) {
+        return snapshot().getTaskCount(prio);
+    }
+
+    /**
+     * Returns the aggregates of the project, to be stored with it, as of its current snapshot.
+     * @return The task counts and last update date of the project.
+     */
+    public ProjectSummary getSummary() {
+        return snapshot().getSummary();
+    }
+
+    /**
+     * Returns the current version of the tasks of the project, which does not change when the
+     * project does. It is the version the last change published, read without locking. The
+     * tasks are not loaded before they are read.
+     * @return The current snapshot of the project.
+     */
+    public ProjectSnapshot snapshot() {
+        return current;
     }
 
     /**
@@ -114,7 +496,343 @@ public class Project implements Comparable<Project>, Serializable {
      * @return {@code true} if the task was removed, {@code false} otherwise.
      */
     public boolean removeTask(Task task){
-        return this.tasks.remove(task);
+        return removeTask(task, Dates.today());
+    }
+
+    /**
+     * Removes a task as it was removed on the given date, which counts as an update of the
+     * project on that date. Used to replay a removal that was stored with its date.
+     * @param task    The task to be removed.
+     * @param removed The date the task was removed.
+     * @return {@code true} if the task was removed, {@code false} otherwise.
+     */
+    public boolean removeTask(Task task, LocalDate removed) {
+        lock.lock();
+        try {
+            ensureLoaded();
+            if (task == null || !index.remove(task)) {
+                return false;
+            }
+            task.setProject(null);
+            updated(Dates.shared(removed));
+            if (!loading) {
+                values.remove(task.getId());
+                changed();
+            }
+            if (listener != null) {
+                listener.taskRemoved(this, task);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a batch of changes to the tasks of this project, which are applied together.
+     * Adding many tasks through a batch updates the indexes, aggregates and listeners once,
+     * instead of once per task.
+     * @return A new, empty batch.
+     */
+    public TaskBatch batch() {
+        return new TaskBatch(this, null);
+    }
+
+    /**
+     * Checks the changes of a batch against the tasks of the project, holding the lock, so
+     * that applying them cannot fail halfway. Whether the tasks the batch takes are free is
+     * only known when they are taken, see {@link TaskBatch#takeTasks()}, as they can be claimed
+     * without the lock.
+     * @throws IllegalArgumentException if a change is not possible.
+     */
+    void checkBatch(List<TaskBatch.Change> changes) {
+        ensureLoaded();
+        Set<Task> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Task> taken = Collections.newSetFromMap(new IdentityHashMap<>());
+        // only restored tasks choose their IDs, so only they can clash with the new ones
+        boolean restores = changes.stream().anyMatch(change -> change.kind() == TaskBatch.Kind.RESTORE);
+        int[] ids = restores ? new int[changes.size()] : null;
+        int idCount = 0;
+        int next = nextTaskId;
+        for (TaskBatch.Change change : changes) {
+            switch (change.kind()) {
+                case ADD -> {
+                    if (ids != null) {
+                        ids[idCount++] = next;
+                    }
+                    next++;
+                }
+                case RESTORE -> {
+                    if (index.get(change.id()) != null) {
+                        throw new IllegalArgumentException("Duplicate task id " + change.id() + " in project " + id);
+                    }
+                    ids[idCount++] = change.id();
+                    next = Math.max(next, change.id() + 1);
+                }
+                default -> {
+                    Task task = change.task();
+                    if (index.get(task.getId()) != task || removed.contains(task)) {
+                        throw new IllegalArgumentException("Task " + task.getId() + " is not in project " + id);
+                    }
+                    if (change.kind() == TaskBatch.Kind.REMOVE) {
+                        removed.add(task);
+                    }
+                    if (change.kind() == TaskBatch.Kind.TAKE && !taken.add(task)) {
+                        throw new IllegalStateException("Task " + task.getId() + " is taken twice in the batch");
+                    }
+                }
+            }
+        }
+        if (ids != null) {
+            Arrays.sort(ids, 0, idCount);
+            for (int i = 1; i < idCount; i++) {
+                if (ids[i] == ids[i - 1]) {
+                    throw new IllegalArgumentException("Duplicate task id " + ids[i] + " in project " + id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the changes of a batch checked by {@link #checkBatch}, holding the lock, after
+     * the tasks it takes were taken. Tasks
+     * that change are taken out of the indexes at their first change, and put back with all
+     * new tasks at the end, so every index bucket is updated once.
+     * @param report The list to add the changes to, for the caller to report them and hand
+     *               the new version to the manager, or {@code null} to do both at once.
+     * @return The added and restored tasks.
+     */
+    List<Task> applyBatch(List<TaskBatch.Change> changes, List<TaskChanges> report) {
+        long start = Metrics.start();
+        List<Task> added = new ArrayList<>();
+        List<Task> reported = new ArrayList<>();
+        List<Task> updated = new ArrayList<>();
+        List<Task> removed = new ArrayList<>();
+        Set<Task> unindexed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (TaskBatch.Change change : changes) {
+            Task task = change.task();
+            switch (change.kind()) {
+                case ADD -> {
+                    LocalDate today = Dates.today();
+                    task = new Task(nextTaskId++, change.description(), change.prio(), change.state(),
+                            change.takenBy(), today, today);
+                    task.markDirty();
+                    added.add(task);
+                    reported.add(task);
+                }
+                case RESTORE -> {
+                    task = new Task(change.id(), change.description(), change.prio(), change.state(),
+                            change.takenBy(), change.created(), change.lastUpdated());
+                    nextTaskId = Math.max(nextTaskId, change.id() + 1);
+                    added.add(task);
+                }
+                case TAKE -> {
+                    if (unindexed.add(task)) {
+                        index.unindex(task);
+                        updated.add(task);
+                    }
+                }
+                case STATE, PRIO -> {
+                    if (unindexed.add(task)) {
+                        index.unindex(task);
+                        updated.add(task);
+                    }
+                    task.applyBatch(change.state() != null ? change.state() : task.getState(),
+                            change.prio() != null ? change.prio() : task.getPrio());
+                }
+                case REMOVE -> {
+                    index.remove(task);
+                    task.setProject(null);
+                    unindexed.add(task);
+                    removed.add(task);
+                }
+            }
+        }
+        if (added.isEmpty() && unindexed.isEmpty()) {
+            return added;
+        }
+        for (Task task : added) {
+            task.setProject(this);
+            updated(task.getLastUpdated());
+        }
+        index.addAll(added);
+        if (!removed.isEmpty()) {
+            Set<Task> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+            gone.addAll(removed);
+            updated.removeIf(gone::contains);
+            updated(Dates.today());
+        }
+        for (Task task : updated) {
+            updated(task.getLastUpdated());
+        }
+        index.indexAll(updated);
+        if (!loading) {
+            for (Task task : removed) {
+                values.remove(task.getId());
+            }
+            for (Task task : added) {
+                values.put(task.getId(), task.snapshot());
+            }
+            for (Task task : updated) {
+                values.put(task.getId(), task.snapshot());
+            }
+            changed(report == null);
+        }
+        if (!reported.isEmpty() || !updated.isEmpty() || !removed.isEmpty()) {
+            if (report != null) {
+                report.add(new TaskChanges(this, reported, updated, removed));
+            } else if (listener != null) {
+                listener.tasksChanged(this, reported, updated, removed);
+            }
+        }
+        Metrics.record(Operation.APPLY_BATCH, start);
+        return added;
+    }
+
+    /**
+     * Called by a task after it has changed, holding the lock of the project, to add it back to the indexes and report the change.
+     */
+    void taskUpdated(Task task) {
+        index.index(task);
+        updated(task.getLastUpdated());
+        publish(task);
+        if (listener != null) {
+            listener.taskUpdated(this, task);
+        }
+    }
+
+    /**
+     * Called by a task after it was claimed without the lock, to move it to the taken-by
+     * index and report the change. Does nothing if the task was removed in the meantime.
+     */
+    void taskClaimed(Task task) {
+        lock.lock();
+        try {
+            recordClaim(task);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordClaim(Task task) {
+        if (index.get(task.getId()) != task) {
+            return;
+        }
+        index.claimed(task);
+        updated(task.getLastUpdated());
+        publish(task);
+        if (listener != null) {
+            listener.taskUpdated(this, task);
+        }
+    }
+
+    /**
+     * Called by a task after its stored state was restored, to add it back to the indexes.
+     */
+    void indexTask(Task task) {
+        index.index(task);
+        updated(task.getLastUpdated());
+        publish(task);
+    }
+
+    /**
+     * Sets the manager of this project, which is told about changes to its tasks, or
+     * {@code null} once the project is no longer managed.
+     */
+    void setManager(ProjectsManager manager) {
+        this.manager = manager;
+        this.listener = manager != null ? manager.dispatcher() : null;
+    }
+
+    /**
+     * Called by a task before it changes, holding the lock of the project, to remove it from the indexes.
+     */
+    void unindexTask(Task task) {
+        index.unindex(task);
+    }
+
+    /**
+     * Moves the last update date of the project forward to the given date, holding the lock.
+     */
+    private void updated(LocalDate date) {
+        LocalDate last = lastUpdated;
+        if (last == null || date.isAfter(last)) {
+            lastUpdated = date;
+        }
+    }
+
+    /**
+     * Records the current values of the task as changed, holding the lock. While the stored
+     * tasks are loaded nothing is recorded; {@link #load} takes them all at once.
+     */
+    private void publish(Task task) {
+        if (!loading) {
+            values.put(task.getId(), task.snapshot());
+            changed();
+        }
+    }
+
+    /**
+     * Marks the project as changed, holding the lock, once the values of its tasks are
+     * recorded, and publishes the new version, also to the manager.
+     */
+    private void changed() {
+        changed(true);
+    }
+
+    /**
+     * Marks the project as changed and publishes the new version, holding the lock.
+     * @param share Whether to hand the version to the manager as well, which a
+     *              {@link ProjectsBatch} does itself for all of its projects at once.
+     */
+    private void changed(boolean share) {
+        version++;
+        // dirty before the new version is published, so a save that reads the version sees the project dirty
+        dirty = true;
+        ProjectSnapshot snapshot = new ProjectSnapshot(this, version, nextTaskId, values.build(), summarize());
+        current = snapshot;
+        ProjectsManager owner = manager;
+        if (share && owner != null) {
+            owner.published(snapshot);
+        }
+    }
+
+    /**
+     * Records the values of all tasks in the indexes, and builds the current snapshot of them,
+     * holding the lock.
+     */
+    private void snapshotAll() {
+        values = PersistentIntMap.<TaskSnapshot>empty().builder();
+        for (Task task : index.all()) {
+            values.put(task.getId(), task.snapshot());
+        }
+        current = new ProjectSnapshot(this, version, nextTaskId, values.build(), summarize());
+    }
+
+    /**
+     * Counts the tasks in the indexes, holding the lock.
+     */
+    private ProjectSummary summarize() {
+        int[] stateCounts = new int[TaskState.values().length];
+        for (TaskState state : TaskState.values()) {
+            stateCounts[state.ordinal()] = index.withState(state).size();
+        }
+        int[] prioCounts = new int[TaskPrio.values().length];
+        for (TaskPrio prio : TaskPrio.values()) {
+            prioCounts[prio.ordinal()] = index.withPrio(prio).size();
+        }
+        LocalDate last = lastUpdated;
+        return ProjectSummary.counted(stateCounts, prioCounts, index.size(), last != null ? last : created);
+    }
+
+    private void initIndexes() {
+        index = new TaskIndexes(tasks.size());
+        lastUpdated = null;
+        for (Task task : tasks) {
+            index.add(task);
+            task.setProject(this);
+            updated(task.getLastUpdated());
+        }
     }
 
     public String getName() {
@@ -129,6 +847,161 @@ public class Project implements Comparable<Project>, Serializable {
         return id;
     }
 
+    public LocalDate getCreated() {
+        return created;
+    }
+
+    public int getNextTaskId() {
+        return nextTaskId;
+    }
+
+    /**
+     * Returns all tasks of the project, in the order of their IDs, which is the order they
+     * were added. The tasks are those of the current snapshot, so the list is not torn by
+     * changes made meanwhile.
+     * @return A read-only copy of the task list.
+     */
+    public List<Task> getTasks() {
+        Object[] snapshot = snapshot().getTasks().toArray();
+        Task[] list = new Task[snapshot.length];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = ((TaskSnapshot) snapshot[i]).getTask();
+        }
+        return Collections.unmodifiableList(Arrays.asList(list));
+    }
+
+    /**
+     * @return {@code true} if the tasks of the project are in memory.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return {@code true} if the tasks have changed since the project was stored or loaded.
+     *         Projects that were never stored are always dirty.
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Returns the loader of the stored tasks of the project. If the project is not dirty, the
+     * persistence code uses it to reuse or copy the stored tasks instead of writing them again.
+     * @return The task loader, or {@code null} if the project was not restored with one.
+     */
+    public TaskLoader getTaskLoader() {
+        return taskLoader;
+    }
+
+    /**
+     * Records that a snapshot of the project has been stored, and can be loaded again with
+     * the given loader. Clears the dirty flag of the project if it has not changed since the
+     * snapshot, and those of the tasks that have not.
+     * @param taskLoader Loads the stored tasks.
+     * @param stored     The snapshot that was stored.
+     */
+    public void markStored(TaskLoader taskLoader, ProjectSnapshot stored) {
+        lock.lock();
+        try {
+            this.taskLoader = taskLoader;
+            boolean unchanged = version == stored.getVersion();
+            if (unchanged) {
+                dirty = false;
+            }
+            if (loaded) {
+                ProjectSnapshot now = snapshot();
+                PersistentIntMap<TaskSnapshot> storedTasks = stored.tasks();
+                for (TaskSnapshot task : now.getTasks()) {
+                    if (unchanged || storedTasks.get(task.getId()) == task) {
+                        task.getTask().clearDirty();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the lock guarding changes to the project and its tasks. It is an explicit lock,
+     * rather than the monitor of the project, so a {@link ProjectsBatch} can take the locks of
+     * any number of projects in a loop.
+     * @return The lock of the project.
+     */
+    ReentrantLock lock() {
+        return lock;
+    }
+
+    void ensureLoaded() {
+        if (!loaded) {
+            load();
+        }
+    }
+
+    /**
+     * Loads the stored tasks. Other threads wait until the tasks are loaded; the loader itself
+     * restores them through {@link #restoreTask} or a {@link TaskBatch}, on the loading thread.
+     */
+    private void load() {
+        lock.lock();
+        try {
+            if (loaded || loading) {
+                return;
+            }
+            loading = true;
+            long start = Metrics.start();
+            ProjectSummary summary = storedSummary;
+            // keeps the date of removals, which the stored tasks do not show
+            lastUpdated = summary != null ? summary.getLastUpdated() : null;
+            try {
+                taskLoader.loadTasks(this);
+                ProjectSnapshot stored = current;
+                snapshotAll();
+                stored.resolve(current);
+                dirty = false;
+                loaded = true;
+                storedSummary = null;
+            } catch (IOException e) {
+                initIndexes();
+                throw new UncheckedIOException("Could not load the tasks of project " + id, e);
+            } catch (RuntimeException | Error e) {
+                // drops the tasks restored before the failure, so the next use loads them all again
+                initIndexes();
+                throw e;
+            } finally {
+                loading = false;
+                Metrics.record(Operation.LOAD_TASKS, start);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lock = new ReentrantLock();
+        loaded = true;
+        dirty = true;
+        initIndexes();
+        snapshotAll();
+        tasks.clear();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        lock.lock();
+        try {
+            tasks.addAll(getTasks());
+            try {
+                out.defaultWriteObject();
+            } finally {
+                tasks.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
 
     @Override
     public int compareTo(Project project) {
@@ -1,28 +1,45 @@
 package model;
 
-import io.ProjectsFileIO;
+import io.ProjectsStorage;
+import metrics.Metrics;
+import server.ProjectsHttpServer;
 import ui.MainUI;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.List;
+import java.net.InetSocketAddress;
 
 public class ProjectApp {
 
     private static final String FILE_NAME = "project.ser";
+    // set to serve the projects over HTTP on localhost while the UI runs, e.g. -Dprojects.http.port=8080
+    private static final String HTTP_PORT_PROPERTY = "projects.http.port";
 
     public void run() throws Exception { // we do not catch all exceptions
 
         File projectsFile = new File(FILE_NAME);
         ProjectsManager projectsManager = new ProjectsManager();
-        boolean couldReadFile = false;
+        ProjectsStorage storage = null;
+        ProjectsHttpServer httpServer = null;
 
         try {
 
-            if (projectsFile.exists()) {
-                List<Project> projects = ProjectsFileIO.deSerializeFromFile(projectsFile);
-                projectsManager.setProjects(projects);
-                couldReadFile = true;
+            // tasks are loaded from the file when a project is first used,
+            // and every change is journaled as it is made
+            storage = ProjectsStorage.open(projectsFile, projectsManager);
+
+            // timings are recorded with -Dprojects.metrics=true, or once switched on through JMX
+            registerGauges(projectsManager);
+            // 1 once a journal write failed, after which changes are kept in memory only
+            ProjectsStorage journaled = storage;
+            Metrics.gauge("journalFailed", () -> journaled.getFailure() != null ? 1 : 0);
+            Metrics.registerMBean();
+
+            String httpPort = System.getProperty(HTTP_PORT_PROPERTY);
+            if (httpPort != null) {
+                httpServer = ProjectsHttpServer.start(projectsManager,
+                        new InetSocketAddress("localhost", Integer.parseInt(httpPort)));
+                System.out.println("Serving projects on http://localhost:" + httpServer.getPort() + "/projects");
             }
 
             MainUI ui = new MainUI(projectsManager);
@@ -33,14 +50,26 @@ public class ProjectApp {
             System.out.println("Continuing with empty manager.");
         }
 
-        // run method about to exit - save data
-        if(couldReadFile || !projectsFile.exists()) {
-            List<Project> projectsToSave = projectsManager.getProjects();
-            ProjectsFileIO.serializeToFile(projectsFile, projectsToSave);
+        if (httpServer != null) {
+            httpServer.close();
+        }
+        // run method about to exit - fold the journal into the data file; close waits for the fold
+        if (storage != null) {
+            storage.compact();
+            storage.close();
         }
         System.out.println("Application exits");
     }
 
+    private static void registerGauges(ProjectsManager manager) {
+        // task counts come from the project aggregates, so reading them loads no tasks
+        Metrics.gauge("projects", () -> manager.getProjects().size());
+        Metrics.gauge("loadedProjects", () -> manager.getProjects().stream().filter(Project::isLoaded).count());
+        Metrics.gauge("tasks", () -> manager.getProjects().stream().mapToLong(Project::getTaskCount).sum());
+        Metrics.gauge("largestProjectTasks",
+                () -> manager.getProjects().stream().mapToLong(Project::getTaskCount).max().orElse(0));
+    }
+
     public static void main(String[] args) throws Exception {
 
         ProjectApp app = new ProjectApp();
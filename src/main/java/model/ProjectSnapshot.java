@@ -0,0 +1,130 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+import utils.PersistentIntMap;
+
+/**
+ * One version of the tasks of a project: their values, the aggregates and the next task ID,
+ * as they were after a change. Every change of the project builds the next version and
+ * publishes it, see {@link Project#snapshot()}, sharing all unchanged tasks with the one before.
+ * The values of a task are the {@link TaskSnapshot} it holds itself, so building copies no
+ * task, and a snapshot never changes. Reports and saves read a snapshot without locking the
+ * project, and do not see the changes made while they run.
+ * <p>
+ * The snapshot of a project whose tasks are not loaded answers the aggregates it was stored
+ * with, if any, and loads the tasks once they are asked for; a project does not change before
+ * its tasks are loaded, so they are the tasks of this version.
+ */
+public final class ProjectSnapshot {
+    private final Project project;
+    private final long version;
+    private final int nextTaskId;
+    private final PersistentIntMap<TaskSnapshot> tasks; // null while the tasks are not loaded
+    private final ProjectSummary summary; // null while not loaded, if the project was stored without one
+    private volatile ProjectSnapshot loaded;
+
+    ProjectSnapshot(Project project, long version, int nextTaskId, PersistentIntMap<TaskSnapshot> tasks,
+                    ProjectSummary summary) {
+        this.project = project;
+        this.version = version;
+        this.nextTaskId = nextTaskId;
+        this.tasks = tasks;
+        this.summary = summary;
+    }
+
+    public Project getProject() {
+        return project;
+    }
+
+    /**
+     * @return The version of the project, which grows with every change, so versions made
+     *         after several changes skip some.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getNextTaskId() {
+        return nextTaskId;
+    }
+
+    /**
+     * @return The tasks of this version, in the order of their IDs. A read-only view, which
+     *         is not copied.
+     */
+    public Collection<TaskSnapshot> getTasks() {
+        return tasks().values();
+    }
+
+    /**
+     * @param id The ID of the task.
+     * @return The task with the given ID in this version, or {@code null} if there was none.
+     */
+    public TaskSnapshot getTask(int id) {
+        return tasks().get(id);
+    }
+
+    public int getTaskCount() {
+        return getSummary().getTaskCount();
+    }
+
+    public int getTaskCount(TaskState state) {
+        return getSummary().getTaskCount(state);
+    }
+
+    public int getTaskCount(TaskPrio prio) {
+        return getSummary().getTaskCount(prio);
+    }
+
+    /**
+     * @return The state of the project in this version, see {@link Project#getProjectState()}.
+     */
+    public ProjectState getProjectState() {
+        return getSummary().getProjectState();
+    }
+
+    /**
+     * @return The last update date of the project in this version, see {@link Project#getLastUpdated()}.
+     */
+    public LocalDate getLastUpdated() {
+        return getSummary().getLastUpdated();
+    }
+
+    /**
+     * @return The aggregates of this version.
+     */
+    public ProjectSummary getSummary() {
+        return summary != null ? summary : resolved().summary;
+    }
+
+    PersistentIntMap<TaskSnapshot> tasks() {
+        return resolved().tasks;
+    }
+
+    /**
+     * Called by the project when its tasks are loaded, with the snapshot of the loaded tasks.
+     */
+    void resolve(ProjectSnapshot loadedSnapshot) {
+        loaded = loadedSnapshot;
+    }
+
+    /**
+     * @return This snapshot if it has its tasks, otherwise the snapshot of the loaded tasks.
+     */
+    private ProjectSnapshot resolved() {
+        if (tasks != null) {
+            return this;
+        }
+        ProjectSnapshot resolved = loaded;
+        if (resolved == null) {
+            project.ensureLoaded();
+            resolved = loaded;
+            if (resolved == null) {
+                throw new IllegalStateException("The tasks of project " + project.getId() + " are being loaded");
+            }
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,83 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * The aggregates of a project: how many tasks it has per state and priority, and when it was
+ * last updated. Kept up to date by the project as its tasks change, and stored with the
+ * project, so a project whose tasks are not loaded can answer without loading them.
+ * Immutable.
+ */
+public final class ProjectSummary {
+    private final int[] stateCounts;
+    private final int[] prioCounts;
+    private final int taskCount;
+    private final LocalDate lastUpdated;
+
+    /**
+     * @param stateCounts The number of tasks per state, indexed by {@link TaskState#ordinal()}.
+     * @param prioCounts  The number of tasks per priority, indexed by {@link TaskPrio#ordinal()}.
+     * @param lastUpdated The last update date of the project.
+     * @throws IllegalArgumentException if the counts do not match the enums or each other.
+     */
+    public ProjectSummary(int[] stateCounts, int[] prioCounts, LocalDate lastUpdated) {
+        if (stateCounts.length != TaskState.values().length || prioCounts.length != TaskPrio.values().length) {
+            throw new IllegalArgumentException("One count per task state and priority expected");
+        }
+        int total = 0;
+        for (int count : stateCounts) {
+            total += count;
+        }
+        int prioTotal = 0;
+        for (int count : prioCounts) {
+            prioTotal += count;
+        }
+        if (total != prioTotal) {
+            throw new IllegalArgumentException("Task counts by state and priority differ: " + total + " and " + prioTotal);
+        }
+        this.stateCounts = stateCounts.clone();
+        this.prioCounts = prioCounts.clone();
+        this.taskCount = total;
+        this.lastUpdated = lastUpdated;
+    }
+
+    /**
+     * Takes counts that a project has just made and keeps to itself, without checking or copying them.
+     */
+    private ProjectSummary(int[] stateCounts, int[] prioCounts, int taskCount, LocalDate lastUpdated) {
+        this.stateCounts = stateCounts;
+        this.prioCounts = prioCounts;
+        this.taskCount = taskCount;
+        this.lastUpdated = lastUpdated;
+    }
+
+    static ProjectSummary counted(int[] stateCounts, int[] prioCounts, int taskCount, LocalDate lastUpdated) {
+        return new ProjectSummary(stateCounts, prioCounts, taskCount, lastUpdated);
+    }
+
+    public int getTaskCount() {
+        return taskCount;
+    }
+
+    public int getTaskCount(TaskState state) {
+        return stateCounts[state.ordinal()];
+    }
+
+    public int getTaskCount(TaskPrio prio) {
+        return prioCounts[prio.ordinal()];
+    }
+
+    public LocalDate getLastUpdated() {
+        return lastUpdated;
+    }
+
+    /**
+     * @return The state of the project, see {@link Project#getProjectState()}.
+     */
+    public ProjectState getProjectState() {
+        if (taskCount == 0) {
+            return ProjectState.EMPTY;
+        }
+        return getTaskCount(TaskState.IN_PROGRESS) > 0 ? ProjectState.ONGOING : ProjectState.COMPLETED;
+    }
+}
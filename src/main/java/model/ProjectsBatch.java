@@ -0,0 +1,169 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changes to several projects of a {@link ProjectsManager} that are applied together: new
+ * projects, and a {@link TaskBatch} of task changes per project. Made with
+ * {@link ProjectsManager#batch()}.
+ * <p>
+ * {@link #apply()} claims the titles of the new projects, then locks every project of the
+ * batch, in the order of their IDs so that batches applied at the same time cannot deadlock,
+ * and checks all changes before applying any. The whole batch is reported to the listeners
+ * in one call, see {@link ProjectsListener#batchApplied}, so the journal records it as one unit.
+ * The new versions of all its projects are published to the manager at once, still holding
+ * their locks, so a {@link ProjectsManager#snapshot()} shows the whole batch or none of it.
+ * <p>
+ * A batch is not thread-safe, and is applied once.
+ */
+public final class ProjectsBatch {
+    private final ProjectsManager manager;
+    private final List<Project> newProjects = new ArrayList<>();
+    private final Set<Project> isNew = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<String> newTitles = new HashSet<>();
+    private final Map<Project, TaskBatch> taskBatches = new IdentityHashMap<>();
+    private final List<TaskBatch> order = new ArrayList<>();
+    private boolean applied;
+
+    ProjectsBatch(ProjectsManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Adds a new project, which gets the next project ID now, but is only added to the
+     * manager when the batch is applied.
+     * @param title       The title of the new project, which must be unique.
+     * @param description The description of the new project.
+     * @return The batch of the tasks of the new project.
+     * @throws IllegalArgumentException if the title is in use, or used by another new project of the batch.
+     */
+    public TaskBatch addProject(String title, String description) {
+        if (!manager.isTitleUnique(title) || !newTitles.add(title)) {
+            throw new IllegalArgumentException("The project title must be unique");
+        }
+        Project project = manager.newProject(title, description);
+        newProjects.add(project);
+        isNew.add(project);
+        return tasks(project);
+    }
+
+    /**
+     * @param project A project of the manager, or a new project of this batch.
+     * @return The batch of the task changes of the project, the same for every call.
+     * @throws IllegalArgumentException if the project is not managed by the manager of this batch.
+     */
+    public TaskBatch tasks(Project project) {
+        TaskBatch batch = taskBatches.get(project);
+        if (batch == null) {
+            if (manager.getProjectById(project.getId()) != project && !isNew.contains(project)) {
+                throw new IllegalArgumentException("Project " + project.getId() + " is not managed here");
+            }
+            batch = new TaskBatch(project, this);
+            taskBatches.put(project, batch);
+            order.add(batch);
+        }
+        return batch;
+    }
+
+    /**
+     * Adds the new projects and applies the task changes, in the order the projects were
+     * first named in the batch.
+     * @return The new projects.
+     * @throws IllegalArgumentException if a title is in use, a project of the batch was removed
+     *                                  meanwhile, or a task change is not possible, see
+     *                                  {@link TaskBatch#apply()}. Nothing is applied then.
+     * @throws IllegalStateException    if the batch was applied already, or takes a task that
+     *                                  is taken already. Nothing is applied then either.
+     */
+    public List<Project> apply() {
+        if (applied) {
+            throw new IllegalStateException("The batch was applied already");
+        }
+        applied = true;
+        for (TaskBatch batch : order) {
+            batch.markApplied();
+        }
+        List<Project> claimed = new ArrayList<>();
+        try {
+            for (Project project : newProjects) {
+                if (!manager.claimTitle(project)) {
+                    throw new IllegalArgumentException("The project title must be unique");
+                }
+                claimed.add(project);
+            }
+            // the batch names every new project, as addProject starts its task batch
+            List<Project> locked = new ArrayList<>(taskBatches.keySet());
+            locked.sort(Comparator.comparingInt(Project::getId));
+            applyLocked(locked);
+        } catch (RuntimeException e) {
+            for (Project project : claimed) {
+                manager.releaseTitle(project);
+            }
+            throw e;
+        }
+        return List.copyOf(newProjects);
+    }
+
+    /**
+     * Takes the locks of the projects, in the given order, and applies the batch holding all of them.
+     */
+    private void applyLocked(List<Project> projects) {
+        int locked = 0;
+        try {
+            for (Project project : projects) {
+                project.lock().lock();
+                locked++;
+            }
+            applyChanges();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                projects.get(i).lock().unlock();
+            }
+        }
+    }
+
+    private void applyChanges() {
+        for (TaskBatch batch : order) {
+            Project project = batch.getProject();
+            if (!isNew.contains(project) && manager.getProjectById(project.getId()) != project) {
+                throw new IllegalArgumentException("Project " + project.getId() + " was removed");
+            }
+            project.checkBatch(batch.changes());
+        }
+        takeTasks();
+        for (Project project : newProjects) {
+            manager.register(project);
+        }
+        List<TaskChanges> changes = new ArrayList<>(order.size());
+        List<ProjectSnapshot> snapshots = new ArrayList<>(order.size());
+        for (TaskBatch batch : order) {
+            batch.getProject().applyBatch(batch.changes(), changes);
+            snapshots.add(batch.getProject().snapshot());
+        }
+        manager.published(snapshots);
+        manager.dispatcher().batchApplied(List.copyOf(newProjects), changes);
+    }
+
+    /**
+     * Takes the tasks the task batches take, giving them all back if one is taken already.
+     */
+    private void takeTasks() {
+        for (int i = 0; i < order.size(); i++) {
+            try {
+                order.get(i).takeTasks();
+            } catch (IllegalStateException e) {
+                for (int j = 0; j < i; j++) {
+                    order.get(j).releaseTasks();
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package model;
+
+/**
+ * A change to a project or a task, as delivered by a {@link ProjectsEventStream}.
+ * Events are numbered in the order they were published.
+ * <p>
+ * The state, priority and taken-by user of a task are read when the event is published, so
+ * applying the events in order leaves a view with the current values even if the task is
+ * changed again before the event is read. Immutable.
+ */
+public final class ProjectsEvent {
+    public enum Type {
+        PROJECT_ADDED,
+        PROJECT_REMOVED,
+        TASK_ADDED,
+        TASK_REMOVED,
+        TASK_UPDATED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final Project project;
+    private final Task task;
+    private final TaskState state;
+    private final TaskPrio prio;
+    private final String takenBy;
+
+    ProjectsEvent(long sequence, Type type, Project project, Task task) {
+        this.sequence = sequence;
+        this.type = type;
+        this.project = project;
+        this.task = task;
+        this.state = task == null ? null : task.getState();
+        this.prio = task == null ? null : task.getPrio();
+        this.takenBy = task == null ? null : task.getTakenBy();
+    }
+
+    /**
+     * @return The number of the event in its stream, one more than that of the event before.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Project getProject() {
+        return project;
+    }
+
+    /**
+     * @return The task, or {@code null} for a project event.
+     */
+    public Task getTask() {
+        return task;
+    }
+
+    /**
+     * @return The state of the task when the event was published, or {@code null} for a project event.
+     */
+    public TaskState getState() {
+        return state;
+    }
+
+    /**
+     * @return The priority of the task when the event was published, or {@code null} for a project event.
+     */
+    public TaskPrio getPrio() {
+        return prio;
+    }
+
+    /**
+     * @return The user who had taken the task when the event was published, or {@code null}.
+     */
+    public String getTakenBy() {
+        return takenBy;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + type + " " + project.getName() + (task == null ? "" : " " + task);
+    }
+}
@@ -0,0 +1,230 @@
+package model;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Publishes the changes made to the projects of a {@code ProjectsManager}, and to their tasks,
+ * as a stream of {@link ProjectsEvent}s that any number of subscribers read at their own pace.
+ * <p>
+ * The events are kept in a ring buffer of a fixed capacity, shared by all subscribers, each of
+ * which only keeps the number of the next event it will read. Publishing an event takes no lock
+ * and never waits: listeners are called while the changed project is locked, so the thread
+ * making a change must not wait for a subscriber. Instead the capacity bounds how far a
+ * subscriber may fall behind. A subscriber that falls further behind has missed events, and
+ * is told so by {@link Subscription#poll}; it then calls {@link Subscription#resync()} and
+ * rebuilds its view from the manager.
+ * <p>
+ * A live view is kept by subscribing, then reading the current projects and tasks, then
+ * applying the events as they come. Events of changes made while the view was read are applied
+ * to it again, so applying an event must not fail if the view already shows the change.
+ */
+public class ProjectsEventStream implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final ProjectsManager manager;
+    private final ProjectsListener publisher;
+    private final AtomicReferenceArray<ProjectsEvent> ring;
+    private final int mask;
+    private final AtomicLong nextSequence;
+    private final Object signal;
+    private volatile int waiting;
+
+    public ProjectsEventStream(ProjectsManager manager) {
+        this(manager, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Starts publishing the changes made to the projects of a manager.
+     * @param manager  The manager whose changes are published.
+     * @param capacity The number of events kept for subscribers, a power of two.
+     * @throws IllegalArgumentException if the capacity is not a power of two.
+     */
+    public ProjectsEventStream(ProjectsManager manager, int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.manager = manager;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.nextSequence = new AtomicLong();
+        this.signal = new Object();
+        this.publisher = new Publisher();
+        manager.addListener(publisher);
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return A subscription that reads the events published from now on.
+     */
+    public Subscription subscribe() {
+        return new Subscription(nextSequence.get());
+    }
+
+    /**
+     * Stops publishing changes. Subscribers can still read the events published before.
+     */
+    @Override
+    public void close() {
+        manager.removeListener(publisher);
+    }
+
+    /**
+     * Numbers an event and stores it in its slot of the ring, unless a later event already
+     * took the slot, then wakes up the subscribers waiting for events.
+     */
+    private void publish(ProjectsEvent.Type type, Project project, Task task) {
+        long sequence = nextSequence.getAndIncrement();
+        ProjectsEvent event = new ProjectsEvent(sequence, type, project, task);
+        int slot = (int) sequence & mask;
+        ProjectsEvent previous;
+        do {
+            previous = ring.get(slot);
+            if (previous != null && previous.getSequence() > sequence) {
+                return;
+            }
+        } while (!ring.compareAndSet(slot, previous, event));
+        if (waiting > 0) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * The position of one subscriber in the stream. A subscription is meant to be read by one
+     * thread at a time.
+     */
+    public final class Subscription {
+        private long next;
+
+        private Subscription(long next) {
+            this.next = next;
+        }
+
+        /**
+         * @return The number of the next event this subscription will read.
+         */
+        public long getNextSequence() {
+            return next;
+        }
+
+        /**
+         * @return The number of events published, or being published, that this subscription
+         *         has not read yet.
+         */
+        public long getLag() {
+            return nextSequence.get() - next;
+        }
+
+        /**
+         * @return Whether events this subscription has not read yet have been overwritten.
+         */
+        public boolean isOverrun() {
+            ProjectsEvent event = ring.get((int) next & mask);
+            return event != null && event.getSequence() > next;
+        }
+
+        /**
+         * Moves this subscription to the end of the stream, skipping the events it has not read.
+         */
+        public void resync() {
+            next = nextSequence.get();
+        }
+
+        /**
+         * Reads the events that have been published, without waiting.
+         * @param events Receives the events, in order.
+         * @param max    The maximum number of events to read.
+         * @return The number of events read.
+         * @throws IllegalStateException if the subscription has fallen so far behind that
+         *                               events it has not read were overwritten.
+         */
+        public int poll(Collection<? super ProjectsEvent> events, int max) {
+            int count = 0;
+            while (count < max) {
+                ProjectsEvent event = ring.get((int) next & mask);
+                if (event == null || event.getSequence() < next) {
+                    break;
+                }
+                if (event.getSequence() > next) {
+                    throw new IllegalStateException("Subscription fell more than " + getCapacity()
+                            + " events behind, event " + next + " was lost");
+                }
+                events.add(event);
+                next++;
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * Reads the events that have been published, waiting for one if there are none yet.
+         * @param events  Receives the events, in order.
+         * @param max     The maximum number of events to read.
+         * @param timeout How long to wait for an event.
+         * @param unit    The unit of the timeout.
+         * @return The number of events read, {@code 0} if none was published in time.
+         * @throws IllegalStateException if the subscription has fallen so far behind that
+         *                               events it has not read were overwritten.
+         */
+        public int poll(Collection<? super ProjectsEvent> events, int max, long timeout, TimeUnit unit)
+                throws InterruptedException {
+            int count = poll(events, max);
+            if (count > 0 || max <= 0) {
+                return count;
+            }
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            synchronized (signal) {
+                waiting++;
+                try {
+                    while ((count = poll(events, max)) == 0) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(signal, remaining);
+                    }
+                } finally {
+                    waiting--;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Publishes every change reported by the manager.
+     */
+    private class Publisher implements ProjectsListener {
+        @Override
+        public void projectAdded(Project project) {
+            publish(ProjectsEvent.Type.PROJECT_ADDED, project, null);
+        }
+
+        @Override
+        public void projectRemoved(Project project) {
+            publish(ProjectsEvent.Type.PROJECT_REMOVED, project, null);
+        }
+
+        @Override
+        public void taskAdded(Project project, Task task) {
+            publish(ProjectsEvent.Type.TASK_ADDED, project, task);
+        }
+
+        @Override
+        public void taskRemoved(Project project, Task task) {
+            publish(ProjectsEvent.Type.TASK_REMOVED, project, task);
+        }
+
+        @Override
+        public void taskUpdated(Project project, Task task) {
+            publish(ProjectsEvent.Type.TASK_UPDATED, project, task);
+        }
+    }
+}
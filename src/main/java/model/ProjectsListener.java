@@ -0,0 +1,61 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Receives the changes made to the projects of a {@code ProjectsManager}, and to their tasks.
+ * Listeners are called on the thread making the change, after it has been made.
+ * Loading stored projects and tasks is not reported.
+ * @see ProjectsManager#addListener(ProjectsListener)
+ * @see ProjectsEventStream
+ */
+public interface ProjectsListener {
+    default void projectAdded(Project project) {}
+
+    default void projectRemoved(Project project) {}
+
+    default void taskAdded(Project project, Task task) {}
+
+    default void taskRemoved(Project project, Task task) {}
+
+    /**
+     * Called when the state, priority or taken-by user of a task has changed.
+     */
+    default void taskUpdated(Project project, Task task) {}
+
+    /**
+     * Called when a {@link TaskBatch} has been applied to a project, with the tasks it added,
+     * updated and removed, each listed once with its state after the batch. A task the batch
+     * added and removed again is in the first and the last list. Applying the lists in order,
+     * added before updated before removed, has the same result as the batch.
+     * By default, the tasks are reported one by one, in that order.
+     */
+    default void tasksChanged(Project project, List<Task> added, List<Task> updated, List<Task> removed) {
+        for (Task task : added) {
+            taskAdded(project, task);
+        }
+        for (Task task : updated) {
+            taskUpdated(project, task);
+        }
+        for (Task task : removed) {
+            taskRemoved(project, task);
+        }
+    }
+
+    /**
+     * Called when a {@link ProjectsBatch} has been applied, with the projects it added and the
+     * changes it made to the tasks of each project, in the order the batch first named the
+     * projects. The whole batch is reported in this one call, so a listener can record it as
+     * one unit, as the journal does.
+     * By default, the new projects are reported with {@link #projectAdded}, and then the task
+     * changes of each project with {@link #tasksChanged}.
+     */
+    default void batchApplied(List<Project> added, List<TaskChanges> changes) {
+        for (Project project : added) {
+            projectAdded(project);
+        }
+        for (TaskChanges change : changes) {
+            tasksChanged(change.project(), change.added(), change.updated(), change.removed());
+        }
+    }
+}
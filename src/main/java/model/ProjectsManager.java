@@ -1,33 +1,148 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import metrics.Metrics;
+import metrics.Operation;
+import model.matcher.ITaskMatcher;
+import model.matcher.TaskIndex;
+import utils.ConcurrentIntHashMap;
+import utils.PersistentIntMap;
+import utils.TextIndex;
 
 /**
  * Manages a collection of {@code Project} objects, providing functionalities to add,
  * remove, search, and retrieve projects.
  * Each project is assigned a unique ID when added, and project titles must be unique.
+ * Projects are indexed by ID and by title, so lookups do not scan the project list, and by
+ * the words of their title and description, for {@link #searchProjects}.
+ * Tasks are found across all projects with {@link #findTasks}, which searches the projects
+ * in parallel.
+ * Changes to the projects and their tasks are reported to the registered {@link ProjectsListener}s.
+ * Many changes are applied at once, updating the indexes and listeners once, with {@link #batch()}.
+ * <p>
+ * A manager can be shared between threads. IDs are handed out atomically, and a title is
+ * claimed in the title index before the project is added, so titles stay unique when
+ * projects are added at the same time. {@link #getProjectById}, {@link #findProjects} and
+ * {@link #getProjects} do not lock. A project is added and removed holding its own lock,
+ * see {@link Project}, so its listeners hear of it before any change to its tasks.
+ * {@link #setProjects} is meant for loading the projects before the manager is shared.
+ * <p>
+ * Readers that need all projects and tasks as of one moment take a version of them, a
+ * {@link ProjectsSnapshot}, with {@link #snapshot()}, without locking. Every change publishes
+ * the new version of its project into it with a compare-and-set, holding the lock of the
+ * project, and a {@link ProjectsBatch} publishes the versions of all its projects with one.
  */
 public class ProjectsManager {
-    private final List<Project> projects;
-    private int nextProjectId;
+    /**
+     * The estimated number of candidate tasks below which projects are searched by one thread.
+     */
+    static final int SEQUENTIAL_QUERY_COST = 8192;
+
+    private final AtomicReference<PersistentIntMap<Project>> projects;
+    private final ConcurrentIntHashMap<Project> projectsById;
+    private final Map<String, Project> projectsByTitle;
+    private final TextIndex<Project> projectsText;
+    private final List<ProjectsListener> listeners;
+    private final ProjectsListener dispatcher;
+    private final AtomicInteger nextProjectId;
+    private final AtomicReference<ProjectsSnapshot> snapshot;
 
     public ProjectsManager() {
-        projects = new ArrayList<>();
-        nextProjectId = 1;
+        projects = new AtomicReference<>(PersistentIntMap.empty());
+        projectsById = new ConcurrentIntHashMap<>();
+        projectsByTitle = new ConcurrentHashMap<>();
+        projectsText = new TextIndex<>(Project::compareTo);
+        listeners = new CopyOnWriteArrayList<>();
+        dispatcher = new Dispatcher();
+        nextProjectId = new AtomicInteger(1);
+        snapshot = new AtomicReference<>(ProjectsSnapshot.EMPTY);
+    }
+
+    /**
+     * Registers a listener to be told about every change to the projects and their tasks.
+     * Consumers that should not run on the thread making the change read a
+     * {@link ProjectsEventStream} instead.
+     * @param listener The listener to add.
+     */
+    public void addListener(ProjectsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ProjectsListener listener) {
+        listeners.remove(listener);
     }
 
     /**
      * Replaces the current list of projects with the specified list.
-     * Clears the existing list and sets the {@code nextProjectId} based on the size of the new list.
+     * Clears the existing list and indexes, and sets the {@code nextProjectId} to one more
+     * than the highest ID in the new list.
      * @param newProjects The new list of projects to manage.
      */
-    public void setProjects(List<Project> newProjects) {
-        projects.clear();
+    public synchronized void setProjects(List<Project> newProjects) {
+        for (Project project : projects.get().values()) {
+            project.setManager(null);
+        }
+        projectsById.clear();
+        projectsByTitle.clear();
+        projectsText.clear();
+        int maxId = 0;
+        PersistentIntMap.Builder<Project> builder = PersistentIntMap.<Project>empty().builder();
         if (newProjects != null) {
-            projects.addAll(newProjects);
+            for (Project project : newProjects) {
+                builder.put(project.getId(), project);
+                projectsById.put(project.getId(), project);
+                projectsByTitle.put(project.getName(), project);
+                indexText(project);
+                project.setManager(this);
+                maxId = Math.max(maxId, project.getId());
+            }
+        }
+        projects.set(builder.build());
+        snapshot.updateAndGet(ProjectsSnapshot::cleared);
+        for (Project project : projects.get().values()) {
+            project.lock().lock();
+            try {
+                published(project.snapshot());
+            } finally {
+                project.lock().unlock();
+            }
+        }
+        nextProjectId.set(maxId + 1);
+    }
+
+    /**
+     * Adds a stored project, keeping its ID. Used when changes are replayed from storage,
+     * and not reported to the listeners.
+     * @param project The project to add.
+     * @throws IllegalArgumentException if the ID or title of the project is already in use.
+     */
+    public synchronized void restoreProject(Project project) {
+        if (projectsById.containsKey(project.getId())
+                || projectsByTitle.putIfAbsent(project.getName(), project) != null) {
+            throw new IllegalArgumentException("The project id and title must be unique");
+        }
+        projects.updateAndGet(current -> current.with(project.getId(), project));
+        projectsById.put(project.getId(), project);
+        indexText(project);
+        project.lock().lock();
+        try {
+            project.setManager(this);
+            published(project.snapshot());
+        } finally {
+            project.lock().unlock();
         }
-        nextProjectId = projects.size() + 1;
+        nextProjectId.accumulateAndGet(project.getId() + 1, Math::max);
     }
 
     /**
@@ -36,12 +151,7 @@ public class ProjectsManager {
      * @return {@code true} if the title is unique, {@code false} otherwise.
      */
     public boolean isTitleUnique(String title) {
-        for (Project project : projects) {
-            if (project.getName().equals(title)) {
-                return false;
-            }
-        }
-        return true;
+        return !projectsByTitle.containsKey(title);
     }
 
     /**
@@ -53,20 +163,124 @@ public class ProjectsManager {
      * @throws IllegalArgumentException if the project title is not unique.
      */
     public Project addProject(String title, String description) {
+        long start = Metrics.start();
         if (!isTitleUnique(title)) {
             throw new IllegalArgumentException("The project title must be unique");
         }
-        Project newProject = new Project(title, description, nextProjectId++);
-        projects.add(newProject);
+        Project newProject = newProject(title, description);
+        newProject.lock().lock();
+        try {
+            if (!claimTitle(newProject)) {
+                throw new IllegalArgumentException("The project title must be unique");
+            }
+            added(newProject);
+        } finally {
+            newProject.lock().unlock();
+        }
+        Metrics.record(Operation.ADD_PROJECT, start);
         return newProject;
     }
 
+    /**
+     * Starts a batch of changes to several projects, which can add projects as well as change
+     * their tasks. See {@link ProjectsBatch}.
+     * @return A new, empty batch.
+     */
+    public ProjectsBatch batch() {
+        return new ProjectsBatch(this);
+    }
+
+    /**
+     * @return A new project with the next ID, not added yet.
+     */
+    Project newProject(String title, String description) {
+        return new Project(title, description, nextProjectId.getAndIncrement());
+    }
+
+    /**
+     * Claims the title of a new project in the title index.
+     * @return {@code false} if the title is in use.
+     */
+    boolean claimTitle(Project project) {
+        return projectsByTitle.putIfAbsent(project.getName(), project) == null;
+    }
+
+    void releaseTitle(Project project) {
+        projectsByTitle.remove(project.getName(), project);
+    }
+
+    /**
+     * Adds a new project whose title has been claimed, holding its lock, and reports it.
+     */
+    void added(Project project) {
+        register(project);
+        published(project.snapshot());
+        dispatcher.projectAdded(project);
+    }
+
+    /**
+     * Adds a new project whose title has been claimed, holding its lock, without reporting it.
+     */
+    void register(Project project) {
+        projectsById.put(project.getId(), project);
+        projects.updateAndGet(current -> current.with(project.getId(), project));
+        indexText(project);
+        project.setManager(this);
+    }
+
+    /**
+     * Returns the current version of all projects, which does not change when they do. It is
+     * the version the last change published, read without locking: it holds the published
+     * snapshot of every project, see {@link Project#snapshot()}, and all changes of a
+     * {@link ProjectsBatch} or none.
+     * @return The current snapshot of the projects.
+     */
+    public ProjectsSnapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Publishes the new version of a project, holding the lock of the project, so the
+     * versions of a project are published in the order they were made.
+     */
+    void published(ProjectSnapshot project) {
+        snapshot.updateAndGet(last -> last.with(project));
+    }
+
+    /**
+     * Publishes the new versions of the projects of a batch, holding their locks, at once.
+     */
+    void published(List<ProjectSnapshot> projects) {
+        snapshot.updateAndGet(last -> last.with(projects));
+    }
+
+    ProjectsListener dispatcher() {
+        return dispatcher;
+    }
+
     /**
      * Removes the specified project from the list of managed projects.
      * @param project The project to be removed.
      */
     public void removeProject(Project project) {
-        projects.removeIf(p -> p.equals(project));
+        if (project == null) {
+            return;
+        }
+        project.lock().lock();
+        try {
+            if (projectsById.get(project.getId()) != project) {
+                return;
+            }
+            projectsById.remove(project.getId());
+            projectsByTitle.remove(project.getName(), project);
+            projects.updateAndGet(current -> current.without(project.getId()));
+            snapshot.updateAndGet(last -> last.without(project.getId()));
+            projectsText.remove(project.getId(), project.getName(), project.getName(), project.getDescription());
+            project.setManager(null);
+            dispatcher.projectRemoved(project);
+        } finally {
+            project.lock().unlock();
+        }
     }
 
     /**
@@ -75,12 +289,7 @@ public class ProjectsManager {
      * @return The {@code Project} with the given ID, or {@code null} if no such project exists.
      */
     public Project getProjectById(int id) {
-        for (Project project : projects) {
-            if (project.getId() == id) {
-                return project;
-            }
-        }
-        return null;
+        return projectsById.get(id);
     }
 
     /**
@@ -89,21 +298,228 @@ public class ProjectsManager {
      * @return A list of {@code Project} objects with titles containing the given string.
      */
     public List<Project> findProjects(String title) {
+        long start = Metrics.start();
         List<Project> result = new ArrayList<>();
-        for (Project project : projects) {
+        for (Project project : projects.get().values()) {
             if (project.getName().contains(title)) {
                 result.add(project);
             }
         }
+        Metrics.record(Operation.FIND_PROJECTS, start);
         return result;
     }
 
     /**
-     * Retrieves the list of all projects managed by this manager.
+     * Searches the titles and descriptions of the projects for the words of the query.
+     * Every word must occur in a found project; a word ending in {@code *} matches any word
+     * starting with it. Words in the title count twice. See {@link TextIndex}.
+     * @param query The words to search for, for instance {@code "web*"}.
+     * @param limit The maximum number of projects to return.
+     * @return The best matching projects, best first.
+     */
+    public List<Project> searchProjects(String query, int limit) {
+        long start = Metrics.start();
+        List<Project> found = projectsText.search(query, limit);
+        Metrics.record(Operation.SEARCH_PROJECTS, start);
+        return found;
+    }
+
+    /**
+     * Finds the tasks of all projects that match the specified criteria, in natural order,
+     * one page at a time. The projects are searched in parallel on the common fork-join pool,
+     * each for only as many tasks as the page needs, and the sorted results are merged.
+     * Tasks that are equal in {@link TaskIndex#ORDER} are ordered by the position of their
+     * project in {@link #getProjects()}, so pages do not overlap as long as the tasks do not change.
+     * @param matcher The matcher used to filter tasks.
+     * @param offset  The number of matching tasks to skip.
+     * @param limit   The maximum number of tasks to return.
+     * @return The matching tasks from {@code offset} on, at most {@code limit}.
+     * @throws IllegalArgumentException if the offset or limit is negative.
+     */
+    public List<Task> findTasks(ITaskMatcher matcher, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must not be negative");
+        }
+        long start = Metrics.start();
+        int wanted = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        List<Task> found = wanted == 0 ? List.of() : ForkJoinPool.commonPool().invoke(new FindTasks(matcher, wanted));
+        List<Task> page = offset >= found.size() ? new ArrayList<>() : new ArrayList<>(found.subList(offset, found.size()));
+        Metrics.record(Operation.FIND_TASKS_ACROSS_PROJECTS, start);
+        return page;
+    }
+
+    /**
+     * Retrieves the list of all projects managed by this manager, in the order of their IDs.
      * The returned list is a copy, so modifications to it will not affect the original list.
+     * It is a snapshot: projects added or removed later are not reflected.
      * @return A list of all {@code Project} objects.
      */
     public List<Project> getProjects() {
-        return new ArrayList<>(projects);
+        return new ArrayList<>(projects.get().values());
+    }
+
+    /**
+     * Iterates over the projects without copying them. Like {@link #getProjects()}, the
+     * iteration sees the projects as they were when it started.
+     * @return An iterator over all projects, which cannot remove them.
+     */
+    public Iterator<Project> iterateProjects() {
+        return projects.get().values().iterator();
+    }
+
+    /**
+     * Returns a page of the projects: the first ones with an ID above the given one, in the
+     * order of their IDs. To page through the projects, pass the ID of the last project of a
+     * page to get the next one. The first project of the page is looked up by its ID, and only
+     * the page is copied.
+     * @param afterId The ID to start after, {@code 0} for the first page.
+     * @param limit   The maximum number of projects to return.
+     * @return At most {@code limit} projects.
+     */
+    public List<Project> getProjects(int afterId, int limit) {
+        PersistentIntMap<Project> current = projects.get();
+        List<Project> page = new ArrayList<>(Math.max(0, Math.min(limit, current.size())));
+        if (afterId == Integer.MAX_VALUE) {
+            return page;
+        }
+        for (Iterator<Project> it = current.valuesFrom(afterId + 1); it.hasNext() && page.size() < limit; ) {
+            page.add(it.next());
+        }
+        return page;
+    }
+
+    private void indexText(Project project) {
+        projectsText.add(project.getId(), project, project.getName(), project.getName(), project.getDescription());
+    }
+
+    /**
+     * Finds the first matching tasks of a range of projects: splits the range in two halves of
+     * about the same estimated cost until a range is cheap enough for one thread, then merges
+     * the sorted results of the halves.
+     */
+    private final class FindTasks extends RecursiveTask<List<Task>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ITaskMatcher matcher;
+        private final int limit;
+        private final transient Project[] projects;
+        private final transient long[] costs; // costs[i] is the estimated cost of the projects before i
+        private final int from;
+        private final int to;
+
+        FindTasks(ITaskMatcher matcher, int limit) {
+            this.matcher = matcher;
+            this.limit = limit;
+            this.projects = ProjectsManager.this.projects.get().values().toArray(new Project[0]);
+            this.costs = new long[projects.length + 1];
+            for (int i = 0; i < projects.length; i++) {
+                costs[i + 1] = costs[i] + projects[i].estimateCostWithoutLoading(matcher);
+            }
+            this.from = 0;
+            this.to = projects.length;
+        }
+
+        private FindTasks(FindTasks parent, int from, int to) {
+            this.matcher = parent.matcher;
+            this.limit = parent.limit;
+            this.projects = parent.projects;
+            this.costs = parent.costs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Task> compute() {
+            if (to - from <= 1 || costs[to] - costs[from] <= SEQUENTIAL_QUERY_COST) {
+                List<Task> found = List.of();
+                for (int i = from; i < to; i++) {
+                    found = merge(found, projects[i].findTasks(matcher, limit), limit);
+                }
+                return found;
+            }
+            int middle = Arrays.binarySearch(costs, from, to, (costs[from] + costs[to]) / 2);
+            middle = Math.max(from + 1, Math.min(to - 1, middle < 0 ? -middle - 1 : middle));
+            FindTasks second = new FindTasks(this, middle, to);
+            second.fork();
+            List<Task> first = new FindTasks(this, from, middle).compute();
+            return merge(first, second.join(), limit);
+        }
+
+        /**
+         * Merges two sorted lists into one of at most {@code limit} tasks, the tasks of the
+         * first list before equal ones of the second.
+         */
+        private static List<Task> merge(List<Task> first, List<Task> second, int limit) {
+            if (second.isEmpty() || first.isEmpty()) {
+                List<Task> merged = first.isEmpty() ? second : first;
+                return merged.size() > limit ? merged.subList(0, limit) : merged;
+            }
+            List<Task> merged = new ArrayList<>(Math.min(limit, first.size() + second.size()));
+            int i = 0;
+            int j = 0;
+            while (merged.size() < limit && (i < first.size() || j < second.size())) {
+                if (j == second.size()
+                        || i < first.size() && TaskIndex.ORDER.compare(first.get(i), second.get(j)) <= 0) {
+                    merged.add(first.get(i++));
+                } else {
+                    merged.add(second.get(j++));
+                }
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * Forwards the changes reported by the projects, and by this manager, to all listeners.
+     */
+    private class Dispatcher implements ProjectsListener {
+        @Override
+        public void projectAdded(Project project) {
+            for (ProjectsListener listener : listeners) {
+                listener.projectAdded(project);
+            }
+        }
+
+        @Override
+        public void projectRemoved(Project project) {
+            for (ProjectsListener listener : listeners) {
+                listener.projectRemoved(project);
+            }
+        }
+
+        @Override
+        public void taskAdded(Project project, Task task) {
+            for (ProjectsListener listener : listeners) {
+                listener.taskAdded(project, task);
+            }
+        }
+
+        @Override
+        public void taskRemoved(Project project, Task task) {
+            for (ProjectsListener listener : listeners) {
+                listener.taskRemoved(project, task);
+            }
+        }
+
+        @Override
+        public void taskUpdated(Project project, Task task) {
+            for (ProjectsListener listener : listeners) {
+                listener.taskUpdated(project, task);
+            }
+        }
+
+        @Override
+        public void tasksChanged(Project project, List<Task> added, List<Task> updated, List<Task> removed) {
+            for (ProjectsListener listener : listeners) {
+                listener.tasksChanged(project, added, updated, removed);
+            }
+        }
+
+        @Override
+        public void batchApplied(List<Project> added, List<TaskChanges> changes) {
+            for (ProjectsListener listener : listeners) {
+                listener.batchApplied(added, changes);
+            }
+        }
     }
 }
@@ -0,0 +1,85 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import utils.PersistentIntMap;
+
+/**
+ * One version of all projects of a {@link ProjectsManager}: a {@link ProjectSnapshot} per
+ * project. The manager makes the next version from the last one whenever a project is added
+ * or removed or publishes a new version of its tasks, and makes one version for all changes
+ * of a {@link ProjectsBatch}. Immutable, so it is read without locking, see
+ * {@link ProjectsManager#snapshot()}.
+ */
+public final class ProjectsSnapshot {
+    static final ProjectsSnapshot EMPTY = new ProjectsSnapshot(0, PersistentIntMap.empty());
+
+    private final long version;
+    private final PersistentIntMap<ProjectSnapshot> projects;
+
+    private ProjectsSnapshot(long version, PersistentIntMap<ProjectSnapshot> projects) {
+        this.version = version;
+        this.projects = projects;
+    }
+
+    /**
+     * @return The version of the projects, which grows with every change the manager publishes.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The snapshots of the projects, in the order of their IDs.
+     */
+    public List<ProjectSnapshot> getProjects() {
+        return new ArrayList<>(projects.values());
+    }
+
+    /**
+     * @param id The ID of the project.
+     * @return The snapshot of the project with the given ID, or {@code null} if there was none.
+     */
+    public ProjectSnapshot getProject(int id) {
+        return projects.get(id);
+    }
+
+    public int getProjectCount() {
+        return projects.size();
+    }
+
+    /**
+     * @param project The new version of a project.
+     * @return The next version, with the given version of the project.
+     */
+    ProjectsSnapshot with(ProjectSnapshot project) {
+        return new ProjectsSnapshot(version + 1, projects.with(project.getProject().getId(), project));
+    }
+
+    /**
+     * @param changed The new versions of several projects.
+     * @return The next version, with the given versions of the projects.
+     */
+    ProjectsSnapshot with(List<ProjectSnapshot> changed) {
+        PersistentIntMap.Builder<ProjectSnapshot> builder = projects.builder();
+        for (ProjectSnapshot project : changed) {
+            builder.put(project.getProject().getId(), project);
+        }
+        return new ProjectsSnapshot(version + 1, builder.build());
+    }
+
+    /**
+     * @return The next version, without the project with the given ID.
+     */
+    ProjectsSnapshot without(int id) {
+        return new ProjectsSnapshot(version + 1, projects.without(id));
+    }
+
+    /**
+     * @return The next version, without any project.
+     */
+    ProjectsSnapshot cleared() {
+        return new ProjectsSnapshot(version + 1, PersistentIntMap.empty());
+    }
+}
@@ -1,17 +1,59 @@
 package model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.LocalDate;
 import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * A task of a {@link Project}. The values that change, its state, priority, taken-by user and
+ * last update date, are kept together in one immutable {@link TaskSnapshot}, which a change
+ * replaces. The snapshots of the project share it, so a task is not copied for them.
+ * <p>
+ * A task is an object of its own rather than a view over columns of primitive values kept by
+ * its project: a claim is a compare-and-set on the task, and the indexes, snapshots, listeners
+ * and callers hold tasks across changes and compare them by identity. Its dates and the name
+ * of its user are shared with other tasks, see {@link Dates} and {@link Assignees}.
+ * <p>
+ * The task is serialized with the fields it had before its values were kept in a snapshot,
+ * so projects stored with Java serialization can still be read.
+ */
 public class Task implements Comparable<Task>, Serializable {
-    private final int id;
-    private final String description;
-    private String takenBy;
-    private TaskState state;
-    private TaskPrio prio;
-    private LocalDate lastUpdated;
-    private final LocalDate created;
+    private static final long serialVersionUID = -6592222043394737042L;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("id", int.class),
+            new ObjectStreamField("description", String.class),
+            new ObjectStreamField("takenBy", String.class),
+            new ObjectStreamField("state", TaskState.class),
+            new ObjectStreamField("prio", TaskPrio.class),
+            new ObjectStreamField("lastUpdated", LocalDate.class),
+            new ObjectStreamField("created", LocalDate.class),
+    };
+    private static final VarHandle VALUES;
+    private static final Lock REMOVED_LOCK = new ReentrantLock(); // removed tasks are rarely changed
+
+    static {
+        try {
+            VALUES = MethodHandles.lookup().findVarHandle(Task.class, "values", TaskSnapshot.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // not final only because readObject sets them; they never change
+    private int id;
+    private String description;
+    private LocalDate created;
+    private transient volatile TaskSnapshot values;
+    private transient volatile Project project;
+    private transient volatile boolean dirty;
 
     /**
      * Constructs a new {@code Task} with the specified ID, description, and priority.
@@ -23,25 +65,104 @@ public class Task implements Comparable<Task>, Serializable {
     Task(int id, String description, TaskPrio prio) {
         this.id = id;
         this.description = description;
-        this.takenBy = takenBy;
-        this.state = TaskState.TO_DO;
-        this.prio = prio;
-        this.created = LocalDate.now();
-        this.lastUpdated = created;
+        this.created = Dates.today();
+        this.values = new TaskSnapshot(this, TaskState.TO_DO, prio, null, created);
+        this.dirty = true;
+    }
+
+    /**
+     * Constructs a {@code Task} with all its fields given, used when a stored task is restored.
+     */
+    Task(int id, String description, TaskPrio prio, TaskState state, String takenBy,
+         LocalDate created, LocalDate lastUpdated) {
+        this.id = id;
+        this.description = description;
+        this.created = Dates.shared(created);
+        this.values = new TaskSnapshot(this, state, prio, Assignees.shared(takenBy), Dates.shared(lastUpdated));
     }
 
     /**
      * Sets the user who has taken the task.
      * Throws an {@code IllegalStateException} if the task has already been taken by someone.
+     * Like {@link #claim}, only one of several users taking the task at the same time succeeds.
      * @param takenBy The name of the user taking the task.
      * @throws IllegalStateException if the task is already taken.
      */
     public void setTakenBy(String takenBy) {
-        if (this.takenBy != null && !this.takenBy.isEmpty()) {
+        if (compareAndSetTakenBy(takenBy) != null) {
             throw new IllegalStateException("Task is already taken by someone.");
         }
-        this.takenBy = takenBy;
-        this.lastUpdated = LocalDate.now();
+        recordClaim();
+    }
+
+    /**
+     * Takes the task for the given user, unless someone has already taken it.
+     * The task is claimed with a single compare-and-set, so of several users claiming the
+     * task at the same time exactly one succeeds, and the others do not wait for a lock.
+     * @param user The name of the user taking the task.
+     * @return The user who has taken the task: the given user if the claim succeeded,
+     *         or the user who had taken it before.
+     * @throws IllegalArgumentException if the user is {@code null} or empty.
+     * @see Project#claimTasks(String, TaskPrio, int)
+     */
+    public String claim(String user) {
+        if (isFree(user)) {
+            throw new IllegalArgumentException("A task must be claimed by a user");
+        }
+        String owner = compareAndSetTakenBy(user);
+        if (owner != null) {
+            return owner;
+        }
+        recordClaim();
+        return user;
+    }
+
+    /**
+     * Sets the user who has taken the task if nobody has, without locking and without
+     * updating the indexes of the project, which the caller must do.
+     * @return {@code null} if the task was taken, otherwise the user who had taken it.
+     */
+    String compareAndSetTakenBy(String user) {
+        String name = null; // shared once the task is found free, so lost claims add no names
+        while (true) {
+            TaskSnapshot old = values;
+            if (!isFree(old.getTakenBy())) {
+                return old.getTakenBy();
+            }
+            if (name == null) {
+                name = Assignees.shared(user);
+            }
+            TaskSnapshot taken = new TaskSnapshot(this, old.getState(), old.getPrio(), name, Dates.today());
+            if (VALUES.compareAndSet(this, old, taken)) {
+                dirty = true;
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Gives back a task taken by {@link #compareAndSetTakenBy} for a batch that failed, before
+     * the claim was recorded. The batch holds the lock of the project, and nobody else can
+     * change a taken task without it.
+     * @param lastUpdated The last update date before the task was taken.
+     */
+    void releaseTakenBy(LocalDate lastUpdated) {
+        TaskSnapshot taken = values;
+        values = new TaskSnapshot(this, taken.getState(), taken.getPrio(), null, lastUpdated);
+    }
+
+    private void recordClaim() {
+        Project owner = project;
+        if (owner != null) {
+            owner.taskClaimed(this);
+        }
+    }
+
+    /**
+     * @return {@code true} if a task taken by the given user counts as not taken.
+     */
+    static boolean isFree(String takenBy) {
+        return takenBy == null || takenBy.isEmpty();
     }
 
     /**
@@ -49,8 +170,15 @@ public class Task implements Comparable<Task>, Serializable {
      * @param state The new {@code TaskState} of the task.
      */
     public void setState(TaskState state) {
-        this.state = state;
-        this.lastUpdated = LocalDate.now();
+        Lock lock = lock();
+        lock.lock();
+        try {
+            unindex();
+            change(state, null);
+            reindex();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -58,8 +186,121 @@ public class Task implements Comparable<Task>, Serializable {
      * @param prio The new priority of the task.
      */
     public void setPrio(TaskPrio prio) {
-        this.prio = prio;
-        this.lastUpdated = LocalDate.now();
+        Lock lock = lock();
+        lock.lock();
+        try {
+            unindex();
+            change(null, prio);
+            reindex();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restores the state, priority, taken-by user and last update date of the task, as stored.
+     * Unlike the setters, this does not check whether the task is taken, and does not report
+     * a change to the listeners of the project.
+     */
+    public void restoreState(TaskState state, TaskPrio prio, String takenBy, LocalDate lastUpdated) {
+        Lock lock = lock();
+        lock.lock();
+        try {
+            unindex();
+            this.values = new TaskSnapshot(this, state, prio, Assignees.shared(takenBy), Dates.shared(lastUpdated));
+            this.dirty = true;
+            Project owner = project;
+            if (owner != null) {
+                owner.indexTask(this);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the state and priority of the task for a {@link TaskBatch}. The batch holds the lock
+     * of the project, and takes the task out of the indexes before and back in after.
+     */
+    void applyBatch(TaskState state, TaskPrio prio) {
+        change(state, prio);
+    }
+
+    /**
+     * Replaces the values of the task with the given state and priority, updated today, holding
+     * the lock. A claim made without the lock can replace them meanwhile, and is kept.
+     * @param state The new state, or {@code null} to keep it.
+     * @param prio  The new priority, or {@code null} to keep it.
+     */
+    private void change(TaskState state, TaskPrio prio) {
+        LocalDate today = Dates.today();
+        while (true) {
+            TaskSnapshot old = values;
+            TaskSnapshot changed = new TaskSnapshot(this, state != null ? state : old.getState(),
+                    prio != null ? prio : old.getPrio(), old.getTakenBy(), today);
+            if (VALUES.compareAndSet(this, old, changed)) {
+                dirty = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the current values of the task. They never change, as a change replaces them,
+     * so they can be read later, without the lock, as they were now.
+     * @return The current values of the task.
+     */
+    public TaskSnapshot snapshot() {
+        return values;
+    }
+
+    /**
+     * @return {@code true} if the task was created or changed since its project was last stored.
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    void clearDirty() {
+        dirty = false;
+    }
+
+    void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Sets the project that owns this task. The owning project is told about every
+     * change, so it can keep its task indexes up to date and report the change.
+     * @param project The owning project, or {@code null} if the task was removed.
+     */
+    void setProject(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Returns the lock guarding changes to this task: the lock of its project, which also
+     * guards the project's task indexes, or the lock shared by removed tasks once it was removed.
+     * A task is only removed from its project while that lock is held, so after locking,
+     * the task either still belongs to the same project or to none.
+     */
+    private Lock lock() {
+        Project owner = project;
+        return owner != null ? owner.lock() : REMOVED_LOCK;
+    }
+
+    private void unindex() {
+        Project owner = project;
+        if (owner != null) {
+            owner.unindexTask(this);
+        }
+    }
+
+    private void reindex() {
+        Project owner = project;
+        if (owner != null) {
+            owner.taskUpdated(this);
+        }
     }
 
     public int getId() {
@@ -71,28 +312,50 @@ public class Task implements Comparable<Task>, Serializable {
     }
 
     public String getTakenBy() {
-        return takenBy;
+        return values.getTakenBy();
     }
 
     public TaskState getState() {
-        return state;
+        return values.getState();
     }
 
     public TaskPrio getPrio() {
-        return prio;
+        return values.getPrio();
     }
 
     public LocalDate getLastUpdated() {
-        return lastUpdated;
+        return values.getLastUpdated();
     }
 
     public LocalDate getCreated() {
         return created;
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        TaskSnapshot current = values;
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("id", id);
+        fields.put("description", description);
+        fields.put("takenBy", current.getTakenBy());
+        fields.put("state", current.getState());
+        fields.put("prio", current.getPrio());
+        fields.put("lastUpdated", current.getLastUpdated());
+        fields.put("created", created);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        id = fields.get("id", 0);
+        description = (String) fields.get("description", null);
+        created = (LocalDate) fields.get("created", null);
+        values = new TaskSnapshot(this, (TaskState) fields.get("state", null), (TaskPrio) fields.get("prio", null),
+                Assignees.shared((String) fields.get("takenBy", null)), (LocalDate) fields.get("lastUpdated", null));
+    }
+
     @Override
     public int compareTo(Task other) {
-        int prioComparison = this.prio.compareTo(other.prio);
+        int prioComparison = getPrio().compareTo(other.getPrio());
         if (prioComparison != 0) {
             return prioComparison;
         }
@@ -104,16 +367,17 @@ public class Task implements Comparable<Task>, Serializable {
         if (this == o) return true;
         if (o == null || getClass()!= o.getClass()) return false;
         Task task = (Task) o;
-        return description.equals(task.description) && prio == task.prio;
+        return description.equals(task.description) && getPrio() == task.getPrio();
     }
 
     @Override
     public String toString() {
+        TaskSnapshot current = values;
         return "Task{" +
                 "description='" + description + '\'' +
-                ", takenBy='" + takenBy + '\'' +
-                ", state=" + state +
-                ", prio=" + prio +
+                ", takenBy='" + current.getTakenBy() + '\'' +
+                ", state=" + current.getState() +
+                ", prio=" + current.getPrio() +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,209 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Changes to the tasks of one project that are applied together: new tasks, state and priority
+ * changes, tasks taken by users, and removals. Made with {@link Project#batch()}, or with
+ * {@link ProjectsBatch#tasks(Project)} to change several projects at once.
+ * <p>
+ * The changes are collected without locking, and applied in the order they were made by
+ * {@link #apply()}, holding the lock of the project. They are checked before any of them is
+ * applied, so a batch is applied completely or not at all. Applying does the work that would
+ * otherwise be done for every change once for the batch: each index bucket takes all its new
+ * tasks at once, the aggregates of the project are updated once, and the listeners are told
+ * about the batch in one call, see {@link ProjectsListener#tasksChanged}, so the journal
+ * writes it as one record. Queries running meanwhile may miss the tasks being changed, as they
+ * may miss a single change, but the snapshots of the project, see {@link Project#snapshot()},
+ * show the batch completely or not at all.
+ * <p>
+ * A batch is not thread-safe, and is applied once.
+ */
+public final class TaskBatch {
+    private final Project project;
+    private final ProjectsBatch owner;
+    private final List<Change> changes = new ArrayList<>();
+    private final List<LocalDate> takenLastUpdated = new ArrayList<>(); // of the tasks taken so far
+    private boolean applied;
+
+    TaskBatch(Project project, ProjectsBatch owner) {
+        this.project = project;
+        this.owner = owner;
+    }
+
+    public Project getProject() {
+        return project;
+    }
+
+    /**
+     * @return The number of changes in the batch.
+     */
+    public int size() {
+        return changes.size();
+    }
+
+    /**
+     * Adds a new task that nobody has taken, see {@link Project#addTask}.
+     * @return This batch.
+     */
+    public TaskBatch add(String description, TaskPrio prio) {
+        return add(description, prio, TaskState.TO_DO, null);
+    }
+
+    /**
+     * Adds a new task, which gets the next ID of the project when the batch is applied.
+     * @param description The description of the new task.
+     * @param prio        The priority of the new task.
+     * @param state       The state of the new task.
+     * @param takenBy     The user who has taken the new task, or {@code null}.
+     * @return This batch.
+     */
+    public TaskBatch add(String description, TaskPrio prio, TaskState state, String takenBy) {
+        if (description == null || prio == null || state == null) {
+            throw new IllegalArgumentException("A task needs a description, a priority and a state");
+        }
+        changes.add(new Change(Kind.ADD, null, 0, description, prio, state, takenBy, null, null));
+        return this;
+    }
+
+    /**
+     * Restores a stored task, keeping its ID, state and dates, see {@link Project#restoreTask}.
+     * Like that method, restoring is not reported to the listeners.
+     * @return This batch.
+     */
+    public TaskBatch restore(int id, String description, TaskPrio prio, TaskState state, String takenBy,
+                             LocalDate created, LocalDate lastUpdated) {
+        changes.add(new Change(Kind.RESTORE, null, id, description, prio, state, takenBy, created, lastUpdated));
+        return this;
+    }
+
+    /**
+     * Changes the state of a task of the project, see {@link Task#setState}.
+     * @return This batch.
+     */
+    public TaskBatch setState(Task task, TaskState state) {
+        if (task == null || state == null) {
+            throw new IllegalArgumentException("A state change needs a task and a state");
+        }
+        changes.add(new Change(Kind.STATE, task, task.getId(), null, null, state, null, null, null));
+        return this;
+    }
+
+    /**
+     * Changes the priority of a task of the project, see {@link Task#setPrio}.
+     * @return This batch.
+     */
+    public TaskBatch setPrio(Task task, TaskPrio prio) {
+        if (task == null || prio == null) {
+            throw new IllegalArgumentException("A priority change needs a task and a priority");
+        }
+        changes.add(new Change(Kind.PRIO, task, task.getId(), null, prio, null, null, null, null));
+        return this;
+    }
+
+    /**
+     * Takes a task of the project for a user, see {@link Task#setTakenBy}. The task is taken
+     * with a compare-and-set when the batch is applied, before any other change, so of several
+     * users taking it at the same time only one succeeds, and the batches of the others fail.
+     * @return This batch.
+     */
+    public TaskBatch setTakenBy(Task task, String takenBy) {
+        if (task == null || Task.isFree(takenBy)) {
+            throw new IllegalArgumentException("Taking a task needs a task and a user");
+        }
+        changes.add(new Change(Kind.TAKE, task, task.getId(), null, null, null, takenBy, null, null));
+        return this;
+    }
+
+    /**
+     * Removes a task of the project, see {@link Project#removeTask}. No later change of the
+     * batch may refer to the task.
+     * @return This batch.
+     */
+    public TaskBatch remove(Task task) {
+        if (task == null) {
+            throw new IllegalArgumentException("No task to remove");
+        }
+        changes.add(new Change(Kind.REMOVE, task, task.getId(), null, null, null, null, null, null));
+        return this;
+    }
+
+    /**
+     * Applies the changes to the project.
+     * @return The tasks the batch added and restored, in the order they were added.
+     * @throws IllegalArgumentException if a change refers to a task that is not in the project,
+     *                                  or was removed earlier in the batch, or restores a task
+     *                                  with an ID in use. Nothing is applied then.
+     * @throws IllegalStateException    if the batch was applied already, or is part of a
+     *                                  {@link ProjectsBatch}, which applies it, or takes a task
+     *                                  that is taken already. Nothing is applied then either.
+     */
+    public List<Task> apply() {
+        if (owner != null) {
+            throw new IllegalStateException("The batch is applied with its projects batch");
+        }
+        markApplied();
+        project.lock().lock();
+        try {
+            project.checkBatch(changes);
+            takeTasks();
+            return project.applyBatch(changes, null);
+        } finally {
+            project.lock().unlock();
+        }
+    }
+
+    /**
+     * Takes the tasks the batch takes, holding the lock of the project, before any other change
+     * is applied. If a task is taken already, the tasks taken so far are given back.
+     * @throws IllegalStateException if a task is taken already.
+     */
+    void takeTasks() {
+        for (Change change : changes) {
+            if (change.kind() != Kind.TAKE) {
+                continue;
+            }
+            LocalDate lastUpdated = change.task().getLastUpdated();
+            if (change.task().compareAndSetTakenBy(change.takenBy()) != null) {
+                releaseTasks();
+                throw new IllegalStateException("Task " + change.task().getId() + " is already taken by someone.");
+            }
+            takenLastUpdated.add(lastUpdated);
+        }
+    }
+
+    /**
+     * Gives back the tasks taken by {@link #takeTasks()}, when the batch is not applied after all.
+     */
+    void releaseTasks() {
+        int taken = 0;
+        for (Change change : changes) {
+            if (change.kind() == Kind.TAKE && taken < takenLastUpdated.size()) {
+                change.task().releaseTakenBy(takenLastUpdated.get(taken++));
+            }
+        }
+        takenLastUpdated.clear();
+    }
+
+    void markApplied() {
+        if (applied) {
+            throw new IllegalStateException("The batch was applied already");
+        }
+        applied = true;
+    }
+
+    List<Change> changes() {
+        return changes;
+    }
+
+    enum Kind { ADD, RESTORE, STATE, PRIO, TAKE, REMOVE }
+
+    /**
+     * One change of a batch. The fields a kind of change does not use are {@code null}.
+     */
+    record Change(Kind kind, Task task, int id, String description, TaskPrio prio, TaskState state,
+                  String takenBy, LocalDate created, LocalDate lastUpdated) {
+    }
+}
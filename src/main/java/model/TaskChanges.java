@@ -0,0 +1,11 @@
+package model;
+
+import java.util.List;
+
+/**
+ * The changes a batch made to the tasks of one project, as reported by
+ * {@link ProjectsListener#tasksChanged}: the tasks it added, updated and removed, each listed
+ * once with its state after the batch.
+ */
+public record TaskChanges(Project project, List<Task> added, List<Task> updated, List<Task> removed) {
+}
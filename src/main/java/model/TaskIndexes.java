@@ -0,0 +1,288 @@
+package model;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import model.matcher.SortedTasks;
+import model.matcher.TaskIndex;
+import utils.ConcurrentIntHashMap;
+import utils.TextIndex;
+
+/**
+ * The task indexes of one project: by ID, state, priority and the user who has taken the task.
+ * All tasks, and every bucket, are kept sorted in {@link TaskIndex#ORDER}, so query results come
+ * out ordered without sorting. Sorted sets are updated when a task is added or removed, and when
+ * its priority changes, since the task is unindexed before and reindexed after every change.
+ * The order sorts by priority first, so all tasks in order are the priority buckets one after
+ * the other; they are not kept in a set of their own, which would cost a set entry per task.
+ * The indexes are changed by one thread at a time, holding the lock of the project, and can
+ * be read by any number of threads without locking. A reader may miss a task that is being
+ * changed, but never sees a broken index.
+ * Tasks nobody has taken are also kept by priority, so workers claiming tasks do not have to
+ * walk past the tasks already taken. A task can be claimed without the lock, see
+ * {@link Task#claim}; it leaves the unassigned index when the claim is recorded with
+ * {@link #claimed}, or when it is next unindexed.
+ * The full-text index of the task descriptions is only built when the tasks are first searched,
+ * and kept up to date from then on.
+ * Package private, owned and kept up to date by {@code Project}.
+ */
+final class TaskIndexes implements TaskIndex {
+    private final Collection<Task> sortedTasks;
+    private final ConcurrentIntHashMap<Task> tasksById;
+    private final Map<TaskState, TaskSet> tasksByState;
+    private final Map<TaskPrio, TaskSet> tasksByPrio;
+    private final Map<String, TaskSet> tasksByTakenBy;
+    private final Map<TaskPrio, TaskSet> unassignedByPrio;
+    private volatile TextIndex<Task> descriptions;
+
+    TaskIndexes(int expectedSize) {
+        tasksById = new ConcurrentIntHashMap<>(expectedSize);
+        tasksByState = new EnumMap<>(TaskState.class);
+        for (TaskState state : TaskState.values()) {
+            tasksByState.put(state, new TaskSet());
+        }
+        tasksByPrio = new EnumMap<>(TaskPrio.class);
+        unassignedByPrio = new EnumMap<>(TaskPrio.class);
+        for (TaskPrio prio : TaskPrio.values()) {
+            tasksByPrio.put(prio, new TaskSet());
+            unassignedByPrio.put(prio, new TaskSet());
+        }
+        tasksByTakenBy = new ConcurrentHashMap<>();
+        sortedTasks = new AllTasks();
+    }
+
+    Task get(int id) {
+        return tasksById.get(id);
+    }
+
+    /**
+     * Adds a new task to all indexes.
+     */
+    void add(Task task) {
+        tasksById.put(task.getId(), task);
+        index(task);
+        TextIndex<Task> text = descriptions;
+        if (text != null) {
+            text.add(task.getId(), task, task.getDescription());
+        }
+    }
+
+    /**
+     * Adds many new tasks to all indexes, see {@link #indexAll}.
+     */
+    void addAll(List<Task> added) {
+        for (Task task : added) {
+            tasksById.put(task.getId(), task);
+        }
+        indexAll(added);
+        TextIndex<Task> text = descriptions;
+        if (text != null) {
+            for (Task task : added) {
+                text.add(task.getId(), task, task.getDescription());
+            }
+        }
+    }
+
+    /**
+     * Removes a task from all indexes.
+     * @return {@code true} if the task was indexed.
+     */
+    boolean remove(Task task) {
+        if (tasksById.get(task.getId()) != task) {
+            return false;
+        }
+        tasksById.remove(task.getId());
+        unindex(task);
+        TextIndex<Task> text = descriptions;
+        if (text != null) {
+            text.remove(task.getId(), task.getDescription());
+        }
+        return true;
+    }
+
+    /**
+     * Adds the task to the state, priority and taken-by indexes.
+     */
+    void index(Task task) {
+        tasksByState.get(task.getState()).addTask(task);
+        tasksByPrio.get(task.getPrio()).addTask(task);
+        indexTakenBy(task);
+    }
+
+    /**
+     * Adds many tasks to the state, priority and taken-by indexes: the tasks are sorted once,
+     * and split by bucket in order, so each bucket takes all its tasks at once, already
+     * sorted, see {@link TaskSet#addTasks}.
+     */
+    void indexAll(List<Task> tasks) {
+        List<Task> sorted = new ArrayList<>(tasks);
+        sorted.sort(ORDER);
+        Map<TaskSet, List<Task>> buckets = new IdentityHashMap<>();
+        for (Task task : sorted) {
+            buckets.computeIfAbsent(tasksByState.get(task.getState()), k -> new ArrayList<>()).add(task);
+            buckets.computeIfAbsent(tasksByPrio.get(task.getPrio()), k -> new ArrayList<>()).add(task);
+            String takenBy = task.getTakenBy();
+            if (takenBy != null) {
+                TaskSet taken = tasksByTakenBy.computeIfAbsent(takenBy, k -> new TaskSet());
+                buckets.computeIfAbsent(taken, k -> new ArrayList<>()).add(task);
+            }
+            if (Task.isFree(takenBy)) {
+                buckets.computeIfAbsent(unassignedByPrio.get(task.getPrio()), k -> new ArrayList<>()).add(task);
+            }
+        }
+        buckets.forEach(TaskSet::addTasks);
+    }
+
+    /**
+     * Moves a task that was claimed without the lock from the unassigned index to the
+     * taken-by index.
+     */
+    void claimed(Task task) {
+        unassignedByPrio.get(task.getPrio()).removeTask(task);
+        indexTakenBy(task);
+    }
+
+    private void indexTakenBy(Task task) {
+        String takenBy = task.getTakenBy();
+        if (takenBy != null) {
+            tasksByTakenBy.computeIfAbsent(takenBy, k -> new TaskSet()).addTask(task);
+        }
+        if (Task.isFree(takenBy)) {
+            unassignedByPrio.get(task.getPrio()).addTask(task);
+        }
+    }
+
+    /**
+     * Removes the task from the state, priority and taken-by indexes.
+     */
+    void unindex(Task task) {
+        tasksByState.get(task.getState()).removeTask(task);
+        tasksByPrio.get(task.getPrio()).removeTask(task);
+        // also when taken, since the task may have been claimed after it was last indexed
+        unassignedByPrio.get(task.getPrio()).removeTask(task);
+        String takenBy = task.getTakenBy();
+        if (takenBy != null) {
+            TaskSet taken = tasksByTakenBy.get(takenBy);
+            if (taken != null) {
+                taken.removeTask(task);
+                if (taken.isEmpty()) {
+                    tasksByTakenBy.remove(takenBy);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param prio The priority to look up.
+     * @return The tasks with the given priority that nobody has taken, as far as the indexes
+     *         know: a task claimed without the lock stays until the claim is recorded.
+     */
+    Collection<Task> unassigned(TaskPrio prio) {
+        return unassignedByPrio.get(prio);
+    }
+
+    /**
+     * @return The full-text index of the task descriptions, or {@code null} if it was not built.
+     */
+    TextIndex<Task> descriptions() {
+        return descriptions;
+    }
+
+    /**
+     * Builds the full-text index of the task descriptions, from then on kept up to date.
+     */
+    void buildDescriptions() {
+        if (descriptions == null) {
+            TextIndex<Task> text = new TextIndex<>(ORDER);
+            for (Task task : sortedTasks) {
+                text.add(task.getId(), task, task.getDescription());
+            }
+            descriptions = text;
+        }
+    }
+
+    @Override
+    public int size() {
+        return tasksById.size();
+    }
+
+    @Override
+    public Collection<Task> all() {
+        return sortedTasks;
+    }
+
+    @Override
+    public Collection<Task> withState(TaskState state) {
+        return tasksByState.get(state);
+    }
+
+    @Override
+    public Collection<Task> withPrio(TaskPrio prio) {
+        return tasksByPrio.get(prio);
+    }
+
+    @Override
+    public Collection<Task> takenBy(String takenBy) {
+        TaskSet taken = takenBy == null ? null : tasksByTakenBy.get(takenBy);
+        return taken == null ? Collections.emptyList() : taken;
+    }
+
+    /**
+     * All tasks in order: the priority buckets in the order of the priorities.
+     */
+    private final class AllTasks extends AbstractCollection<Task> implements SortedTasks {
+        private final TaskSet[] buckets = tasksByPrio.values().toArray(new TaskSet[0]);
+
+        @Override
+        public int size() {
+            return tasksById.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Task task && tasksById.get(task.getId()) == task;
+        }
+
+        @Override
+        public Iterator<Task> iterator() {
+            return iteratorAfter(null);
+        }
+
+        /**
+         * Iterates from the bucket of the priority of the given task, skipping the buckets before.
+         */
+        @Override
+        public Iterator<Task> iteratorAfter(Task after) {
+            int first = after == null ? 0 : after.getPrio().ordinal();
+            return new Iterator<>() {
+                private int bucket = first;
+                private Iterator<Task> tasks = buckets[first].iteratorAfter(after);
+
+                @Override
+                public boolean hasNext() {
+                    while (!tasks.hasNext() && bucket < buckets.length - 1) {
+                        tasks = buckets[++bucket].iterator();
+                    }
+                    return tasks.hasNext();
+                }
+
+                @Override
+                public Task next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return tasks.next();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package model;
+
+import model.matcher.TaskIndex;
+
+/**
+ * A position in the {@link TaskIndex#ORDER} of tasks: a priority, a description and an ID.
+ * Queries resume after a key, so a caller paging through the tasks of a project passes the
+ * key of the last task of a page to get the next one. The key holds the values the task had
+ * when the key was made, so a page ends where it did even if its last task changes or is
+ * removed meanwhile. Immutable.
+ * <p>
+ * Keys can be passed as text, for instance between the pages of a remote API, with
+ * {@link #encode()} and {@link #decode(String)}.
+ */
+public final class TaskKey {
+    private final TaskPrio prio;
+    private final String description;
+    private final int id;
+
+    public TaskKey(TaskPrio prio, String description, int id) {
+        if (prio == null || description == null) {
+            throw new IllegalArgumentException("A task key needs a priority and a description");
+        }
+        this.prio = prio;
+        this.description = description;
+        this.id = id;
+    }
+
+    /**
+     * @return The key of the current position of a task.
+     */
+    public static TaskKey of(Task task) {
+        return new TaskKey(task.getPrio(), task.getDescription(), task.getId());
+    }
+
+    public TaskPrio getPrio() {
+        return prio;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return A task at the position of this key, to look the position up in sorted sets of tasks.
+     */
+    Task probe() {
+        return new Task(id, description, prio);
+    }
+
+    /**
+     * @return The key as text: {@code <prio>:<id>:<description>}.
+     */
+    public String encode() {
+        return prio.name() + ':' + id + ':' + description;
+    }
+
+    /**
+     * @param text A key as returned by {@link #encode()}.
+     * @return The key.
+     * @throws IllegalArgumentException if the text is not an encoded key.
+     */
+    public static TaskKey decode(String text) {
+        int prioEnd = text.indexOf(':');
+        int idEnd = prioEnd < 0 ? -1 : text.indexOf(':', prioEnd + 1);
+        if (idEnd < 0) {
+            throw new IllegalArgumentException("Not a task key: " + text);
+        }
+        try {
+            return new TaskKey(TaskPrio.valueOf(text.substring(0, prioEnd)),
+                    text.substring(idEnd + 1), Integer.parseInt(text.substring(prioEnd + 1, idEnd)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Not a task key: " + text, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TaskKey key && prio == key.prio && id == key.id && description.equals(key.description);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * prio.hashCode() + description.hashCode()) + id;
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
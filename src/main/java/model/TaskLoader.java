@@ -0,0 +1,13 @@
+package model;
+
+import java.io.IOException;
+
+/**
+ * Loads the tasks of a project that was restored without them, see
+ * {@link Project#restore(int, String, String, java.time.LocalDate, int, TaskLoader)}.
+ * The loader adds the tasks with {@link Project#restoreTask}, or with a {@link TaskBatch},
+ * which indexes them all at once.
+ */
+public interface TaskLoader {
+    void loadTasks(Project project) throws IOException;
+}
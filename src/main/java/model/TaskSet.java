@@ -0,0 +1,190 @@
+package model;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import model.matcher.SortedTasks;
+import model.matcher.TaskIndex;
+
+/**
+ * A bucket of the task indexes: tasks sorted in {@link TaskIndex#ORDER}, in a set that can be
+ * read while it is changed. Keeps its own count, since counting a concurrent skip list walks
+ * it, and matchers ask for the size of buckets to plan their queries.
+ * Changed by one thread at a time, holding the lock of the project. Read-only to everyone else.
+ * <p>
+ * Tasks are added one at a time, or many at once by {@link #addTasks}, which builds a new skip
+ * list from the merged tasks in one pass when that is cheaper than inserting them one by one.
+ * Readers iterating the old list meanwhile go on seeing the tasks as they were.
+ */
+final class TaskSet extends AbstractCollection<Task> implements SortedTasks {
+    private volatile ConcurrentSkipListMap<Task, Boolean> tasks = new ConcurrentSkipListMap<>(TaskIndex.ORDER);
+    private volatile int size;
+
+    void addTask(Task task) {
+        if (tasks.put(task, Boolean.TRUE) == null) {
+            size++;
+        }
+    }
+
+    void removeTask(Task task) {
+        if (tasks.remove(task) != null) {
+            size--;
+        }
+    }
+
+    /**
+     * Adds many tasks at once. Inserting a task costs a search of the skip list, so when the
+     * tasks are more than an eighth of the set, the set and the sorted tasks are merged into a
+     * new skip list instead, which is built bottom up in one pass.
+     * @param added The tasks to add, best in order; sorted by this method, which takes
+     *              linear time if they are.
+     */
+    void addTasks(List<Task> added) {
+        if (added.size() <= size / 8) {
+            for (Task task : added) {
+                addTask(task);
+            }
+            return;
+        }
+        added.sort(TaskIndex.ORDER);
+        List<Task> merged = new ArrayList<>(size + added.size());
+        Iterator<Task> old = tasks.keySet().iterator();
+        Task next = old.hasNext() ? old.next() : null;
+        for (Task task : added) {
+            while (next != null && TaskIndex.ORDER.compare(next, task) < 0) {
+                merged.add(next);
+                next = old.hasNext() ? old.next() : null;
+            }
+            if (next == task) {
+                continue;
+            }
+            if (merged.isEmpty() || merged.get(merged.size() - 1) != task) {
+                merged.add(task);
+            }
+        }
+        while (next != null) {
+            merged.add(next);
+            next = old.hasNext() ? old.next() : null;
+        }
+        tasks = new ConcurrentSkipListMap<>(new SortedRun(merged));
+        size = merged.size();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Task && tasks.containsKey(o);
+    }
+
+    /**
+     * Iterates the tasks in order. Tasks added or removed while iterating may or may not be seen.
+     */
+    @Override
+    public Iterator<Task> iterator() {
+        return readOnly(tasks.keySet().iterator());
+    }
+
+    /**
+     * Iterates the tasks after the given one, looking up where to start in the skip list.
+     */
+    @Override
+    public Iterator<Task> iteratorAfter(Task after) {
+        ConcurrentSkipListMap<Task, Boolean> current = tasks;
+        return readOnly(after == null ? current.keySet().iterator() : current.tailMap(after, false).keySet().iterator());
+    }
+
+    private static Iterator<Task> readOnly(Iterator<Task> iterator) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Task next() {
+                return iterator.next();
+            }
+        };
+    }
+
+    /**
+     * Sorted tasks, seen as the sorted map a skip list is built from. Building only reads the
+     * comparator and the entries, so that is all this map offers.
+     */
+    private static final class SortedRun extends AbstractMap<Task, Boolean> implements SortedMap<Task, Boolean> {
+        private final List<Task> tasks;
+
+        SortedRun(List<Task> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        public Comparator<? super Task> comparator() {
+            return TaskIndex.ORDER;
+        }
+
+        @Override
+        public Set<Map.Entry<Task, Boolean>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<Task, Boolean>> iterator() {
+                    Iterator<Task> iterator = tasks.iterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<Task, Boolean> next() {
+                            return Map.entry(iterator.next(), Boolean.TRUE);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return tasks.size();
+                }
+            };
+        }
+
+        @Override
+        public Task firstKey() {
+            return tasks.get(0);
+        }
+
+        @Override
+        public Task lastKey() {
+            return tasks.get(tasks.size() - 1);
+        }
+
+        @Override
+        public SortedMap<Task, Boolean> subMap(Task fromKey, Task toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedMap<Task, Boolean> headMap(Task toKey) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedMap<Task, Boolean> tailMap(Task fromKey) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
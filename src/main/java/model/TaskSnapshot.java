@@ -0,0 +1,71 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * The values of a task at one version of its project, see {@link ProjectSnapshot}.
+ * Immutable: a task that changes gets a new snapshot, and the old one keeps the old values.
+ * The task holds its current snapshot itself, so a snapshot of the project copies no task,
+ * and the values that never change are read from the task.
+ */
+public final class TaskSnapshot {
+    private final Task task;
+    private final TaskState state;
+    private final TaskPrio prio;
+    private final String takenBy;
+    private final LocalDate lastUpdated;
+
+    TaskSnapshot(Task task, TaskState state, TaskPrio prio, String takenBy, LocalDate lastUpdated) {
+        this.task = task;
+        this.state = state;
+        this.prio = prio;
+        this.takenBy = takenBy;
+        this.lastUpdated = lastUpdated;
+    }
+
+    /**
+     * @return The task itself, whose values may have changed since.
+     */
+    public Task getTask() {
+        return task;
+    }
+
+    public int getId() {
+        return task.getId();
+    }
+
+    public String getDescription() {
+        return task.getDescription();
+    }
+
+    public TaskPrio getPrio() {
+        return prio;
+    }
+
+    public TaskState getState() {
+        return state;
+    }
+
+    public String getTakenBy() {
+        return takenBy;
+    }
+
+    public LocalDate getCreated() {
+        return task.getCreated();
+    }
+
+    public LocalDate getLastUpdated() {
+        return lastUpdated;
+    }
+
+    @Override
+    public String toString() {
+        return "TaskSnapshot{" +
+                "id=" + getId() +
+                ", description='" + getDescription() + '\'' +
+                ", takenBy='" + takenBy + '\'' +
+                ", state=" + state +
+                ", prio=" + prio +
+                '}';
+    }
+}
@@ -1,6 +1,7 @@
 package model;
 
 public class TitleNotUniqueException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
 
     public TitleNotUniqueException() {
         super();
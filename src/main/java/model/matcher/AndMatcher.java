@@ -0,0 +1,69 @@
+package model.matcher;
+
+import model.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A matcher that matches a task if all of its matchers match it.
+ * Queries are planned on the most selective matcher: only the candidates of the matcher with
+ * the lowest estimated cost are looked at, and the other matchers are checked against them.
+ */
+public class AndMatcher implements ITaskMatcher {
+    private final List<ITaskMatcher> matchers;
+
+    /**
+     * Constructs an {@code AndMatcher} from the given matchers.
+     * @param matchers The matchers that all have to match.
+     */
+    public AndMatcher(ITaskMatcher... matchers) {
+        this.matchers = new ArrayList<>();
+        for (ITaskMatcher matcher : matchers) {
+            if (matcher instanceof AndMatcher and) {
+                this.matchers.addAll(and.matchers);
+            } else {
+                this.matchers.add(matcher);
+            }
+        }
+    }
+
+    @Override
+    public boolean match(Task task) {
+        for (ITaskMatcher matcher : matchers) {
+            if (!matcher.match(task)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Collection<Task> candidates(TaskIndex index) {
+        return mostSelective(index).candidates(index);
+    }
+
+    @Override
+    public int estimateCost(TaskIndex index) {
+        return mostSelective(index).estimateCost(index);
+    }
+
+    private ITaskMatcher mostSelective(TaskIndex index) {
+        ITaskMatcher best = ITaskMatcher.all();
+        int bestCost = index.size();
+        for (ITaskMatcher matcher : matchers) {
+            int cost = matcher.estimateCost(index);
+            if (cost < bestCost) {
+                best = matcher;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public String toString() {
+        return "and" + matchers;
+    }
+}
@@ -0,0 +1,99 @@
+package model.matcher;
+
+import model.*;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Helpers for combining candidate collections taken from a {@link TaskIndex}.
+ */
+final class Candidates {
+
+    /**
+     * Returns the union of the given candidate collections, without duplicates.
+     * The collections are sorted in {@link TaskIndex#ORDER}, so they are merged in one pass
+     * and the union is sorted as well. The union is a view: the collections are merged while
+     * it is iterated, so a query that stops early merges no further than it reads.
+     */
+    static Collection<Task> union(List<Collection<Task>> parts) {
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        return new Union(parts);
+    }
+
+    private static final class Union extends AbstractCollection<Task> implements SortedTasks {
+        private final List<Collection<Task>> parts;
+
+        Union(List<Collection<Task>> parts) {
+            this.parts = parts;
+        }
+
+        /**
+         * Counts the tasks by merging the parts. Queries do not ask for the size of their
+         * candidates; matchers estimate their cost from the indexes instead.
+         */
+        @Override
+        public int size() {
+            int size = 0;
+            for (Iterator<Task> it = iterator(); it.hasNext(); it.next()) {
+                size++;
+            }
+            return size;
+        }
+
+        @Override
+        public Iterator<Task> iterator() {
+            return iteratorAfter(null);
+        }
+
+        @Override
+        public Iterator<Task> iteratorAfter(Task after) {
+            List<Iterator<Task>> iterators = new ArrayList<>(parts.size());
+            Task[] heads = new Task[parts.size()];
+            for (int i = 0; i < heads.length; i++) {
+                Iterator<Task> it = SortedTasks.tailIterator(parts.get(i), after);
+                iterators.add(it);
+                heads[i] = it.hasNext() ? it.next() : null;
+            }
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    for (Task head : heads) {
+                        if (head != null) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+
+                @Override
+                public Task next() {
+                    Task min = null;
+                    for (Task head : heads) {
+                        if (head != null && (min == null || TaskIndex.ORDER.compare(head, min) < 0)) {
+                            min = head;
+                        }
+                    }
+                    if (min == null) {
+                        throw new NoSuchElementException();
+                    }
+                    for (int i = 0; i < heads.length; i++) {
+                        if (heads[i] == min) {
+                            Iterator<Task> it = iterators.get(i);
+                            heads[i] = it.hasNext() ? it.next() : null;
+                        }
+                    }
+                    return min;
+                }
+            };
+        }
+    }
+
+    private Candidates() {}
+}
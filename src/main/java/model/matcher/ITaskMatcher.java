@@ -2,8 +2,77 @@ package model.matcher;
 
 import model.*;
 
+import java.util.Collection;
+
+/**
+ * Selects tasks of a project. Matchers can be combined with {@link #and(ITaskMatcher)},
+ * {@link #or(ITaskMatcher)} and {@link #negate()}.
+ * Besides {@link #match(Task)}, a matcher tells {@code Project.findTasks} which indexed
+ * tasks are worth checking, and how many that is, so a query does not have to scan every task.
+ */
 public interface ITaskMatcher {
     default boolean match(Task task) {
         return true;
     };
+
+    /**
+     * Returns the tasks that {@link #match(Task)} has to be checked against. Every task that
+     * matches must be among the candidates, the candidates may contain tasks that do not match.
+     * The candidates must iterate in {@link TaskIndex#ORDER}, as the index collections do.
+     * Queries resumed after a key start in the middle of the candidates; if they are
+     * {@link SortedTasks}, as the index collections are, the tasks before are not walked.
+     * The default is all tasks of the project.
+     * @param index The task indexes of the project being searched.
+     * @return The candidate tasks.
+     */
+    default Collection<Task> candidates(TaskIndex index) {
+        return index.all();
+    }
+
+    /**
+     * Estimates the cost of a query, as the number of tasks returned by {@link #candidates(TaskIndex)}.
+     * @param index The task indexes of the project being searched.
+     * @return The estimated number of candidate tasks.
+     */
+    default int estimateCost(TaskIndex index) {
+        return index.size();
+    }
+
+    /**
+     * @param other The matcher to combine with.
+     * @return A matcher that matches tasks matched by both this and the other matcher.
+     */
+    default ITaskMatcher and(ITaskMatcher other) {
+        return new AndMatcher(this, other);
+    }
+
+    /**
+     * @param other The matcher to combine with.
+     * @return A matcher that matches tasks matched by this or the other matcher.
+     */
+    default ITaskMatcher or(ITaskMatcher other) {
+        return new OrMatcher(this, other);
+    }
+
+    /**
+     * @return A matcher that matches the tasks this matcher does not match.
+     */
+    default ITaskMatcher negate() {
+        return new NotMatcher(this);
+    }
+
+    /**
+     * @param matcher The matcher to negate.
+     * @return A matcher that matches the tasks the given matcher does not match.
+     */
+    static ITaskMatcher not(ITaskMatcher matcher) {
+        return matcher.negate();
+    }
+
+    /**
+     * @return A matcher that matches all tasks.
+     */
+    static ITaskMatcher all() {
+        return new ITaskMatcher() {};
+    }
 }
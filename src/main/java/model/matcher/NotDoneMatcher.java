@@ -2,6 +2,9 @@ package model.matcher;
 
 import model.*;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * A matcher implementation that checks if a task is not marked as {@code TaskState.DONE}.
  */
@@ -19,4 +22,24 @@ public class NotDoneMatcher implements ITaskMatcher {
         }
         return false;
     }
+
+    /**
+     * The candidates are the tasks in the state index for every state except {@code TaskState.DONE}.
+     * @param index The task indexes of the project being searched.
+     * @return The tasks that are not done.
+     */
+    @Override
+    public Collection<Task> candidates(TaskIndex index) {
+        return Candidates.union(List.of(index.withState(TaskState.TO_DO), index.withState(TaskState.IN_PROGRESS)));
+    }
+
+    @Override
+    public int estimateCost(TaskIndex index) {
+        return index.size() - index.withState(TaskState.DONE).size();
+    }
+
+    @Override
+    public String toString() {
+        return "notDone";
+    }
 }
@@ -0,0 +1,34 @@
+package model.matcher;
+
+import model.*;
+
+/**
+ * A matcher that matches a task if its inner matcher does not match it.
+ * The indexes only list tasks that have a value, so a negation is checked against all tasks.
+ */
+public class NotMatcher implements ITaskMatcher {
+    private final ITaskMatcher matcher;
+
+    /**
+     * Constructs a {@code NotMatcher} negating the given matcher.
+     * @param matcher The matcher to negate.
+     */
+    public NotMatcher(ITaskMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    @Override
+    public boolean match(Task task) {
+        return !matcher.match(task);
+    }
+
+    @Override
+    public ITaskMatcher negate() {
+        return matcher;
+    }
+
+    @Override
+    public String toString() {
+        return "not(" + matcher + ")";
+    }
+}
@@ -0,0 +1,67 @@
+package model.matcher;
+
+import model.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A matcher that matches a task if any of its matchers matches it.
+ * The candidates are the union of the candidates of all matchers, unless that would cover
+ * as many tasks as a full scan.
+ */
+public class OrMatcher implements ITaskMatcher {
+    private final List<ITaskMatcher> matchers;
+
+    /**
+     * Constructs an {@code OrMatcher} from the given matchers.
+     * @param matchers The matchers of which at least one has to match.
+     */
+    public OrMatcher(ITaskMatcher... matchers) {
+        this.matchers = new ArrayList<>();
+        for (ITaskMatcher matcher : matchers) {
+            if (matcher instanceof OrMatcher or) {
+                this.matchers.addAll(or.matchers);
+            } else {
+                this.matchers.add(matcher);
+            }
+        }
+    }
+
+    @Override
+    public boolean match(Task task) {
+        for (ITaskMatcher matcher : matchers) {
+            if (matcher.match(task)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Collection<Task> candidates(TaskIndex index) {
+        if (estimateCost(index) >= index.size()) {
+            return index.all();
+        }
+        List<Collection<Task>> parts = new ArrayList<>();
+        for (ITaskMatcher matcher : matchers) {
+            parts.add(matcher.candidates(index));
+        }
+        return Candidates.union(parts);
+    }
+
+    @Override
+    public int estimateCost(TaskIndex index) {
+        long cost = 0;
+        for (ITaskMatcher matcher : matchers) {
+            cost += matcher.estimateCost(index);
+        }
+        return (int) Math.min(cost, index.size());
+    }
+
+    @Override
+    public String toString() {
+        return "or" + matchers;
+    }
+}
@@ -2,6 +2,8 @@ package model.matcher;
 
 import model.*;
 
+import java.util.Collection;
+
 /**
  * A matcher implementation that checks if a task has a specific priority.
  * This matcher returns {@code true} if the task's priority matches the priority
@@ -31,4 +33,24 @@ public class PrioMatcher implements ITaskMatcher {
         }
         return false;
     }
+
+    /**
+     * The candidates are the tasks in the priority index for the specified priority.
+     * @param index The task indexes of the project being searched.
+     * @return The tasks with the specified priority.
+     */
+    @Override
+    public Collection<Task> candidates(TaskIndex index) {
+        return index.withPrio(prio);
+    }
+
+    @Override
+    public int estimateCost(TaskIndex index) {
+        return index.withPrio(prio).size();
+    }
+
+    @Override
+    public String toString() {
+        return "prio=" + prio;
+    }
 }
@@ -0,0 +1,67 @@
+package model.matcher;
+
+import model.Task;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Tasks in {@link TaskIndex#ORDER} that can be iterated from any position, without walking
+ * the tasks before it. The collections of the task indexes, and the candidates of the
+ * matchers built on them, are sorted tasks, so a query resumed after a key starts where it
+ * left off however many tasks come before.
+ */
+public interface SortedTasks extends Collection<Task> {
+    /**
+     * @param after The task to start after; it does not have to be in the collection.
+     *              {@code null} to start at the first task.
+     * @return An iterator over the tasks after the given one, in order.
+     */
+    Iterator<Task> iteratorAfter(Task after);
+
+    /**
+     * Iterates sorted candidates after a task. Candidates that are not {@link SortedTasks}
+     * are walked from the start, skipping the tasks up to the given one.
+     * @param tasks The tasks, in {@link TaskIndex#ORDER}.
+     * @param after The task to start after, or {@code null} to start at the first task.
+     * @return An iterator over the tasks after the given one, in order.
+     */
+    static Iterator<Task> tailIterator(Collection<Task> tasks, Task after) {
+        if (after == null) {
+            return tasks.iterator();
+        }
+        if (tasks instanceof SortedTasks sorted) {
+            return sorted.iteratorAfter(after);
+        }
+        Iterator<Task> iterator = tasks.iterator();
+        return new Iterator<>() {
+            private Task next = advance();
+
+            private Task advance() {
+                while (iterator.hasNext()) {
+                    Task task = iterator.next();
+                    if (TaskIndex.ORDER.compare(task, after) > 0) {
+                        return task;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Task next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Task task = next;
+                next = iterator.hasNext() ? iterator.next() : null;
+                return task;
+            }
+        };
+    }
+}
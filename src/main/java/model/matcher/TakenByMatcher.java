@@ -2,13 +2,20 @@ package model.matcher;
 
 import model.*;
 
+import java.util.Collection;
+
 /**
  * A matcher implementation that checks if a task is taken by a specific user.
  * The matcher will return {@code true} if the task is taken by the user specified
  * in the constructor.
+ * Tasks hold the shared instance of the name of the user, see {@link Assignees}, so a task
+ * usually matches when it holds the same instance as the matcher, without comparing
+ * characters. Names are still compared when the instances differ, so a task holding an
+ * instance that is not the shared one is matched as well.
  */
 public class TakenByMatcher implements ITaskMatcher{
-    public String takenBy;
+    public final String takenBy;
+    private volatile String shared; // the shared instance of takenBy, once a task was taken by that name
 
     /**
      * Constructs a {@code TakenByMatcher} with the specified user.
@@ -17,6 +24,7 @@ public class TakenByMatcher implements ITaskMatcher{
      */
     public TakenByMatcher(String takenBy) {
         this.takenBy = takenBy;
+        this.shared = Assignees.find(takenBy);
     }
 
     /**
@@ -28,10 +36,44 @@ public class TakenByMatcher implements ITaskMatcher{
      */
     @Override
     public boolean match(Task task) {
-        if (task.getTakenBy().equals(takenBy)) {
+        String taken = task.getTakenBy();
+        if (takenBy == null || taken == null) {
+            return taken == takenBy;
+        }
+        String name = shared;
+        if (name == null) {
+            // the name may have been taken into use since the matcher was made
+            name = Assignees.find(takenBy);
+            if (name != null) {
+                shared = name;
+            }
+        }
+        if (taken == name) {
             return true;
         }
-        return false;
+        // an instance other than the shared one, as the dictionary does not see every string
+        // set on a task; strings cache their hash, so other users are told apart cheaply
+        return taken.hashCode() == takenBy.hashCode() && taken.equals(takenBy);
     }
 
+    /**
+     * The candidates are the tasks in the taken-by index for the specified user.
+     * Tasks nobody has taken are not indexed, so matching {@code null} checks all tasks.
+     * @param index The task indexes of the project being searched.
+     * @return The tasks taken by the specified user.
+     */
+    @Override
+    public Collection<Task> candidates(TaskIndex index) {
+        return takenBy == null ? index.all() : index.takenBy(takenBy);
+    }
+
+    @Override
+    public int estimateCost(TaskIndex index) {
+        return takenBy == null ? index.size() : index.takenBy(takenBy).size();
+    }
+
+    @Override
+    public String toString() {
+        return "takenBy=" + takenBy;
+    }
 }
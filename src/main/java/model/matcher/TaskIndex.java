@@ -0,0 +1,48 @@
+package model.matcher;
+
+import model.*;
+
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Read access to the task indexes of a project.
+ * Matchers use it to pick the smallest set of candidate tasks they need to look at,
+ * and to estimate how many tasks that is.
+ * All collections returned by a {@code TaskIndex} iterate in {@link #ORDER}.
+ */
+public interface TaskIndex {
+    /**
+     * The order of indexed tasks: natural order (priority, then description), then ID.
+     * The ID makes the order total, so tasks with equal priority and description are kept apart.
+     */
+    Comparator<Task> ORDER = Comparator.<Task>naturalOrder().thenComparingInt(Task::getId);
+
+    /**
+     * @return The total number of tasks in the project.
+     */
+    int size();
+
+    /**
+     * @return All tasks in the project.
+     */
+    Collection<Task> all();
+
+    /**
+     * @param state The state to look up.
+     * @return The tasks currently in the given state.
+     */
+    Collection<Task> withState(TaskState state);
+
+    /**
+     * @param prio The priority to look up.
+     * @return The tasks that currently have the given priority.
+     */
+    Collection<Task> withPrio(TaskPrio prio);
+
+    /**
+     * @param takenBy The user to look up.
+     * @return The tasks currently taken by the given user.
+     */
+    Collection<Task> takenBy(String takenBy);
+}
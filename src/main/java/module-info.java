@@ -1,8 +1,11 @@
 module com {
     requires javafx.controls;
     requires javafx.fxml;
+    requires jdk.httpserver;
+    requires java.management;
 
 
     opens com to javafx.fxml;
     exports com;
+    exports metrics to java.management;
 }
\ No newline at end of file
@@ -0,0 +1,564 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import metrics.Metrics;
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskBatch;
+import model.TaskKey;
+import model.TaskPrio;
+import model.TaskState;
+import model.matcher.AndMatcher;
+import model.matcher.ITaskMatcher;
+import model.matcher.NotDoneMatcher;
+import model.matcher.PrioMatcher;
+import model.matcher.TakenByMatcher;
+import utils.Json;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A JSON over HTTP front end for a {@code ProjectsManager}, on the HTTP server built into the JDK.
+ * Every request runs on its own virtual thread, so many clients can be served at once; the
+ * manager and its projects are safe to share between threads.
+ * <p>
+ * Resources:
+ * <pre>
+ * GET    /projects?title=text                 projects whose title contains the text
+ * GET    /projects?q=words&amp;limit=100          projects ranked by a full-text search
+ * GET    /projects?afterId=0&amp;limit=100        a page of the projects, by ID
+ * POST   /projects                            {"title":..,"description":..}
+ * GET    /projects/{id}
+ * DELETE /projects/{id}
+ * GET    /projects/{id}/tasks?prio=HIGH&amp;takenBy=ann&amp;notDone=true   tasks matching all given filters
+ *                                             with q=words&amp;limit=100, ranked by a full-text search,
+ *                                             which cannot be paged with after
+ *                                             with after=key&amp;limit=100, a page in natural order
+ * POST   /projects/{id}/tasks                 {"description":..,"prio":"HIGH"}
+ * POST   /projects/{id}/claims                {"user":..,"prio":"HIGH","count":10}
+ * GET    /projects/{id}/tasks/{taskId}
+ * PATCH  /projects/{id}/tasks/{taskId}        {"state":"DONE","prio":"LOW","takenBy":..}, all optional
+ * DELETE /projects/{id}/tasks/{taskId}
+ * POST   /projects/{id}/tasks/{taskId}/claim  {"user":..}
+ * GET    /metrics                             the text dump of {@link Metrics}
+ * </pre>
+ * Errors are answered with a status code and {@code {"error":..}}. A claim that loses answers
+ * 409 with the current owner. Connections are kept alive between requests; task lists are
+ * streamed with chunked encoding, so big lists are not built in memory as one response.
+ * <p>
+ * A page of tasks that is full carries the header {@value #NEXT_PAGE_HEADER}: the
+ * {@link TaskKey}, URL-encoded, to pass as {@code after} for the next page. The next page is looked up
+ * from that key, so paging through a big project does not get slower page by page.
+ */
+public class ProjectsHttpServer implements Closeable {
+    static final int MAX_BODY_SIZE = 1024 * 1024;
+    static final int DEFAULT_SEARCH_LIMIT = 100;
+    static final String NEXT_PAGE_HEADER = "X-Next-After";
+    private static final int STREAM_BUFFER_SIZE = 16 * 1024;
+
+    private final ProjectsManager manager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private ProjectsHttpServer(ProjectsManager manager, HttpServer server, ExecutorService executor) {
+        this.manager = manager;
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts serving the projects of the manager.
+     * @param manager The manager to serve.
+     * @param address The address to listen on, for instance {@code new InetSocketAddress("localhost", 8080)}.
+     *                Port 0 picks a free port, see {@link #getPort()}.
+     * @return The running server.
+     */
+    public static ProjectsHttpServer start(ProjectsManager manager, InetSocketAddress address) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        ProjectsHttpServer httpServer = new ProjectsHttpServer(manager, server, executor);
+        server.createContext("/projects", httpServer::handle);
+        server.createContext("/metrics", ProjectsHttpServer::handleMetrics);
+        server.setExecutor(executor);
+        server.start();
+        return httpServer;
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, letting running requests finish for up to a second.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        respond(exchange, () -> {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            byte[] body = readBody(exchange);
+            if (path.length < 2 || !path[1].equals("projects")) {
+                throw new HttpError(404, "Unknown resource");
+            }
+            route(exchange, path, body);
+        });
+    }
+
+    /**
+     * Runs a handler and answers the exceptions it throws with an error status. A handler that
+     * fails after it has sent the response headers, while streaming the body, cannot send an
+     * error any more: the exchange is then closed, which ends the body where it was cut off,
+     * so the client gets a JSON array without its end rather than a second set of headers.
+     */
+    static void respond(HttpExchange exchange, Handler handler) throws IOException {
+        try (exchange) {
+            try {
+                handler.handle();
+            } catch (HttpError e) {
+                fail(exchange, e.status, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                fail(exchange, 400, e.getMessage());
+            } catch (IllegalStateException e) {
+                fail(exchange, 409, e.getMessage());
+            } catch (UncheckedIOException e) {
+                fail(exchange, 500, e.getMessage());
+            }
+        }
+    }
+
+    private static void fail(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() == -1) {
+            sendError(exchange, status, message);
+        }
+    }
+
+    private static void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream body = exchange.getRequestBody()) {
+            body.transferTo(OutputStream.nullOutputStream());
+            byte[] dump = Metrics.dump().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, dump.length);
+            exchange.getResponseBody().write(dump);
+        }
+    }
+
+    /**
+     * Dispatches on the path, which starts with {@code ["", "projects"]}.
+     */
+    private void route(HttpExchange exchange, String[] path, byte[] body) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (path.length == 2) {
+            switch (method) {
+                case "GET" -> findProjects(exchange);
+                case "POST" -> addProject(exchange, Json.parseObject(text(body)));
+                default -> throw methodNotAllowed();
+            }
+            return;
+        }
+        Project project = manager.getProjectById(parseId(path[2]));
+        if (project == null) {
+            throw new HttpError(404, "No project " + path[2]);
+        }
+        if (path.length == 3) {
+            switch (method) {
+                case "GET" -> send(exchange, 200, projectJson(new StringBuilder(), project));
+                case "DELETE" -> {
+                    manager.removeProject(project);
+                    sendEmpty(exchange);
+                }
+                default -> throw methodNotAllowed();
+            }
+        } else if (path.length == 4 && path[3].equals("tasks")) {
+            switch (method) {
+                case "GET" -> findTasks(exchange, project);
+                case "POST" -> addTask(exchange, project, Json.parseObject(text(body)));
+                default -> throw methodNotAllowed();
+            }
+        } else if (path.length == 4 && path[3].equals("claims")) {
+            if (!method.equals("POST")) {
+                throw methodNotAllowed();
+            }
+            claimTasks(exchange, project, Json.parseObject(text(body)));
+        } else if ((path.length == 5 || path.length == 6) && path[3].equals("tasks")) {
+            Task task = project.getTaskById(parseId(path[4]));
+            if (task == null) {
+                throw new HttpError(404, "No task " + path[4] + " in project " + project.getId());
+            }
+            if (path.length == 6) {
+                if (!path[5].equals("claim")) {
+                    throw new HttpError(404, "Unknown resource");
+                }
+                if (!method.equals("POST")) {
+                    throw methodNotAllowed();
+                }
+                claimTask(exchange, task, Json.parseObject(text(body)));
+                return;
+            }
+            switch (method) {
+                case "GET" -> send(exchange, 200, taskJson(new StringBuilder(), task));
+                case "PATCH" -> updateTask(exchange, project, task, Json.parseObject(text(body)));
+                case "DELETE" -> {
+                    project.removeTask(task);
+                    sendEmpty(exchange);
+                }
+                default -> throw methodNotAllowed();
+            }
+        } else {
+            throw new HttpError(404, "Unknown resource");
+        }
+    }
+
+    private void findProjects(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange);
+        List<Project> projects;
+        if (query.containsKey("q")) {
+            if (query.containsKey("afterId")) {
+                throw new HttpError(400, "Parameter 'afterId' cannot be combined with 'q'");
+            }
+            projects = manager.searchProjects(query.get("q"), limit(query));
+        } else if (query.containsKey("afterId")) {
+            projects = manager.getProjects(afterId(query), limit(query));
+        } else {
+            projects = manager.findProjects(query.getOrDefault("title", ""));
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (Project project : projects) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            projectJson(json, project);
+        }
+        send(exchange, 200, json.append(']'));
+    }
+
+    private void addProject(HttpExchange exchange, Map<String, Object> fields) throws IOException {
+        String title = text(fields, "title", true);
+        String description = text(fields, "description", false);
+        Project project;
+        try {
+            project = manager.addProject(title, description == null ? "" : description);
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(409, e.getMessage());
+        }
+        send(exchange, 201, projectJson(new StringBuilder(), project));
+    }
+
+    /**
+     * Streams the matching tasks as a JSON array, in natural order: all of them, or a page
+     * if a limit or a key to start after is given.
+     */
+    private void findTasks(HttpExchange exchange, Project project) throws IOException {
+        Map<String, String> query = query(exchange);
+        List<ITaskMatcher> matchers = new ArrayList<>();
+        if (query.containsKey("prio")) {
+            matchers.add(new PrioMatcher(prio(query.get("prio"))));
+        }
+        if (query.containsKey("takenBy")) {
+            matchers.add(new TakenByMatcher(query.get("takenBy")));
+        }
+        if (Boolean.parseBoolean(query.get("notDone"))) {
+            matchers.add(new NotDoneMatcher());
+        }
+        ITaskMatcher matcher = matchers.isEmpty() ? ITaskMatcher.all()
+                : new AndMatcher(matchers.toArray(new ITaskMatcher[0]));
+        Iterator<Task> tasks;
+        if (query.containsKey("q")) {
+            if (query.containsKey("after")) {
+                // search results are ranked, not in the natural order the key refers to
+                throw new HttpError(400, "Parameter 'after' cannot be combined with 'q'");
+            }
+            tasks = project.searchTasks(query.get("q"), matcher, limit(query)).iterator();
+        } else if (query.containsKey("after") || query.containsKey("limit")) {
+            int limit = limit(query);
+            List<Task> page = project.findTasks(matcher, after(query), limit);
+            if (page.size() == limit) {
+                exchange.getResponseHeaders().set(NEXT_PAGE_HEADER,
+                        URLEncoder.encode(TaskKey.of(page.get(limit - 1)).encode(), StandardCharsets.UTF_8));
+            }
+            tasks = page.iterator();
+        } else {
+            // all tasks: written as they are found, without collecting them first
+            tasks = project.iterateTasks(matcher, null);
+        }
+        streamTasks(exchange, tasks);
+    }
+
+    /**
+     * Sends the tasks as a JSON array, with chunked encoding, writing each as it is taken from the iterator.
+     */
+    static void streamTasks(HttpExchange exchange, Iterator<Task> tasks) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), STREAM_BUFFER_SIZE)) {
+            StringBuilder json = new StringBuilder(256);
+            out.write('[');
+            for (boolean first = true; tasks.hasNext(); first = false) {
+                json.setLength(0);
+                if (!first) {
+                    json.append(',');
+                }
+                out.append(taskJson(json, tasks.next()));
+            }
+            out.write(']');
+        }
+    }
+
+    private void addTask(HttpExchange exchange, Project project, Map<String, Object> fields) throws IOException {
+        Task task = project.addTask(text(fields, "description", true), prio(text(fields, "prio", true)));
+        send(exchange, 201, taskJson(new StringBuilder(), task));
+    }
+
+    /**
+     * Changes the fields given in the body. All of them are checked before the task is
+     * changed, and applied as one batch, so a request changes all of them or none.
+     */
+    private void updateTask(HttpExchange exchange, Project project, Task task, Map<String, Object> fields)
+            throws IOException {
+        String takenBy = text(fields, "takenBy", false);
+        String prio = text(fields, "prio", false);
+        TaskPrio newPrio = prio == null ? null : prio(prio);
+        String state = text(fields, "state", false);
+        TaskState newState = state == null ? null : state(state);
+        TaskBatch batch = project.batch();
+        if (takenBy != null) {
+            batch.setTakenBy(task, takenBy);
+        }
+        if (newPrio != null) {
+            batch.setPrio(task, newPrio);
+        }
+        if (newState != null) {
+            batch.setState(task, newState);
+        }
+        try {
+            batch.apply();
+        } catch (IllegalArgumentException e) {
+            // removed since it was looked up
+            throw new HttpError(404, "No task " + task.getId() + " in project " + project.getId());
+        }
+        send(exchange, 200, taskJson(new StringBuilder(), task));
+    }
+
+    private void claimTask(HttpExchange exchange, Task task, Map<String, Object> fields) throws IOException {
+        String user = text(fields, "user", true);
+        String owner = task.claim(user);
+        if (!owner.equals(user)) {
+            StringBuilder json = new StringBuilder("{\"error\":\"Task is taken\",\"takenBy\":");
+            Json.appendString(json, owner);
+            send(exchange, 409, json.append('}'));
+            return;
+        }
+        send(exchange, 200, taskJson(new StringBuilder(), task));
+    }
+
+    private void claimTasks(HttpExchange exchange, Project project, Map<String, Object> fields) throws IOException {
+        String user = text(fields, "user", true);
+        TaskPrio prio = prio(text(fields, "prio", true));
+        Object count = fields.get("count");
+        if (!(count instanceof Long n) || n < 1 || n > 10_000) {
+            throw new HttpError(400, "Field 'count' must be a number from 1 to 10000");
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (Task task : project.claimTasks(user, prio, n.intValue())) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            taskJson(json, task);
+        }
+        send(exchange, 200, json.append(']'));
+    }
+
+    private static StringBuilder projectJson(StringBuilder json, Project project) {
+        json.append("{\"id\":").append(project.getId()).append(",\"title\":");
+        Json.appendString(json, project.getName());
+        json.append(",\"description\":");
+        Json.appendString(json, project.getDescription());
+        json.append(",\"created\":\"").append(project.getCreated())
+                .append("\",\"lastUpdated\":\"").append(project.getLastUpdated())
+                .append("\",\"state\":\"").append(project.getProjectState().name())
+                .append("\",\"taskCount\":").append(project.getTaskCount()).append('}');
+        return json;
+    }
+
+    private static StringBuilder taskJson(StringBuilder json, Task task) {
+        json.append("{\"id\":").append(task.getId()).append(",\"description\":");
+        Json.appendString(json, task.getDescription());
+        json.append(",\"prio\":\"").append(task.getPrio().name())
+                .append("\",\"state\":\"").append(task.getState().name())
+                .append("\",\"takenBy\":");
+        Json.appendString(json, task.getTakenBy());
+        json.append(",\"created\":\"").append(task.getCreated())
+                .append("\",\"lastUpdated\":\"").append(task.getLastUpdated()).append("\"}");
+        return json;
+    }
+
+    /**
+     * Reads the whole request body, which also lets the connection be reused for the next request.
+     */
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_SIZE + 1);
+            if (body.length > MAX_BODY_SIZE) {
+                in.transferTo(OutputStream.nullOutputStream());
+                throw new HttpError(413, "Request body too large");
+            }
+            return body;
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sendEmpty(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        Json.appendString(json, message);
+        send(exchange, status, json.append('}'));
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int eq = param.indexOf('=');
+                String name = eq < 0 ? param : param.substring(0, eq);
+                String value = eq < 0 ? "" : param.substring(eq + 1);
+                params.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                        URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static TaskKey after(Map<String, String> query) {
+        String after = query.get("after");
+        try {
+            return after == null ? null : TaskKey.decode(after);
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(400, "Parameter 'after' is not a task key");
+        }
+    }
+
+    private static int afterId(Map<String, String> query) {
+        try {
+            return Integer.parseInt(query.get("afterId"));
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Parameter 'afterId' is not a number");
+        }
+    }
+
+    private static int limit(Map<String, String> query) {
+        try {
+            int limit = Integer.parseInt(query.getOrDefault("limit", String.valueOf(DEFAULT_SEARCH_LIMIT)));
+            if (limit < 1) {
+                throw new HttpError(400, "Parameter 'limit' must be positive");
+            }
+            return limit;
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Parameter 'limit' is not a number");
+        }
+    }
+
+    private static String text(byte[] body) {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    private static String text(Map<String, Object> fields, String name, boolean required) {
+        Object value = fields.get(name);
+        if (value == null) {
+            if (required) {
+                throw new HttpError(400, "Missing field '" + name + "'");
+            }
+            return null;
+        }
+        if (!(value instanceof String text)) {
+            throw new HttpError(400, "Field '" + name + "' is not a string");
+        }
+        return text;
+    }
+
+    private static int parseId(String id) {
+        try {
+            return Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "Bad id '" + id + "'");
+        }
+    }
+
+    private static TaskPrio prio(String name) {
+        try {
+            return TaskPrio.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(400, "Unknown priority '" + name + "'");
+        }
+    }
+
+    private static TaskState state(String name) {
+        try {
+            return TaskState.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(400, "Unknown state '" + name + "'");
+        }
+    }
+
+    private static HttpError methodNotAllowed() {
+        return new HttpError(405, "Method not allowed");
+    }
+
+    /**
+     * Handles an exchange, see {@link #respond}.
+     */
+    @FunctionalInterface
+    interface Handler {
+        void handle() throws IOException;
+    }
+
+    /**
+     * Ends a request with the given status code.
+     */
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
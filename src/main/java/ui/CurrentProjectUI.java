@@ -17,6 +17,8 @@ import utils.InputUtils;
  * The user selects actions on current project in the projectLoop method.
  */
 class CurrentProjectUI {
+    private static final int PAGE_SIZE = 20;
+
     private Project currentProject;
     private final Scanner scan;
 
@@ -69,10 +71,28 @@ class CurrentProjectUI {
         } while (choice != 'X');
     }
 
+    /**
+     * Prints the matching tasks a page at a time; each page is looked up after the last
+     * task of the page before, so the tasks after the last page shown are never read.
+     */
     private void viewTasks(ITaskMatcher matcher) {
         System.out.println(currentProject.toString());
-        List<Task> tasks = currentProject.findTasks(matcher);
+        List<Task> tasks = currentProject.findTasks(matcher, null, PAGE_SIZE);
         printTasks(tasks);
+        while (tasks.size() == PAGE_SIZE) {
+            TaskKey last = TaskKey.of(tasks.get(tasks.size() - 1));
+            System.out.print("More (Y/N)? ");
+            if (Character.toUpperCase(InputUtils.scanAndReturnFirstChar(scan)) != 'Y') {
+                return;
+            }
+            tasks = currentProject.findTasks(matcher, last, PAGE_SIZE);
+            if (tasks.isEmpty()) {
+                System.out.println("No more tasks");
+            }
+            for (Task task : tasks) {
+                System.out.println(task.toString());
+            }
+        }
     }
 
     private void addTask() {
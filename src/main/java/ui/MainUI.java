@@ -3,6 +3,7 @@ package ui;
 import java.util.List;
 import java.util.Scanner;
 
+import metrics.Metrics;
 import model.Project;
 import model.ProjectsManager;
 import utils.InputUtils;
@@ -35,6 +36,7 @@ public class MainUI {
                 case 'A' -> addProject();
                 case 'M' -> manageProject();
                 case 'R' -> removeProject();
+                case 'S' -> System.out.print(Metrics.dump());
                 case 'X' -> {
                 }
                 default -> System.out.println("Unknown command");
@@ -103,6 +105,7 @@ public class MainUI {
         System.out.println("A - add project");
         System.out.println("M - manage project");
         System.out.println("R - remove project");
+        System.out.println("S - show metrics");
         System.out.println("X - exit");
         System.out.println("----------");
     }
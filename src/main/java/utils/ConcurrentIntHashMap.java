@@ -0,0 +1,210 @@
+package utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hash map keyed by primitive {@code int} values that can be read by many threads while
+ * it is being changed. Laid out like {@link IntHashMap}, with open addressing and immutable
+ * entries, but reads take no lock: a slot is read with acquire semantics and always holds a
+ * complete entry, and a resize publishes a fully built table. Writes are synchronized, so
+ * there is one writer at a time.
+ * @param <V> The type of the mapped values.
+ */
+public class ConcurrentIntHashMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final Entry<?> REMOVED = new Entry<>(0, null);
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Entry[].class);
+
+    private volatile Entry<V>[] table;
+    private volatile int size;
+    private int used; // live entries plus removed markers, guarded by this
+
+    public ConcurrentIntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty map that can hold the expected number of entries without resizing.
+     * @param expectedSize The number of entries the map is expected to hold.
+     */
+    public ConcurrentIntHashMap(int expectedSize) {
+        table = newTable(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Returns the value mapped to the given key, without locking.
+     * @param key The key to look up.
+     * @return The mapped value, or {@code null} if the key is not present.
+     */
+    public V get(int key) {
+        Entry<V>[] tab = table;
+        int mask = tab.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Entry<V> e = slot(tab, i);
+            if (e == null) {
+                return null;
+            }
+            if (e != REMOVED && e.key == key) {
+                return e.value;
+            }
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any previous mapping.
+     * @param key   The key.
+     * @param value The value, must not be {@code null}.
+     * @return The previously mapped value, or {@code null} if there was none.
+     */
+    public synchronized V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        if ((used + 1) * 4 > table.length * 3) {
+            resize(size + 1);
+        }
+        Entry<V>[] tab = table;
+        int mask = tab.length - 1;
+        int free = -1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Entry<V> e = tab[i];
+            if (e == null) {
+                if (free < 0) {
+                    free = i;
+                    used++;
+                }
+                SLOT.setRelease(tab, free, new Entry<>(key, value));
+                size++;
+                return null;
+            }
+            if (e == REMOVED) {
+                if (free < 0) {
+                    free = i;
+                }
+            } else if (e.key == key) {
+                SLOT.setRelease(tab, i, new Entry<>(key, value));
+                return e.value;
+            }
+        }
+    }
+
+    /**
+     * Maps the given key to the given value, unless the key is already present.
+     * @param key   The key.
+     * @param value The value, must not be {@code null}.
+     * @return The value already mapped, or {@code null} if the given value was added.
+     */
+    public synchronized V putIfAbsent(int key, V value) {
+        V current = get(key);
+        return current != null ? current : put(key, value);
+    }
+
+    /**
+     * Removes the mapping for the given key.
+     * @param key The key to remove.
+     * @return The removed value, or {@code null} if the key was not present.
+     */
+    public synchronized V remove(int key) {
+        Entry<V>[] tab = table;
+        int mask = tab.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Entry<V> e = tab[i];
+            if (e == null) {
+                return null;
+            }
+            if (e != REMOVED && e.key == key) {
+                SLOT.setRelease(tab, i, REMOVED);
+                size--;
+                return e.value;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        table = newTable(DEFAULT_CAPACITY);
+        size = 0;
+        used = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the values in this map, in no particular order. Values added or removed while
+     * the map is read may or may not be included.
+     * @return A new list containing the mapped values.
+     */
+    public List<V> values() {
+        Entry<V>[] tab = table;
+        List<V> result = new ArrayList<>(size);
+        for (int i = 0; i < tab.length; i++) {
+            Entry<V> e = slot(tab, i);
+            if (e != null && e != REMOVED) {
+                result.add(e.value);
+            }
+        }
+        return result;
+    }
+
+    private void resize(int minSize) {
+        Entry<V>[] old = table;
+        Entry<V>[] tab = newTable(tableSizeFor(Math.max(minSize, size * 2)));
+        int mask = tab.length - 1;
+        for (Entry<V> e : old) {
+            if (e != null && e != REMOVED) {
+                int i = hash(e.key) & mask;
+                while (tab[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                tab[i] = e;
+            }
+        }
+        table = tab;
+        used = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Entry<V> slot(Entry<V>[] tab, int i) {
+        return (Entry<V>) SLOT.getAcquire(tab, i);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int n = DEFAULT_CAPACITY;
+        while (n * 3 < expectedSize * 4 + 4) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Entry<V>[] newTable(int capacity) {
+        return (Entry<V>[]) new Entry<?>[capacity];
+    }
+
+    private static final class Entry<V> {
+        final int key;
+        final V value;
+
+        Entry(int key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A hash map keyed by primitive {@code int} values, so lookups by id do not box keys.
+ * Uses open addressing with linear probing. Each slot holds an immutable entry, which
+ * keeps a key and its value together when the map is read.
+ * @param <V> The type of the mapped values.
+ */
+public class IntHashMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final Entry<?> REMOVED = new Entry<>(0, null);
+
+    private Entry<V>[] table;
+    private int size;
+    private int used; // live entries plus removed markers
+
+    public IntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty map that can hold the expected number of entries without resizing.
+     * @param expectedSize The number of entries the map is expected to hold.
+     */
+    public IntHashMap(int expectedSize) {
+        table = newTable(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Returns the value mapped to the given key.
+     * @param key The key to look up.
+     * @return The mapped value, or {@code null} if the key is not present.
+     */
+    public V get(int key) {
+        Entry<V>[] tab = table;
+        int mask = tab.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Entry<V> e = tab[i];
+            if (e == null) {
+                return null;
+            }
+            if (e != REMOVED && e.key == key) {
+                return e.value;
+            }
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any previous mapping.
+     * @param key   The key.
+     * @param value The value, must not be {@code null}.
+     * @return The previously mapped value, or {@code null} if there was none.
+     */
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        if ((used + 1) * 4 > table.length * 3) {
+            resize(size + 1);
+        }
+        Entry<V>[] tab = table;
+        int mask = tab.length - 1;
+        int free = -1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Entry<V> e = tab[i];
+            if (e == null) {
+                if (free < 0) {
+                    free = i;
+                    used++;
+                }
+                tab[free] = new Entry<>(key, value);
+                size++;
+                return null;
+            }
+            if (e == REMOVED) {
+                if (free < 0) {
+                    free = i;
+                }
+            } else if (e.key == key) {
+                tab[i] = new Entry<>(key, value);
+                return e.value;
+            }
+        }
+    }
+
+    /**
+     * Removes the mapping for the given key.
+     * @param key The key to remove.
+     * @return The removed value, or {@code null} if the key was not present.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        Entry<V>[] tab = table;
+        int mask = tab.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Entry<V> e = tab[i];
+            if (e == null) {
+                return null;
+            }
+            if (e != REMOVED && e.key == key) {
+                tab[i] = (Entry<V>) REMOVED;
+                size--;
+                return e.value;
+            }
+        }
+    }
+
+    public void clear() {
+        table = newTable(DEFAULT_CAPACITY);
+        size = 0;
+        used = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a snapshot of the values in this map, in no particular order.
+     * @return A new list containing all mapped values.
+     */
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size);
+        for (Entry<V> e : table) {
+            if (e != null && e != REMOVED) {
+                result.add(e.value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds all values of this map to the given collection.
+     * @param target The collection to add the values to.
+     */
+    public void addValuesTo(Collection<? super V> target) {
+        for (Entry<V> e : table) {
+            if (e != null && e != REMOVED) {
+                target.add(e.value);
+            }
+        }
+    }
+
+    private void resize(int minSize) {
+        Entry<V>[] old = table;
+        Entry<V>[] tab = newTable(tableSizeFor(Math.max(minSize, size * 2)));
+        int mask = tab.length - 1;
+        for (Entry<V> e : old) {
+            if (e != null && e != REMOVED) {
+                int i = hash(e.key) & mask;
+                while (tab[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                tab[i] = e;
+            }
+        }
+        table = tab;
+        used = size;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int n = DEFAULT_CAPACITY;
+        while (n * 3 < expectedSize * 4 + 4) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Entry<V>[] newTable(int capacity) {
+        return (Entry<V>[]) new Entry<?>[capacity];
+    }
+
+    private static final class Entry<V> {
+        final int key;
+        final V value;
+
+        Entry(int key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package utils;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable map keyed by non-negative {@code int} values. Changing the map returns a new
+ * map that shares all of the old one except the path to the changed key, so keeping old
+ * versions around is cheap, and a version can be read by any number of threads without locking.
+ * <p>
+ * The map is a trie of 32-way nodes: each level takes five bits of the key, and the trie is as
+ * deep as the largest key needs, at most seven levels. Keys handed out in sequence, such as
+ * task IDs, fill the nodes densely. Values are iterated in key order.
+ * <p>
+ * Many changes are made at once with a {@link Builder}, which changes the nodes it has copied
+ * in place instead of copying them again for every key.
+ * @param <V> The type of the mapped values.
+ */
+public final class PersistentIntMap<V> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final int MAX_SHIFT = 30;
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(null, 0, 0);
+
+    private final Node root;
+    private final int shift; // the shift of the root level; keys below 1 << (shift + 5) fit
+    private final int size;
+
+    private PersistentIntMap(Node root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    /**
+     * Returns the value mapped to the given key.
+     * @param key The key to look up.
+     * @return The mapped value, or {@code null} if the key is not present.
+     */
+    public V get(int key) {
+        return find(root, shift, key);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a map with the given key mapped to the given value, replacing any previous mapping.
+     * @param key   The key, must not be negative.
+     * @param value The value, must not be {@code null}.
+     * @return The new map.
+     * @throws IllegalArgumentException if the key is negative or the value {@code null}.
+     */
+    public PersistentIntMap<V> with(int key, V value) {
+        checkEntry(key, value);
+        int newShift = shiftFor(shift, key);
+        Node grown = grow(root, shift, newShift, null);
+        boolean added = find(root, shift, key) == null;
+        return new PersistentIntMap<>(putIn(grown, newShift, key, value, null), newShift, added ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map without the given key.
+     * @param key The key to remove.
+     * @return The new map, or this map if the key is not present.
+     */
+    public PersistentIntMap<V> without(int key) {
+        if (find(root, shift, key) == null) {
+            return this;
+        }
+        return new PersistentIntMap<>(removeFrom(root, shift, key, null), shift, size - 1);
+    }
+
+    /**
+     * Returns the values of the map, in the order of their keys. The collection is a read-only
+     * view of this version of the map, so it is not copied and never changes.
+     * @return The values.
+     */
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator<>(root, shift, 0);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Object[] toArray() {
+                Object[] values = new Object[size];
+                if (root != null) {
+                    copyValues(root, shift, values, 0);
+                }
+                return values;
+            }
+        };
+    }
+
+    /**
+     * Iterates over the values whose keys are not below the given one, in the order of their
+     * keys. Finding the first value takes a step per level of the trie, not per smaller key.
+     * @param fromKey The smallest key to iterate from.
+     * @return An iterator over the values, which cannot remove them.
+     */
+    public Iterator<V> valuesFrom(int fromKey) {
+        if (fromKey <= 0) {
+            return new ValueIterator<>(root, shift, 0);
+        }
+        if (shift < MAX_SHIFT && (fromKey >>> (shift + BITS)) != 0) {
+            return new ValueIterator<>(null, shift, 0);
+        }
+        return new ValueIterator<>(root, shift, fromKey);
+    }
+
+    /**
+     * @return A builder that starts with the entries of this map, which it does not change.
+     */
+    public Builder<V> builder() {
+        return new Builder<>(this);
+    }
+
+    /**
+     * Makes a new map from an old one and many changes, copying each node of the old map at
+     * most once. The builder is not thread-safe; the maps it builds are.
+     * @param <V> The type of the mapped values.
+     */
+    public static final class Builder<V> {
+        private Object edit = new Object(); // marks the nodes this builder may change in place
+        private Node root;
+        private int shift;
+        private int size;
+
+        private Builder(PersistentIntMap<V> map) {
+            this.root = map.root;
+            this.shift = map.shift;
+            this.size = map.size;
+        }
+
+        public V get(int key) {
+            return find(root, shift, key);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Maps the given key to the given value, replacing any previous mapping.
+         * @return This builder.
+         * @throws IllegalArgumentException if the key is negative or the value {@code null}.
+         */
+        public Builder<V> put(int key, V value) {
+            checkEntry(key, value);
+            int newShift = shiftFor(shift, key);
+            root = grow(root, shift, newShift, edit);
+            shift = newShift;
+            if (find(root, shift, key) == null) {
+                size++;
+            }
+            root = putIn(root, shift, key, value, edit);
+            return this;
+        }
+
+        /**
+         * Removes the given key, if present.
+         * @return This builder.
+         */
+        public Builder<V> remove(int key) {
+            if (find(root, shift, key) != null) {
+                root = removeFrom(root, shift, key, edit);
+                size--;
+            }
+            return this;
+        }
+
+        /**
+         * Returns a map of the entries put so far. The builder can go on changing, and then
+         * copies the nodes it shares with the map again.
+         * @return The new map.
+         */
+        public PersistentIntMap<V> build() {
+            edit = new Object();
+            return size == 0 ? empty() : new PersistentIntMap<>(root, shift, size);
+        }
+    }
+
+    /**
+     * Copies the values below the node into the array from the given position, in key order.
+     * @return The position after the last value copied.
+     */
+    private static int copyValues(Node node, int shift, Object[] values, int position) {
+        for (Object slot : node.slots) {
+            if (slot != null) {
+                if (shift == 0) {
+                    values[position++] = slot;
+                } else {
+                    position = copyValues((Node) slot, shift - BITS, values, position);
+                }
+            }
+        }
+        return position;
+    }
+
+    private static void checkEntry(int key, Object value) {
+        if (key < 0 || value == null) {
+            throw new IllegalArgumentException("Keys must not be negative, and values not null: " + key);
+        }
+    }
+
+    /**
+     * @return The root shift needed to fit the given key into a trie with the given root shift.
+     */
+    private static int shiftFor(int shift, int key) {
+        while (shift < MAX_SHIFT && (key >>> (shift + BITS)) != 0) {
+            shift += BITS;
+        }
+        return shift;
+    }
+
+    /**
+     * Puts levels above the root until the trie has the given root shift.
+     */
+    private static Node grow(Node root, int shift, int newShift, Object edit) {
+        for (; shift < newShift; shift += BITS) {
+            if (root != null) {
+                Node parent = new Node(edit);
+                parent.slots[0] = root;
+                root = parent;
+            }
+        }
+        return root;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V find(Node node, int shift, int key) {
+        if (shift < MAX_SHIFT && (key >>> (shift + BITS)) != 0 || key < 0) {
+            return null;
+        }
+        for (; node != null; shift -= BITS) {
+            Object slot = node.slots[(key >>> shift) & MASK];
+            if (shift == 0) {
+                return (V) slot;
+            }
+            node = (Node) slot;
+        }
+        return null;
+    }
+
+    private static Node putIn(Node node, int shift, int key, Object value, Object edit) {
+        Node changed = editable(node, edit);
+        int i = (key >>> shift) & MASK;
+        changed.slots[i] = shift == 0 ? value : putIn((Node) changed.slots[i], shift - BITS, key, value, edit);
+        return changed;
+    }
+
+    /**
+     * Removes a key that is present. Nodes left empty are dropped.
+     */
+    private static Node removeFrom(Node node, int shift, int key, Object edit) {
+        int i = (key >>> shift) & MASK;
+        Object slot = shift == 0 ? null : removeFrom((Node) node.slots[i], shift - BITS, key, edit);
+        if (slot == null && node.isOnly(i)) {
+            return null;
+        }
+        Node changed = editable(node, edit);
+        changed.slots[i] = slot;
+        return changed;
+    }
+
+    /**
+     * @return The node itself if the builder owning the edit mark may change it, otherwise a copy it may change.
+     */
+    private static Node editable(Node node, Object edit) {
+        if (node == null) {
+            return new Node(edit);
+        }
+        if (edit != null && node.edit == edit) {
+            return node;
+        }
+        Node copy = new Node(edit);
+        System.arraycopy(node.slots, 0, copy.slots, 0, WIDTH);
+        return copy;
+    }
+
+    private static final class Node {
+        final Object edit;
+        final Object[] slots = new Object[WIDTH];
+
+        Node(Object edit) {
+            this.edit = edit;
+        }
+
+        /**
+         * @return {@code true} if the given slot is the only one in use.
+         */
+        boolean isOnly(int index) {
+            for (int i = 0; i < WIDTH; i++) {
+                if (i != index && slots[i] != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Walks the trie depth first, keeping the path to the current value. It starts on the path
+     * to the key it iterates from, and leaves it at the first slot past that path.
+     */
+    private static final class ValueIterator<V> implements Iterator<V> {
+        private final Node[] path = new Node[MAX_SHIFT / BITS + 1];
+        private final int[] positions = new int[path.length];
+        private final int shift;
+        private final int fromKey;
+        private int fromDepth; // the levels up to this one are still on the path to fromKey
+        private int depth;
+        private V next;
+
+        ValueIterator(Node root, int shift, int fromKey) {
+            this.shift = shift;
+            this.fromKey = fromKey;
+            path[0] = root;
+            positions[0] = (fromKey >>> shift) & MASK;
+            depth = root == null ? -1 : 0;
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                int i = positions[depth];
+                if (i == WIDTH) {
+                    depth--;
+                    fromDepth = Math.min(fromDepth, depth);
+                    continue;
+                }
+                positions[depth]++;
+                Object slot = path[depth].slots[i];
+                if (slot == null) {
+                    continue;
+                }
+                int level = shift - depth * BITS;
+                if (level == 0) {
+                    next = (V) slot;
+                    return;
+                }
+                boolean onPath = depth == fromDepth && i == ((fromKey >>> level) & MASK);
+                depth++;
+                path[depth] = (Node) slot;
+                positions[depth] = onPath ? (fromKey >>> (level - BITS)) & MASK : 0;
+                fromDepth = onPath ? depth : Math.min(fromDepth, depth - 1);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public V next() {
+            V value = next;
+            if (value == null) {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return value;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+/**
+ * An inverted index for full-text search over documents identified by an {@code int} ID.
+ * Text is split into lower-case tokens of letters and digits. Each token maps to the
+ * documents containing it, with the number of times it occurs there. Tokens are looked up
+ * in a hash map, and also kept sorted, to find the tokens starting with a prefix.
+ * <p>
+ * A query is a list of terms, all of which must match a document. A term matches a token
+ * exactly, or, written with a trailing {@code *}, any token starting with it. Results are
+ * ranked by the sum, over the matched tokens, of the number of occurrences times the inverse
+ * document frequency of the token; prefix matches count half. Ties are broken by the given order.
+ * <p>
+ * Writes are synchronized. Searches take no lock and can run while the index is changed;
+ * they may or may not see a document that is being added or removed.
+ * @param <T> The type of the indexed documents.
+ */
+public class TextIndex<T> {
+    private static final double PREFIX_WEIGHT = 0.5;
+
+    private final Map<String, ConcurrentIntHashMap<Posting<T>>> postings;
+    private final NavigableMap<String, ConcurrentIntHashMap<Posting<T>>> sortedPostings;
+    private final Comparator<? super T> order;
+    private volatile int size;
+
+    /**
+     * @param order The order of documents with the same score.
+     */
+    public TextIndex(Comparator<? super T> order) {
+        this.postings = new ConcurrentHashMap<>();
+        this.sortedPostings = new ConcurrentSkipListMap<>();
+        this.order = order;
+    }
+
+    /**
+     * Adds a document. A text given twice counts twice, which ranks its tokens higher.
+     * @param id       The ID of the document, not already in the index.
+     * @param document The document.
+     * @param texts    The texts to index the document by; {@code null} texts are skipped.
+     */
+    public synchronized void add(int id, T document, String... texts) {
+        for (Map.Entry<String, Integer> token : countTokens(texts).entrySet()) {
+            ConcurrentIntHashMap<Posting<T>> documents = postings.get(token.getKey());
+            if (documents == null) {
+                documents = new ConcurrentIntHashMap<>(1);
+                sortedPostings.put(token.getKey(), documents);
+                postings.put(token.getKey(), documents);
+            }
+            documents.put(id, new Posting<>(id, document, token.getValue()));
+        }
+        size++;
+    }
+
+    /**
+     * Removes a document.
+     * @param id    The ID of the document.
+     * @param texts The texts the document was added with.
+     */
+    public synchronized void remove(int id, String... texts) {
+        boolean removed = false;
+        for (String token : countTokens(texts).keySet()) {
+            ConcurrentIntHashMap<Posting<T>> documents = postings.get(token);
+            if (documents != null && documents.remove(id) != null) {
+                removed = true;
+                if (documents.isEmpty()) {
+                    postings.remove(token);
+                    sortedPostings.remove(token);
+                }
+            }
+        }
+        if (removed) {
+            size--;
+        }
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        sortedPostings.clear();
+        size = 0;
+    }
+
+    /**
+     * @return The number of indexed documents.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the documents matching all terms of the query, best first.
+     * @param query The query, for instance {@code "release notes*"}.
+     * @param limit The maximum number of documents to return.
+     * @return The best matching documents, at most {@code limit}.
+     */
+    public List<T> search(String query, int limit) {
+        return search(query, document -> true, limit);
+    }
+
+    /**
+     * Finds the documents matching all terms of the query and the filter, best first. The filter
+     * is checked before the limit is applied, so up to {@code limit} documents passing it are found.
+     * @param query  The query, for instance {@code "release notes*"}.
+     * @param filter The documents to keep.
+     * @param limit  The maximum number of documents to return.
+     * @return The best matching documents, at most {@code limit}.
+     */
+    public List<T> search(String query, Predicate<? super T> filter, int limit) {
+        List<Term<T>> terms = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            // only the last token of a word like "e-mail*" is a prefix
+            boolean prefix = word.endsWith("*");
+            List<String> tokens = tokens(word);
+            for (int i = 0; i < tokens.size(); i++) {
+                terms.add(new Term<>(tokens.get(i), prefix && i == tokens.size() - 1));
+            }
+        }
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        for (Term<T> term : terms) {
+            term.expand(postings, sortedPostings);
+            if (term.postingCount == 0) {
+                return Collections.emptyList();
+            }
+        }
+        // start with the rarest term, so the candidate set is as small as it gets
+        terms.sort(Comparator.comparingLong(term -> term.postingCount));
+        int documentCount = Math.max(size, 1);
+
+        Term<T> first = terms.get(0);
+        if (terms.size() == 1 && first.tokens.size() == 1) {
+            // each document occurs once, so its score is known without collecting hits
+            return best(first.tokens.get(0), first.weight(first.tokens.get(0), documentCount), filter, limit);
+        }
+        IntHashMap<Hit<T>> hits = new IntHashMap<>();
+        for (Map.Entry<String, ConcurrentIntHashMap<Posting<T>>> token : first.tokens) {
+            double weight = first.weight(token, documentCount);
+            for (Posting<T> posting : token.getValue().values()) {
+                Hit<T> hit = hits.get(posting.id);
+                if (hit == null) {
+                    hit = new Hit<>(posting.id, posting.document);
+                    hits.put(posting.id, hit);
+                }
+                hit.score += weight * posting.count;
+            }
+        }
+        for (int i = 1; i < terms.size() && !hits.isEmpty(); i++) {
+            hits = narrow(hits, terms.get(i), documentCount);
+        }
+        return best(hits, filter, limit);
+    }
+
+    /**
+     * Keeps the hits that also match the term, adding the score of the term.
+     * Looks up each hit in the postings of the term, or walks the postings and looks up the
+     * hits, whichever takes fewer steps.
+     */
+    private static <T> IntHashMap<Hit<T>> narrow(IntHashMap<Hit<T>> hits, Term<T> term, int documentCount) {
+        IntHashMap<Hit<T>> matched = new IntHashMap<>((int) Math.min(hits.size(), term.postingCount));
+        if ((long) hits.size() * term.tokens.size() <= term.postingCount) {
+            List<Hit<T>> candidates = hits.values();
+            for (Map.Entry<String, ConcurrentIntHashMap<Posting<T>>> token : term.tokens) {
+                double weight = term.weight(token, documentCount);
+                for (Hit<T> hit : candidates) {
+                    Posting<T> posting = token.getValue().get(hit.id);
+                    if (posting != null) {
+                        hit.score += weight * posting.count;
+                        matched.put(hit.id, hit);
+                    }
+                }
+            }
+        } else {
+            for (Map.Entry<String, ConcurrentIntHashMap<Posting<T>>> token : term.tokens) {
+                double weight = term.weight(token, documentCount);
+                for (Posting<T> posting : token.getValue().values()) {
+                    Hit<T> hit = hits.get(posting.id);
+                    if (hit != null) {
+                        hit.score += weight * posting.count;
+                        matched.put(posting.id, hit);
+                    }
+                }
+            }
+        }
+        return matched;
+    }
+
+    private List<T> best(IntHashMap<Hit<T>> hits, Predicate<? super T> filter, int limit) {
+        PriorityQueue<Hit<T>> best = new PriorityQueue<>(Math.min(limit, hits.size()) + 1, worstFirst());
+        for (Hit<T> hit : hits.values()) {
+            if (!filter.test(hit.document)) {
+                continue;
+            }
+            best.add(hit);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        return bestFirst(best);
+    }
+
+    private List<T> best(Map.Entry<String, ConcurrentIntHashMap<Posting<T>>> token, double weight,
+                         Predicate<? super T> filter, int limit) {
+        Comparator<Hit<T>> worstFirst = worstFirst();
+        PriorityQueue<Hit<T>> best = new PriorityQueue<>(Math.min(limit, token.getValue().size()) + 1, worstFirst);
+        for (Posting<T> posting : token.getValue().values()) {
+            if (!filter.test(posting.document)) {
+                continue;
+            }
+            Hit<T> hit = new Hit<>(posting.id, posting.document);
+            hit.score = weight * posting.count;
+            if (best.size() < limit) {
+                best.add(hit);
+            } else if (worstFirst.compare(hit, best.peek()) > 0) {
+                best.poll();
+                best.add(hit);
+            }
+        }
+        return bestFirst(best);
+    }
+
+    private Comparator<Hit<T>> worstFirst() {
+        return Comparator.<Hit<T>>comparingDouble(hit -> hit.score)
+                .thenComparing((a, b) -> order.compare(b.document, a.document));
+    }
+
+    private List<T> bestFirst(PriorityQueue<Hit<T>> best) {
+        List<T> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll().document);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private static Map<String, Integer> countTokens(String... texts) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String text : texts) {
+            if (text != null) {
+                for (String token : tokens(text)) {
+                    counts.merge(token, 1, Integer::sum);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Splits text into lower-case tokens of letters and digits.
+     * @param text The text to split.
+     * @return The tokens, in the order they appear.
+     */
+    public static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inToken = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inToken && start < 0) {
+                start = i;
+            } else if (!inToken && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private record Posting<T>(int id, T document, int count) {
+    }
+
+    private static final class Hit<T> {
+        final int id;
+        final T document;
+        double score;
+
+        Hit(int id, T document) {
+            this.id = id;
+            this.document = document;
+        }
+    }
+
+    /**
+     * A term of a query, with the tokens it matches.
+     */
+    private static final class Term<T> {
+        final String text;
+        final boolean prefix;
+        List<Map.Entry<String, ConcurrentIntHashMap<Posting<T>>>> tokens = List.of();
+        long postingCount;
+
+        Term(String text, boolean prefix) {
+            this.text = text;
+            this.prefix = prefix;
+        }
+
+        void expand(Map<String, ConcurrentIntHashMap<Posting<T>>> postings,
+                    NavigableMap<String, ConcurrentIntHashMap<Posting<T>>> sortedPostings) {
+            if (prefix) {
+                tokens = new ArrayList<>(sortedPostings.subMap(text, true, text + Character.MAX_VALUE, false).entrySet());
+            } else {
+                ConcurrentIntHashMap<Posting<T>> documents = postings.get(text);
+                tokens = documents == null ? List.of() : List.of(Map.entry(text, documents));
+            }
+            for (Map.Entry<String, ConcurrentIntHashMap<Posting<T>>> token : tokens) {
+                postingCount += token.getValue().size();
+            }
+        }
+
+        double weight(Map.Entry<String, ConcurrentIntHashMap<Posting<T>>> token, int documentCount) {
+            double idf = Math.log(1 + (double) documentCount / Math.max(token.getValue().size(), 1));
+            return token.getKey().length() > text.length() ? idf * PREFIX_WEIGHT : idf;
+        }
+    }
+}
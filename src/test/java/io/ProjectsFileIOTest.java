@@ -0,0 +1,248 @@
+package io;
+
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes projects in the binary format and reads them back, at once and through a
+ * {@link MappedProjectStore} that loads the tasks of a project when they are first used.
+ */
+class ProjectsFileIOTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void binaryFormatRoundTrip() throws Exception {
+        List<Project> projects = sampleProjects(true);
+        File file = dir.resolve("projects.bin").toFile();
+        ProjectsFileIO.serializeToFile(file, projects);
+
+        assertFalse(ProjectsFileIO.isLegacyFile(file));
+        assertSameProjects(projects, ProjectsFileIO.deSerializeFromFile(file));
+    }
+
+    @Test
+    void legacySerializedFileIsMigrated() throws Exception {
+        // serialized projects do not store the date of task removals, so none is removed
+        List<Project> projects = sampleProjects(false);
+        File file = dir.resolve("projects.ser").toFile();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+            out.writeObject(new ArrayList<>(projects));
+        }
+        assertTrue(ProjectsFileIO.isLegacyFile(file));
+        assertSameProjects(projects, ProjectsFileIO.deSerializeFromFile(file));
+
+        assertTrue(ProjectsFileIO.migrateLegacyFile(file));
+        assertFalse(ProjectsFileIO.isLegacyFile(file));
+        assertSameProjects(projects, ProjectsFileIO.deSerializeFromFile(file));
+    }
+
+    @Test
+    void tasksAreLoadedWhenFirstUsed() throws Exception {
+        List<Project> projects = sampleProjects(true);
+        File file = dir.resolve("projects.bin").toFile();
+        ProjectsFileIO.serializeToFile(file, projects);
+
+        try (MappedProjectStore store = MappedProjectStore.open(file)) {
+            List<Project> opened = store.getProjects();
+            for (int i = 0; i < projects.size(); i++) {
+                Project project = opened.get(i);
+                assertFalse(project.isLoaded());
+                // the aggregates are stored with the project, so they do not load its tasks
+                assertEquals(projects.get(i).getTaskCount(), project.getTaskCount());
+                assertEquals(projects.get(i).getTaskCount(TaskState.DONE), project.getTaskCount(TaskState.DONE));
+                assertEquals(projects.get(i).getLastUpdated(), project.getLastUpdated());
+                assertFalse(project.isLoaded());
+            }
+            assertSameProjects(projects, opened);
+            assertTrue(opened.get(0).isLoaded());
+            assertFalse(opened.get(0).isDirty());
+        }
+    }
+
+    @Test
+    void commitWritesOnlyChangedProjects() throws Exception {
+        // a big unchanged project, so appending the changed one is cheaper than rewriting the file
+        Project big = Project.restore(20, "Big", "", LocalDate.of(2021, 5, 5), 1);
+        for (int i = 1; i <= 2000; i++) {
+            big.restoreTask(i, "Bulk task " + i, TaskPrio.MEDIUM, TaskState.TO_DO, null,
+                    LocalDate.of(2021, 5, 5), LocalDate.of(2021, 5, 6));
+        }
+        List<Project> projects = new ArrayList<>(sampleProjects(true));
+        projects.add(big);
+        File file = dir.resolve("projects.bin").toFile();
+        ProjectsFileIO.serializeToFile(file, projects);
+
+        List<Project> expected;
+        try (MappedProjectStore store = MappedProjectStore.open(file, true)) {
+            ProjectsManager manager = new ProjectsManager();
+            manager.setProjects(store.getProjects());
+            Project changed = manager.getProjects().get(0);
+            changed.addTask("Added after the reload", TaskPrio.HIGH);
+            changed.getTaskById(1).setState(TaskState.DONE);
+            assertFalse(manager.getProjects().get(1).isLoaded());
+
+            assertTrue(store.commit(manager.getProjects(), 3));
+            assertFalse(changed.isDirty());
+            assertFalse(manager.getProjects().get(1).isLoaded());
+            expected = manager.getProjects();
+
+            try (MappedProjectStore reopened = MappedProjectStore.open(file)) {
+                assertEquals(3, reopened.getJournalGeneration());
+                assertSameProjects(expected, reopened.getProjects());
+            }
+        }
+    }
+
+    @Test
+    void commitAppendsOnlyTheChangedIndexEntries() throws Exception {
+        // small projects, so the index is most of the file
+        List<Project> projects = new ArrayList<>();
+        for (int i = 1; i <= 3000; i++) {
+            Project project = Project.restore(i, "Project " + i, "Described", LocalDate.of(2024, 1, 1), 2);
+            project.restoreTask(1, "Task", TaskPrio.LOW, TaskState.TO_DO, null,
+                    LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 2));
+            projects.add(project);
+        }
+        File file = dir.resolve("projects.bin").toFile();
+        ProjectsFileIO.serializeToFile(file, projects);
+        long written = file.length();
+
+        try (MappedProjectStore store = MappedProjectStore.open(file, true)) {
+            ProjectsManager manager = new ProjectsManager();
+            manager.setProjects(store.getProjects());
+            for (int commit = 1; commit <= 30; commit++) {
+                Project changed = manager.getProjectById(commit * 7);
+                changed.addTask("Added in commit " + commit, TaskPrio.HIGH);
+                if (commit % 5 == 0) {
+                    manager.removeProject(manager.getProjectById(commit * 11));
+                    manager.addProject("New in commit " + commit, "");
+                }
+                long before = file.length();
+                assertTrue(store.commit(manager.getProjects(), commit), "commit " + commit);
+                if (commit < 10) {
+                    assertTrue(file.length() - before < 1024, "commit " + commit + " grew the file too much");
+                }
+
+                try (MappedProjectStore reopened = MappedProjectStore.open(file)) {
+                    assertEquals(commit, reopened.getJournalGeneration());
+                    assertSameProjects(manager.getProjects(), reopened.getProjects());
+                }
+            }
+            // a complete index now and then, so opening does not follow ever more links
+            assertTrue(file.length() > written * 3 / 2);
+        }
+    }
+
+    @Test
+    void manyProjectsAreReadWithoutKeepingTheirSegments() throws Exception {
+        // more projects than the mappings a process may have, were each segment kept mapped
+        List<Project> projects = new ArrayList<>();
+        for (int i = 1; i <= 70000; i++) {
+            Project project = Project.restore(i, "Project " + i, "", LocalDate.of(2024, 1, 1), 1);
+            project.restoreTask(1, "Only task", TaskPrio.LOW, TaskState.TO_DO, null,
+                    LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 2));
+            projects.add(project);
+        }
+        File file = dir.resolve("projects.bin").toFile();
+        ProjectsFileIO.serializeToFile(file, projects);
+
+        List<Project> read = ProjectsFileIO.deSerializeFromFile(file);
+        assertEquals(projects.size(), read.size());
+        for (Project project : read) {
+            assertEquals(1, project.getTaskCount());
+            assertNull(project.getTaskLoader());
+        }
+        try (MappedProjectStore store = MappedProjectStore.open(file)) {
+            for (Project project : store.getProjects()) {
+                assertEquals("Only task", project.getTaskById(1).getDescription());
+            }
+        }
+    }
+
+    @Test
+    void emptyProjectListRoundTrip() throws IOException, ClassNotFoundException {
+        File file = dir.resolve("projects.bin").toFile();
+        ProjectsFileIO.serializeToFile(file, List.of());
+        assertEquals(List.of(), ProjectsFileIO.deSerializeFromFile(file));
+    }
+
+    /**
+     * @param removeTask Whether to remove a task, which moves the last update date of its project.
+     * @return Projects with tasks in every state and priority, taken and free, text outside
+     *         ASCII and dates of their own.
+     */
+    private static List<Project> sampleProjects(boolean removeTask) {
+        Project first = Project.restore(1, "Website", "Relaunch the site", LocalDate.of(2023, 1, 15), 1);
+        LocalDate created = LocalDate.of(2023, 2, 1);
+        int id = 1;
+        for (TaskState state : TaskState.values()) {
+            for (TaskPrio prio : TaskPrio.values()) {
+                first.restoreTask(id, "Task " + id + " of " + state + "/" + prio, prio, state,
+                        id % 2 == 0 ? "user" + (id % 3) : null, created, created.plusDays(id));
+                id++;
+            }
+        }
+        if (removeTask) {
+            first.removeTask(first.getTaskById(3), LocalDate.of(2023, 3, 1));
+        }
+
+        Project second = Project.restore(7, "Übersetzung", "Texte für 日本 übersetzen", LocalDate.of(2022, 6, 30), 40);
+        second.restoreTask(12, "Erste Aufgabe", TaskPrio.LOW, TaskState.IN_PROGRESS, "anna",
+                LocalDate.of(2022, 7, 1), LocalDate.of(2022, 7, 2));
+        second.restoreTask(39, "", TaskPrio.HIGH, TaskState.TO_DO, null,
+                LocalDate.of(2022, 7, 3), LocalDate.of(2022, 7, 3));
+
+        Project empty = Project.restore(8, "Empty", "", LocalDate.of(2024, 2, 29), 1);
+        return List.of(first, second, empty);
+    }
+
+    static void assertSameProjects(List<Project> expected, List<Project> actual) {
+        assertEquals(expected.size(), actual.size(), "project count");
+        for (int i = 0; i < expected.size(); i++) {
+            Project want = expected.get(i);
+            Project got = actual.get(i);
+            assertEquals(want.getId(), got.getId());
+            assertEquals(want.getName(), got.getName());
+            assertEquals(want.getDescription(), got.getDescription());
+            assertEquals(want.getCreated(), got.getCreated());
+            assertEquals(want.getNextTaskId(), got.getNextTaskId());
+            assertEquals(want.getLastUpdated(), got.getLastUpdated(), "last update of project " + want.getId());
+            assertSameTasks(want.getTasks(), got.getTasks());
+        }
+    }
+
+    static void assertSameTasks(List<Task> expected, List<Task> actual) {
+        assertEquals(expected.size(), actual.size(), "task count");
+        for (int i = 0; i < expected.size(); i++) {
+            Task want = expected.get(i);
+            Task got = actual.get(i);
+            assertEquals(want.getId(), got.getId());
+            assertEquals(want.getDescription(), got.getDescription());
+            assertEquals(want.getPrio(), got.getPrio());
+            assertEquals(want.getState(), got.getState());
+            assertEquals(want.getTakenBy(), got.getTakenBy());
+            assertEquals(want.getCreated(), got.getCreated());
+            assertEquals(want.getLastUpdated(), got.getLastUpdated());
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package io;
+
+import model.Project;
+import model.ProjectsBatch;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskBatch;
+import model.TaskPrio;
+import model.TaskState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.List;
+
+import static io.ProjectsFileIOTest.assertSameProjects;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Journals changes and replays them, also from journals whose last records were cut off or
+ * damaged, as a crash or a bad disk leaves them.
+ */
+class ProjectsJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayRestoresEveryChange() throws IOException {
+        File file = dir.resolve("data.journal.0").toFile();
+        ProjectsManager manager = new ProjectsManager();
+        try (ProjectsJournal journal = ProjectsJournal.create(file, 0)) {
+            manager.addListener(journal);
+            Project project = manager.addProject("Journaled", "All kinds of changes");
+            Task first = project.addTask("First", TaskPrio.HIGH);
+            Task second = project.addTask("Second", TaskPrio.LOW);
+            first.setState(TaskState.IN_PROGRESS);
+            second.setTakenBy("bob");
+            project.removeTask(first);
+            project.batch().add("Batched", TaskPrio.MEDIUM).setPrio(second, TaskPrio.HIGH).apply();
+            Project removed = manager.addProject("Removed", "");
+            removed.addTask("Gone with the project", TaskPrio.LOW);
+            manager.removeProject(removed);
+        }
+
+        ProjectsManager replayed = new ProjectsManager();
+        assertEquals(0, ProjectsJournal.replay(file, replayed));
+        assertSameProjects(manager.getProjects(), replayed.getProjects());
+        assertNull(replayed.getProjectById(2));
+    }
+
+    @Test
+    void replayCutsOffATruncatedRecord() throws IOException {
+        File file = dir.resolve("data.journal.1").toFile();
+        ProjectsManager manager = new ProjectsManager();
+        long complete;
+        long full;
+        try (ProjectsJournal journal = ProjectsJournal.create(file, 1)) {
+            manager.addListener(journal);
+            Project project = manager.addProject("Crashed", "");
+            project.addTask("Kept", TaskPrio.LOW);
+            complete = journal.size();
+            project.addTask("Half written", TaskPrio.HIGH);
+            full = journal.size();
+        }
+        truncate(file, complete + (full - complete) / 2);
+
+        ProjectsManager replayed = new ProjectsManager();
+        ProjectsJournal.replay(file, replayed);
+        Project project = replayed.getProjectById(1);
+        assertEquals(1, project.getTaskCount());
+        assertEquals("Kept", project.getTaskById(1).getDescription());
+        assertEquals(complete, file.length());
+
+        // the journal is appended to after the last complete record
+        try (ProjectsJournal journal = ProjectsJournal.openForAppend(file)) {
+            assertNotNull(journal);
+            replayed.addListener(journal);
+            project.addTask("Written after the crash", TaskPrio.MEDIUM);
+        }
+        ProjectsManager again = new ProjectsManager();
+        ProjectsJournal.replay(file, again);
+        assertSameProjects(replayed.getProjects(), again.getProjects());
+        assertEquals(2, again.getProjectById(1).getTaskCount());
+    }
+
+    @Test
+    void replayStopsAtACorruptRecord() throws IOException {
+        File file = dir.resolve("data.journal.0").toFile();
+        ProjectsManager manager = new ProjectsManager();
+        long before;
+        try (ProjectsJournal journal = ProjectsJournal.create(file, 0)) {
+            manager.addListener(journal);
+            Project project = manager.addProject("Damaged", "");
+            project.addTask("Before the damage", TaskPrio.LOW);
+            before = journal.size();
+            project.addTask("Damaged", TaskPrio.LOW);
+            project.addTask("After the damage", TaskPrio.LOW);
+        }
+        // a byte of the change itself, past the length and checksum of the record
+        flipByte(file, before + 10);
+
+        ProjectsManager replayed = new ProjectsManager();
+        ProjectsJournal.replay(file, replayed);
+        Project project = replayed.getProjectById(1);
+        assertEquals(1, project.getTaskCount());
+        assertNull(project.getTaskById(3));
+        assertEquals(before, file.length());
+    }
+
+    @Test
+    void damagedBatchIsNotReplayedAtAll() throws IOException {
+        File file = dir.resolve("data.journal.0").toFile();
+        ProjectsManager manager = new ProjectsManager();
+        long before;
+        long after;
+        try (ProjectsJournal journal = ProjectsJournal.create(file, 0)) {
+            manager.addListener(journal);
+            Project project = manager.addProject("Batched", "");
+            Task task = project.addTask("Changed by the batch", TaskPrio.LOW);
+            before = journal.size();
+            project.batch().add("One", TaskPrio.LOW).add("Two", TaskPrio.HIGH).setState(task, TaskState.DONE).apply();
+            after = journal.size();
+        }
+        flipByte(file, after - 1);
+
+        ProjectsManager replayed = new ProjectsManager();
+        ProjectsJournal.replay(file, replayed);
+        Project project = replayed.getProjectById(1);
+        assertEquals(1, project.getTaskCount());
+        assertEquals(TaskState.TO_DO, project.getTaskById(1).getState());
+        assertEquals(before, file.length());
+    }
+
+    @Test
+    void batchOverSeveralProjectsIsReplayedAsOne() throws IOException {
+        File file = dir.resolve("data.journal.0").toFile();
+        ProjectsManager manager = new ProjectsManager();
+        long before;
+        long after;
+        try (ProjectsJournal journal = ProjectsJournal.create(file, 0)) {
+            manager.addListener(journal);
+            Project from = manager.addProject("From", "");
+            Task moved = from.addTask("Moved", TaskPrio.HIGH);
+            Project to = manager.addProject("To", "");
+            before = journal.size();
+            ProjectsBatch batch = manager.batch();
+            batch.addProject("New", "").add("In the new project", TaskPrio.LOW);
+            batch.tasks(from).remove(moved);
+            batch.tasks(to).add(moved.getDescription(), moved.getPrio(), TaskState.IN_PROGRESS, "dave");
+            batch.apply();
+            after = journal.size();
+        }
+
+        ProjectsManager replayed = new ProjectsManager();
+        ProjectsJournal.replay(file, replayed);
+        assertSameProjects(manager.getProjects(), replayed.getProjects());
+
+        // cut off in the middle: the move is lost as a whole, and so is the new project
+        truncate(file, before + (after - before) / 2);
+        ProjectsManager crashed = new ProjectsManager();
+        ProjectsJournal.replay(file, crashed);
+        assertEquals(2, crashed.getProjects().size());
+        assertEquals(1, crashed.getProjectById(1).getTaskCount());
+        assertEquals(0, crashed.getProjectById(2).getTaskCount());
+        assertTrue(file.length() < before + 64, "only name records may be kept after the last change");
+    }
+
+    @Test
+    void bigBatchIsCutOffAsAWhole() throws IOException {
+        File file = dir.resolve("data.journal.0").toFile();
+        ProjectsManager manager = new ProjectsManager();
+        long before;
+        long after;
+        try (ProjectsJournal journal = ProjectsJournal.create(file, 0)) {
+            manager.addListener(journal);
+            Project project = manager.addProject("Big", "");
+            project.addTask("Before the batch", TaskPrio.LOW);
+            before = journal.size();
+            TaskBatch batch = project.batch();
+            for (int i = 0; i < 60000; i++) {
+                batch.add("Task " + i + " of a batch bigger than a batch record", TaskPrio.MEDIUM,
+                        TaskState.TO_DO, "user" + (i % 50));
+            }
+            batch.apply();
+            after = journal.size();
+            assertTrue(after - before > 2 * ProjectsJournal.MAX_BATCH_LENGTH);
+        }
+
+        ProjectsManager replayed = new ProjectsManager();
+        ProjectsJournal.replay(file, replayed);
+        assertSameProjects(manager.getProjects(), replayed.getProjects());
+
+        // the final record is cut off, so the parts before it are not replayed either
+        truncate(file, after - 3);
+        ProjectsManager crashed = new ProjectsManager();
+        ProjectsJournal.replay(file, crashed);
+        assertEquals(1, crashed.getProjectById(1).getTaskCount());
+        assertTrue(file.length() <= before + 1024, "only name records may be kept after the last change");
+
+        // appending goes on after the last complete change
+        try (ProjectsJournal journal = ProjectsJournal.openForAppend(file)) {
+            assertNotNull(journal);
+            crashed.addListener(journal);
+            crashed.getProjectById(1).addTask("After the crash", TaskPrio.HIGH);
+        }
+        ProjectsManager again = new ProjectsManager();
+        ProjectsJournal.replay(file, again);
+        assertSameProjects(crashed.getProjects(), again.getProjects());
+    }
+
+    @Test
+    void replayRejectsOtherFiles() throws IOException {
+        File file = dir.resolve("data.journal.0").toFile();
+        ProjectsFileIO.serializeToFile(file, List.of());
+        assertThrows(IOException.class, () -> ProjectsJournal.replay(file, new ProjectsManager()));
+    }
+
+    @Test
+    void storageReopensWithItsJournaledChanges() throws Exception {
+        File dataFile = dir.resolve("projects.bin").toFile();
+        ProjectsManager manager = new ProjectsManager();
+        try (ProjectsStorage storage = ProjectsStorage.open(dataFile, manager)) {
+            Project project = manager.addProject("Stored", "");
+            for (int i = 0; i < 100; i++) {
+                project.addTask("Task " + i, TaskPrio.values()[i % 3]);
+            }
+            storage.flush();
+            project.getTaskById(5).setTakenBy("carol");
+            storage.compact();
+            project.removeTask(project.getTaskById(7));
+            storage.awaitCompaction();
+        }
+
+        ProjectsManager reopened = new ProjectsManager();
+        try (ProjectsStorage storage = ProjectsStorage.open(dataFile, reopened)) {
+            assertSameProjects(manager.getProjects(), reopened.getProjects());
+            assertNull(storage.getFailure());
+        }
+    }
+
+    @Test
+    void changesAfterAJournalFailureAreKeptInMemory() throws Exception {
+        File dataFile = dir.resolve("projects.bin").toFile();
+        ProjectsManager manager = new ProjectsManager();
+        ProjectsStorage storage = ProjectsStorage.open(dataFile, manager);
+        Project project = manager.addProject("Failing", "");
+        project.addTask("Journaled", TaskPrio.LOW);
+        storage.flush();
+        assertNull(storage.getFailure());
+
+        IOException diskFull = new IOException("No space left on device");
+        storage.failed(diskFull);
+        Task task = project.addTask("Kept in memory", TaskPrio.HIGH);
+        task.setState(TaskState.DONE);
+        assertEquals(2, project.getTaskCount());
+        assertSame(diskFull, storage.getFailure());
+        assertThrows(IOException.class, storage::flush);
+        assertThrows(IOException.class, storage::close);
+
+        ProjectsManager reopened = new ProjectsManager();
+        try (ProjectsStorage again = ProjectsStorage.open(dataFile, reopened)) {
+            assertEquals(1, reopened.getProjectById(project.getId()).getTaskCount());
+            assertNull(again.getFailure());
+        }
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+
+    private static void flipByte(File file, long position) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(position);
+            int value = raf.read();
+            raf.seek(position);
+            raf.write(value ^ 0xFF);
+        }
+    }
+}
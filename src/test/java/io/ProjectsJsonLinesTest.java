@@ -0,0 +1,138 @@
+package io;
+
+import model.Dates;
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exports projects as line-delimited JSON and imports them again, from loaded projects and
+ * straight from a stored file, and checks that a bad line drops only its batch of lines.
+ */
+class ProjectsJsonLinesTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void exportedProjectsAreImportedAsNew() throws IOException {
+        List<Project> projects = sampleProjects();
+        StringWriter out = new StringWriter();
+        ProjectsJsonLines.exportProjects(projects, out);
+        String[] lines = out.toString().split("\n");
+        assertEquals(projects.size() + 11, lines.length);
+        assertTrue(lines[0].startsWith("{\"type\":\"project\",\"id\":1,"), lines[0]);
+
+        ProjectsManager manager = new ProjectsManager();
+        AtomicInteger batches = new AtomicInteger();
+        assertEquals(11, ProjectsJsonLines.importProjects(new StringReader(out.toString()), manager,
+                batches::incrementAndGet));
+        assertEquals(1, batches.get());
+
+        List<Project> imported = manager.getProjects();
+        assertEquals(projects.size(), imported.size());
+        for (int i = 0; i < projects.size(); i++) {
+            Project want = projects.get(i);
+            Project got = imported.get(i);
+            assertEquals(want.getName(), got.getName());
+            assertEquals(want.getDescription(), got.getDescription());
+            assertEquals(want.getTaskCount(), got.getTaskCount());
+            List<Task> wantTasks = want.getTasks();
+            List<Task> gotTasks = got.getTasks();
+            for (int j = 0; j < wantTasks.size(); j++) {
+                assertEquals(wantTasks.get(j).getDescription(), gotTasks.get(j).getDescription());
+                assertEquals(wantTasks.get(j).getPrio(), gotTasks.get(j).getPrio());
+                assertEquals(wantTasks.get(j).getState(), gotTasks.get(j).getState());
+                assertEquals(wantTasks.get(j).getTakenBy(), gotTasks.get(j).getTakenBy());
+                // imported tasks are new ones
+                assertEquals(Dates.today(), gotTasks.get(j).getCreated());
+            }
+        }
+    }
+
+    @Test
+    void storedProjectsAreExportedWithoutLoadingThem() throws IOException {
+        List<Project> projects = sampleProjects();
+        File file = dir.resolve("projects.bin").toFile();
+        ProjectsFileIO.serializeToFile(file, projects);
+        StringWriter loaded = new StringWriter();
+        ProjectsJsonLines.exportProjects(projects, loaded);
+
+        try (MappedProjectStore store = MappedProjectStore.open(file)) {
+            StringWriter stored = new StringWriter();
+            ProjectsJsonLines.exportProjects(store.getProjects(), stored);
+            assertEquals(loaded.toString(), stored.toString());
+            for (Project project : store.getProjects()) {
+                assertFalse(project.isLoaded());
+            }
+        }
+    }
+
+    @Test
+    void badLineDropsOnlyItsBatch() {
+        StringBuilder lines = new StringBuilder("{\"type\":\"project\",\"id\":5,\"title\":\"Big\",\"description\":\"\"}\n");
+        int bad = ProjectsJsonLines.BATCH_SIZE + 200;
+        for (int line = 2; line <= bad + 100; line++) {
+            lines.append("{\"type\":\"task\",\"project\":5,\"id\":").append(line).append(",\"description\":\"Task ")
+                    .append(line).append("\",\"prio\":\"").append(line == bad ? "URGENT" : "LOW")
+                    .append("\",\"state\":\"TO_DO\"}\n");
+        }
+        ProjectsManager manager = new ProjectsManager();
+        IOException e = assertThrows(IOException.class,
+                () -> ProjectsJsonLines.importProjects(new StringReader(lines.toString()), manager, null));
+        assertTrue(e.getMessage().startsWith("Line " + bad + ":"), e.getMessage());
+        assertEquals(ProjectsJsonLines.BATCH_SIZE - 1, manager.findProjects("Big").get(0).getTaskCount());
+
+        // the tasks of the next batch need the line of their project, which was added before
+        assertThrows(IOException.class, () -> ProjectsJsonLines.importProjects(new StringReader(
+                "{\"type\":\"task\",\"project\":5,\"id\":1,\"description\":\"Lost\",\"prio\":\"LOW\",\"state\":\"TO_DO\"}\n"),
+                manager, null));
+        assertThrows(IOException.class, () -> ProjectsJsonLines.importProjects(new StringReader(
+                "{\"type\":\"project\",\"id\":1,\"title\":\"Big\"}\n"), manager, null));
+        assertThrows(IOException.class, () -> ProjectsJsonLines.importProjects(new StringReader(
+                "{\"type\":\"project\",\"id\":1,\"title\":\"Broken\"\n"), manager, null));
+        assertEquals(1, manager.getProjects().size());
+        assertTrue(manager.findProjects("Broken").isEmpty());
+    }
+
+    /**
+     * @return Projects with tasks in every state and priority, taken and free, and text that
+     *         must be escaped.
+     */
+    private static List<Project> sampleProjects() {
+        Project first = Project.restore(1, "Website", "Relaunch \"the\" site\nsoon", LocalDate.of(2023, 1, 15), 1);
+        LocalDate created = LocalDate.of(2023, 2, 1);
+        int id = 1;
+        for (TaskState state : TaskState.values()) {
+            for (TaskPrio prio : TaskPrio.values()) {
+                first.restoreTask(id, "Task " + id + " of " + state + "/" + prio, prio, state,
+                        id % 2 == 0 ? "user" + (id % 3) : null, created, created.plusDays(id));
+                id++;
+            }
+        }
+        Project second = Project.restore(7, "Übersetzung", "Texte für 日本 übersetzen\t\\", LocalDate.of(2022, 6, 30), 40);
+        second.restoreTask(12, "Erste Aufgabe", TaskPrio.LOW, TaskState.IN_PROGRESS, "anna",
+                LocalDate.of(2022, 7, 1), LocalDate.of(2022, 7, 2));
+        second.restoreTask(39, "", TaskPrio.HIGH, TaskState.TO_DO, null,
+                LocalDate.of(2022, 7, 3), LocalDate.of(2022, 7, 3));
+        Project empty = Project.restore(8, "Empty", "", LocalDate.of(2024, 2, 29), 1);
+        return List.of(first, second, empty);
+    }
+}
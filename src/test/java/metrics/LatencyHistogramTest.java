@@ -0,0 +1,136 @@
+package metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the bucket bounds of the histogram over the whole range of values, the figures it
+ * reports, recording from many threads at once, and switching the metrics on and off.
+ */
+class LatencyHistogramTest {
+    private static final int LAST_BUCKET = LatencyHistogram.bucket(Long.MAX_VALUE);
+
+    @Test
+    void bucketsCoverEveryValueClosely() {
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValue(LAST_BUCKET));
+        for (int bucket = 0; bucket <= LAST_BUCKET; bucket++) {
+            long highest = LatencyHistogram.highestValue(bucket);
+            assertEquals(bucket, LatencyHistogram.bucket(highest), "highest value of bucket " + bucket);
+            if (bucket < LAST_BUCKET) {
+                // the buckets follow each other without gaps
+                assertEquals(bucket + 1, LatencyHistogram.bucket(highest + 1), "after bucket " + bucket);
+            }
+            long lowest = bucket == 0 ? 0 : LatencyHistogram.highestValue(bucket - 1) + 1;
+            assertTrue(highest - lowest <= lowest / LatencyHistogram.SUB_BUCKETS,
+                    "bucket " + bucket + " is " + (highest - lowest + 1) + " wide from " + lowest);
+        }
+        for (long value = 0; value < LatencyHistogram.SUB_BUCKETS; value++) {
+            assertEquals(value, LatencyHistogram.highestValue(LatencyHistogram.bucket(value)));
+        }
+    }
+
+    @Test
+    void figuresFollowTheRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(0.0, histogram.getMean());
+
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMax());
+        assertEquals(5_000_500.0, histogram.getMean());
+        assertNear(5_000_000, histogram.getValueAtPercentile(50));
+        assertNear(9_900_000, histogram.getValueAtPercentile(99));
+        assertNear(1000, histogram.getValueAtPercentile(0));
+        // the highest bucket is cut off at the largest value recorded
+        assertEquals(10_000_000, histogram.getValueAtPercentile(100));
+
+        histogram.record(-5);
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    void threadsRecordWithoutLosingValues() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < 20_000; i++) {
+                    histogram.record(i % 100);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(160_000, histogram.getCount());
+        assertEquals(99, histogram.getMax());
+        assertEquals(49.5, histogram.getMean());
+        assertEquals(49, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    void nothingIsRecordedWhileOff() {
+        boolean enabled = Metrics.isEnabled();
+        LatencyHistogram histogram = Metrics.histogram(Operation.FLUSH_JOURNAL);
+        try {
+            Metrics.setEnabled(false);
+            Metrics.reset();
+            assertEquals(0, Metrics.start());
+            Metrics.record(Operation.FLUSH_JOURNAL, Metrics.start());
+            assertEquals(0, histogram.getCount());
+
+            Metrics.setEnabled(true);
+            long started = Metrics.start();
+            // an operation started while the metrics were off is not counted
+            Metrics.record(Operation.FLUSH_JOURNAL, 0);
+            Metrics.record(Operation.FLUSH_JOURNAL, started);
+            assertEquals(1, histogram.getCount());
+            assertEquals(1, Metrics.operations().get("flushJournal").getCount());
+
+            Metrics.gauge("test.b", () -> 2);
+            Metrics.gauge("test.a", () -> 1);
+            assertEquals(List.of("test.a", "test.b"),
+                    Metrics.gauges().keySet().stream().filter(name -> name.startsWith("test.")).toList());
+            String dump = Metrics.dump();
+            assertTrue(dump.contains("flushJournal"), dump);
+            assertFalse(dump.contains("claimTasks"), dump);
+        } finally {
+            Metrics.removeGauge("test.a");
+            Metrics.removeGauge("test.b");
+            Metrics.reset();
+            Metrics.setEnabled(enabled);
+        }
+    }
+
+    /**
+     * Checks that a reported value is in the bucket of the expected one, so at most about 3% above it.
+     */
+    private static void assertNear(long expected, long actual) {
+        assertTrue(actual >= expected && actual - expected <= expected / LatencyHistogram.SUB_BUCKETS,
+                "expected about " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,64 @@
+package model;
+
+import model.matcher.TakenByMatcher;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the dictionary of user names keeps only the names tasks hold, and that tasks
+ * are matched by user whichever instance of the name they hold.
+ */
+class AssigneesTest {
+    @Test
+    void lostClaimsAddNoNames() {
+        Project project = new ProjectsManager().addProject("Claimed", "");
+        Task task = project.addTask("Taken", TaskPrio.HIGH);
+        String owner = "owner " + System.nanoTime();
+        task.claim(owner);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(owner, task.claim("intruder " + i + " " + owner));
+        }
+        assertNull(Assignees.find("intruder 7 " + owner));
+        assertSame(task.getTakenBy(), Assignees.find(new String(owner)));
+    }
+
+    @Test
+    void unusedNamesAreDropped() throws InterruptedException {
+        String name = "gone " + System.nanoTime();
+        Project project = new ProjectsManager().addProject("Released", "");
+        Task task = project.addTask("Taken for a while", TaskPrio.LOW);
+        task.claim(new String(name));
+        assertTrue(Assignees.find(name) != null);
+
+        project.removeTask(task);
+        task = null;
+        project = null;
+        for (int i = 0; i < 100 && Assignees.find(name) != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(Assignees.find(name));
+    }
+
+    @Test
+    void matcherMatchesNamesTakenLater() {
+        String name = "later " + System.nanoTime();
+        TakenByMatcher matcher = new TakenByMatcher(new String(name));
+        Project project = new ProjectsManager().addProject("Matched", "");
+        Task task = project.addTask("Taken after the matcher", TaskPrio.MEDIUM);
+        Task other = project.addTask("Taken by someone else", TaskPrio.MEDIUM);
+        assertFalse(matcher.match(task));
+
+        task.claim(new String(name));
+        other.claim(name + " too");
+        assertTrue(matcher.match(task));
+        assertFalse(matcher.match(other));
+        assertTrue(new TakenByMatcher(new String(name)).match(task));
+        assertEquals(1, project.findTasks(matcher).size());
+    }
+}
@@ -0,0 +1,91 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Changes tasks one at a time and in batches, and checks that the aggregates a project keeps
+ * match counting its tasks, and that aggregates read from a file must add up.
+ */
+class ProjectAggregatesTest {
+    @Test
+    void aggregatesFollowEveryChange() {
+        Project project = new ProjectsManager().addProject("Counted", "");
+        assertCounts(project);
+        assertEquals(ProjectState.EMPTY, project.getProjectState());
+
+        Random random = new Random(5);
+        List<Task> tasks = new ArrayList<>();
+        for (int step = 0; step < 2000; step++) {
+            int kind = tasks.isEmpty() ? 0 : random.nextInt(6);
+            Task task = tasks.isEmpty() ? null : tasks.get(random.nextInt(tasks.size()));
+            switch (kind) {
+                case 0 -> tasks.add(project.addTask("Task " + step, prio(random)));
+                case 1 -> task.setPrio(prio(random));
+                case 2 -> task.setState(state(random));
+                case 3 -> task.claim(random.nextBoolean() ? "anna" : "ben");
+                case 4 -> {
+                    project.removeTask(task);
+                    tasks.removeIf(other -> other == task);
+                }
+                default -> {
+                    TaskBatch batch = project.batch()
+                            .add("Batched " + step, prio(random), state(random), null)
+                            .setState(task, state(random))
+                            .setPrio(task, prio(random));
+                    tasks.addAll(batch.apply());
+                }
+            }
+            assertCounts(project);
+        }
+    }
+
+    @Test
+    void storedAggregatesMustAddUp() {
+        int[] states = new int[TaskState.values().length];
+        int[] prios = new int[TaskPrio.values().length];
+        states[TaskState.DONE.ordinal()] = 2;
+        prios[TaskPrio.LOW.ordinal()] = 1;
+        assertThrows(IllegalArgumentException.class, () -> new ProjectSummary(states, prios, Dates.today()));
+        assertThrows(IllegalArgumentException.class, () -> new ProjectSummary(new int[1], prios, Dates.today()));
+
+        prios[TaskPrio.HIGH.ordinal()] = 1;
+        ProjectSummary summary = new ProjectSummary(states, prios, Dates.today());
+        // the summary keeps its own copy of the counts
+        states[TaskState.DONE.ordinal()] = 0;
+        assertEquals(2, summary.getTaskCount(TaskState.DONE));
+        assertEquals(ProjectState.COMPLETED, summary.getProjectState());
+    }
+
+    private static void assertCounts(Project project) {
+        ProjectSummary summary = project.getSummary();
+        List<Task> tasks = project.getTasks();
+        assertEquals(tasks.size(), summary.getTaskCount());
+        for (TaskState state : TaskState.values()) {
+            assertEquals(tasks.stream().filter(task -> task.getState() == state).count(),
+                    summary.getTaskCount(state), state.name());
+        }
+        for (TaskPrio prio : TaskPrio.values()) {
+            assertEquals(tasks.stream().filter(task -> task.getPrio() == prio).count(),
+                    summary.getTaskCount(prio), prio.name());
+        }
+        ProjectState expected = tasks.isEmpty() ? ProjectState.EMPTY
+                : tasks.stream().anyMatch(task -> task.getState() == TaskState.IN_PROGRESS)
+                ? ProjectState.ONGOING : ProjectState.COMPLETED;
+        assertEquals(expected, project.getProjectState());
+    }
+
+    private static TaskPrio prio(Random random) {
+        return TaskPrio.values()[random.nextInt(TaskPrio.values().length)];
+    }
+
+    private static TaskState state(Random random) {
+        return TaskState.values()[random.nextInt(TaskState.values().length)];
+    }
+}
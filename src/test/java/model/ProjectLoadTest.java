@@ -0,0 +1,74 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Loads the tasks of restored projects, also with loaders that fail halfway, and checks that
+ * a failed load leaves nothing behind for the next one.
+ */
+class ProjectLoadTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @Test
+    void tasksAreLoadedOnFirstUse() {
+        AtomicInteger loads = new AtomicInteger();
+        Project project = Project.restore(1, "Lazy", "", DAY, 3, loading -> {
+            loads.incrementAndGet();
+            restoreTasks(loading);
+        });
+        assertFalse(project.isLoaded());
+        assertEquals(2, project.getTaskById(2).getId());
+        assertTrue(project.isLoaded());
+        assertFalse(project.isDirty());
+        assertEquals(2, project.getTaskCount());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void failedLoadIsRetriedFromScratch() {
+        AtomicInteger loads = new AtomicInteger();
+        Project project = Project.restore(1, "Flaky", "", DAY, 3, loading -> {
+            if (loads.incrementAndGet() == 1) {
+                loading.restoreTask(1, "First", TaskPrio.LOW, TaskState.TO_DO, null, DAY, DAY);
+                throw new IllegalStateException("Broken input");
+            }
+            restoreTasks(loading);
+        });
+        assertThrows(IllegalStateException.class, project::getTasks);
+        assertFalse(project.isLoaded());
+
+        // the task restored by the failed load is gone, so it is not a duplicate now
+        assertEquals(2, project.getTasks().size());
+        assertTrue(project.isLoaded());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void failedReadIsRetriedFromScratch() {
+        AtomicInteger loads = new AtomicInteger();
+        Project project = Project.restore(1, "Unreadable", "", DAY, 3, loading -> {
+            if (loads.incrementAndGet() == 1) {
+                loading.restoreTask(1, "First", TaskPrio.LOW, TaskState.TO_DO, null, DAY, DAY);
+                throw new IOException("Disk gone");
+            }
+            restoreTasks(loading);
+        });
+        assertThrows(UncheckedIOException.class, () -> project.getTaskById(1));
+        assertEquals(2, project.getTasks().size());
+    }
+
+    private static void restoreTasks(Project project) {
+        project.restoreTask(1, "First", TaskPrio.LOW, TaskState.TO_DO, null, DAY, DAY);
+        project.restoreTask(2, "Second", TaskPrio.HIGH, TaskState.DONE, "anna", DAY, DAY.plusDays(1));
+    }
+}
@@ -0,0 +1,173 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static model.TaskClaimTest.runAtOnce;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Applies batches of task and project changes, and checks that a batch that fails leaves
+ * no trace, and that a batch that succeeds is seen completely or not at all.
+ */
+class ProjectsBatchTest {
+    private final ProjectsManager manager = new ProjectsManager();
+    private final AtomicInteger events = new AtomicInteger();
+
+    ProjectsBatchTest() {
+        manager.addListener(new ProjectsListener() {
+            @Override
+            public void projectAdded(Project project) {
+                events.incrementAndGet();
+            }
+
+            @Override
+            public void tasksChanged(Project project, List<Task> added, List<Task> updated, List<Task> removed) {
+                events.incrementAndGet();
+            }
+        });
+    }
+
+    @Test
+    void failedTaskBatchChangesNothing() {
+        Project project = manager.addProject("Tasks", "");
+        Task kept = project.addTask("Kept", TaskPrio.LOW);
+        Task removed = project.addTask("Removed", TaskPrio.LOW);
+        project.removeTask(removed);
+        ProjectSnapshot before = project.snapshot();
+        int eventsBefore = events.get();
+
+        TaskBatch batch = project.batch()
+                .add("Never added", TaskPrio.HIGH)
+                .setState(kept, TaskState.DONE)
+                .setPrio(removed, TaskPrio.HIGH);
+        assertThrows(IllegalArgumentException.class, batch::apply);
+
+        assertEquals(1, project.getTaskCount());
+        assertEquals(TaskState.TO_DO, kept.getState());
+        assertEquals(3, project.getNextTaskId());
+        assertSame(before, project.snapshot());
+        assertEquals(eventsBefore, events.get());
+    }
+
+    @Test
+    void batchTakingATakenTaskGivesBackItsOtherTasks() {
+        Project project = manager.addProject("Taken", "");
+        Task free = project.restoreTask(1, "Free", TaskPrio.LOW, TaskState.TO_DO, null,
+                LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 2));
+        Task taken = project.addTask("Taken", TaskPrio.LOW);
+        taken.setTakenBy("alice");
+        ProjectSnapshot before = project.snapshot();
+
+        TaskBatch batch = project.batch().setTakenBy(free, "bob").setTakenBy(taken, "bob");
+        assertThrows(IllegalStateException.class, batch::apply);
+
+        assertNull(free.getTakenBy());
+        assertEquals(LocalDate.of(2024, 1, 2), free.getLastUpdated());
+        assertEquals("alice", taken.getTakenBy());
+        assertSame(before, project.snapshot());
+        assertEquals(List.of(free), project.claimTasks("carol", TaskPrio.LOW, 5));
+    }
+
+    @Test
+    void failedProjectsBatchAddsNoProject() {
+        Project existing = manager.addProject("Existing", "");
+        Task task = existing.addTask("Task", TaskPrio.LOW);
+        Project other = manager.addProject("Other", "");
+        Task taken = other.addTask("Taken", TaskPrio.LOW);
+        taken.setTakenBy("alice");
+        int eventsBefore = events.get();
+        ProjectsSnapshot before = manager.snapshot();
+
+        ProjectsBatch batch = manager.batch();
+        batch.addProject("New", "").add("New task", TaskPrio.HIGH);
+        batch.tasks(existing).setTakenBy(task, "bob").setState(task, TaskState.IN_PROGRESS);
+        batch.tasks(other).setTakenBy(taken, "bob");
+        assertThrows(IllegalStateException.class, batch::apply);
+
+        assertEquals(2, manager.getProjects().size());
+        assertTrue(manager.isTitleUnique("New"));
+        assertNull(task.getTakenBy());
+        assertEquals(TaskState.TO_DO, task.getState());
+        assertEquals(eventsBefore, events.get());
+        assertSame(before, manager.snapshot());
+        assertThrows(IllegalStateException.class, batch::apply);
+    }
+
+    @Test
+    void batchOverARemovedProjectFails() {
+        Project kept = manager.addProject("Kept", "");
+        Project removed = manager.addProject("Removed", "");
+        ProjectsBatch batch = manager.batch();
+        batch.tasks(kept).add("Not added", TaskPrio.LOW);
+        batch.tasks(removed).add("Not added either", TaskPrio.LOW);
+        manager.removeProject(removed);
+
+        assertThrows(IllegalArgumentException.class, batch::apply);
+        assertEquals(0, kept.getTaskCount());
+    }
+
+    @Test
+    void batchOverManyProjects() {
+        // more projects than a lock per stack frame would allow
+        ProjectsBatch batch = manager.batch();
+        for (int i = 0; i < 20000; i++) {
+            batch.addProject("Project " + i, "").add("Only task", TaskPrio.MEDIUM);
+        }
+        List<Project> added = batch.apply();
+
+        assertEquals(20000, added.size());
+        assertEquals(20000, manager.snapshot().getProjectCount());
+        for (Project project : added) {
+            assertEquals(1, project.getTaskCount());
+        }
+    }
+
+    @Test
+    void readersSeeABatchCompletelyOrNotAtAll() throws Exception {
+        Project from = manager.addProject("From", "");
+        Project to = manager.addProject("To", "");
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            tasks.add(from.addTask("Task " + i, TaskPrio.LOW));
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        List<Integer> results = runAtOnce(2, thread -> {
+            if (thread == 0) {
+                // moves each task to the other project, as one batch over both
+                for (Task task : tasks) {
+                    ProjectsBatch batch = manager.batch();
+                    batch.tasks(from).remove(task);
+                    batch.tasks(to).add(task.getDescription(), task.getPrio());
+                    batch.apply();
+                }
+                done.set(true);
+                return tasks.size();
+            }
+            int wrong = 0;
+            while (!done.get()) {
+                ProjectsSnapshot snapshot = manager.snapshot();
+                int total = snapshot.getProject(from.getId()).getTaskCount()
+                        + snapshot.getProject(to.getId()).getTaskCount();
+                if (total != tasks.size()) {
+                    wrong++;
+                }
+            }
+            return wrong;
+        });
+
+        int torn = results.get(1);
+        assertEquals(0, torn, "snapshots showing part of a batch");
+        assertEquals(0, from.getTaskCount());
+        assertEquals(tasks.size(), to.getTaskCount());
+    }
+}
@@ -0,0 +1,160 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Publishes changes to subscribers that read at their own pace, and checks that they get every
+ * event in order, that one that falls too far behind is told so and can resync, and that
+ * events published from several threads are all read.
+ */
+class ProjectsEventStreamTest {
+    private final ProjectsManager manager = new ProjectsManager();
+
+    @Test
+    void subscribersReadEveryChangeInOrder() {
+        try (ProjectsEventStream stream = new ProjectsEventStream(manager, 64)) {
+            ProjectsEventStream.Subscription early = stream.subscribe();
+            Project project = manager.addProject("Streamed", "");
+            ProjectsEventStream.Subscription late = stream.subscribe();
+            Task task = project.addTask("Stream me", TaskPrio.LOW);
+            task.setState(TaskState.DONE);
+            project.batch().add("Batched", TaskPrio.HIGH).remove(task).apply();
+
+            List<ProjectsEvent> events = new ArrayList<>();
+            assertEquals(5, early.getLag());
+            assertEquals(2, early.poll(events, 2));
+            assertEquals(3, early.poll(events, 10));
+            assertEquals(0, early.poll(events, 10));
+            assertEquals(List.of(ProjectsEvent.Type.PROJECT_ADDED, ProjectsEvent.Type.TASK_ADDED,
+                    ProjectsEvent.Type.TASK_UPDATED, ProjectsEvent.Type.TASK_ADDED, ProjectsEvent.Type.TASK_REMOVED),
+                    events.stream().map(ProjectsEvent::getType).toList());
+            for (int i = 0; i < events.size(); i++) {
+                assertEquals(i, events.get(i).getSequence());
+                assertSame(project, events.get(i).getProject());
+            }
+            assertSame(task, events.get(1).getTask());
+            assertEquals(TaskState.DONE, events.get(2).getState());
+
+            List<ProjectsEvent> lateEvents = new ArrayList<>();
+            assertEquals(4, late.poll(lateEvents, 10));
+            assertEquals(1, lateEvents.get(0).getSequence());
+        }
+    }
+
+    @Test
+    void overrunSubscriberResyncs() {
+        try (ProjectsEventStream stream = new ProjectsEventStream(manager, 8)) {
+            Project project = manager.addProject("Busy", "");
+            ProjectsEventStream.Subscription slow = stream.subscribe();
+            for (int i = 0; i < 8; i++) {
+                project.addTask("Fits " + i, TaskPrio.LOW);
+            }
+            assertFalse(slow.isOverrun());
+            List<ProjectsEvent> events = new ArrayList<>();
+            assertEquals(3, slow.poll(events, 3));
+
+            for (int i = 0; i < 4; i++) {
+                project.addTask("Overwrites " + i, TaskPrio.LOW);
+            }
+            assertTrue(slow.isOverrun());
+            assertThrows(IllegalStateException.class, () -> slow.poll(events, 10));
+            assertEquals(3, events.size());
+
+            slow.resync();
+            assertFalse(slow.isOverrun());
+            assertEquals(0, slow.getLag());
+            Task task = project.addTask("After the resync", TaskPrio.HIGH);
+            assertEquals(1, slow.poll(events, 10));
+            assertSame(task, events.get(3).getTask());
+        }
+    }
+
+    @Test
+    void waitingPollWakesUpForAnEvent() throws Exception {
+        try (ProjectsEventStream stream = new ProjectsEventStream(manager, 16)) {
+            ProjectsEventStream.Subscription subscription = stream.subscribe();
+            List<ProjectsEvent> events = new ArrayList<>();
+            assertEquals(0, subscription.poll(events, 10, 20, TimeUnit.MILLISECONDS));
+
+            Thread publisher = new Thread(() -> {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                manager.addProject("Woken", "");
+            });
+            publisher.start();
+            long start = System.nanoTime();
+            assertEquals(1, subscription.poll(events, 10, 10, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            publisher.join();
+        }
+    }
+
+    @Test
+    void eventsOfManyThreadsAreAllRead() throws InterruptedException {
+        int threads = 4;
+        int tasksPerThread = 5000;
+        try (ProjectsEventStream stream = new ProjectsEventStream(manager, 1 << 15)) {
+            ProjectsEventStream.Subscription subscription = stream.subscribe();
+            List<Thread> publishers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Project project = manager.addProject("Thread " + t, "");
+                Thread publisher = new Thread(() -> {
+                    for (int i = 0; i < tasksPerThread; i++) {
+                        project.addTask("Task " + i, TaskPrio.MEDIUM);
+                    }
+                });
+                publishers.add(publisher);
+            }
+            List<ProjectsEvent> events = new ArrayList<>();
+            publishers.forEach(Thread::start);
+            int expected = threads + threads * tasksPerThread;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (events.size() < expected && System.nanoTime() < deadline) {
+                subscription.poll(events, 1000, 100, TimeUnit.MILLISECONDS);
+            }
+            for (Thread publisher : publishers) {
+                publisher.join();
+            }
+
+            assertEquals(expected, events.size());
+            // by identity, as equal tasks of different projects are different tasks
+            Set<Task> tasks = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int i = 0; i < events.size(); i++) {
+                assertEquals(i, events.get(i).getSequence());
+                if (events.get(i).getTask() != null) {
+                    tasks.add(events.get(i).getTask());
+                }
+            }
+            assertEquals(threads * tasksPerThread, tasks.size());
+        }
+    }
+
+    @Test
+    void closedStreamPublishesNothing() {
+        assertThrows(IllegalArgumentException.class, () -> new ProjectsEventStream(manager, 12));
+        ProjectsEventStream stream = new ProjectsEventStream(manager, 4);
+        ProjectsEventStream.Subscription subscription = stream.subscribe();
+        manager.addProject("Before", "");
+        stream.close();
+        manager.addProject("After", "");
+        List<ProjectsEvent> events = new ArrayList<>();
+        assertEquals(1, subscription.poll(events, 10));
+        assertEquals(0, subscription.getLag());
+    }
+}
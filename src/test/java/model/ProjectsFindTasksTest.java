@@ -0,0 +1,75 @@
+package model;
+
+import model.matcher.ITaskMatcher;
+import model.matcher.NotDoneMatcher;
+import model.matcher.PrioMatcher;
+import model.matcher.TakenByMatcher;
+import model.matcher.TaskIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Finds tasks across many projects, which are searched in parallel, and checks the pages
+ * against searching the projects one after the other and sorting what they found.
+ */
+class ProjectsFindTasksTest {
+    private final ProjectsManager manager = new ProjectsManager();
+
+    ProjectsFindTasksTest() {
+        for (int p = 0; p < 60; p++) {
+            Project project = manager.addProject("Project " + p, "");
+            // a few big projects, so the split is uneven, and the same tasks in many projects
+            int size = p % 10 == 0 ? 2000 : 50 + p;
+            TaskBatch batch = project.batch();
+            for (int i = 0; i < size; i++) {
+                batch.add("Task " + (i % 7), TaskPrio.values()[(i + p) % 3],
+                        TaskState.values()[i % 3], i % 5 == 0 ? "alice" : null);
+            }
+            batch.apply();
+        }
+    }
+
+    @Test
+    void pagesMatchSearchingEachProject() {
+        ITaskMatcher matcher = new PrioMatcher(TaskPrio.HIGH).and(new NotDoneMatcher()).and(new TakenByMatcher("alice"));
+        assertPages(matcher, 37);
+        assertPages(ITaskMatcher.all(), 1000);
+        assertPages(new TakenByMatcher("nobody"), 10);
+    }
+
+    @Test
+    void pagesOutsideTheResultsAreEmpty() {
+        int count = manager.findTasks(new TakenByMatcher("alice"), 0, Integer.MAX_VALUE).size();
+        assertEquals(List.of(), manager.findTasks(new TakenByMatcher("alice"), count, 10));
+        assertEquals(List.of(), manager.findTasks(ITaskMatcher.all(), 5, 0));
+        assertEquals(List.of(), manager.findTasks(ITaskMatcher.all(), Integer.MAX_VALUE - 1, 10));
+        assertThrows(IllegalArgumentException.class, () -> manager.findTasks(ITaskMatcher.all(), -1, 10));
+        assertThrows(IllegalArgumentException.class, () -> manager.findTasks(ITaskMatcher.all(), 0, -1));
+    }
+
+    private void assertPages(ITaskMatcher matcher, int pageSize) {
+        List<Task> expected = new ArrayList<>();
+        for (Project project : manager.getProjects()) {
+            expected.addAll(project.findTasks(matcher));
+        }
+        // a stable sort, so equal tasks stay in the order of their projects
+        expected.sort(TaskIndex.ORDER);
+
+        List<Task> paged = new ArrayList<>();
+        List<Task> page;
+        while (!(page = manager.findTasks(matcher, paged.size(), pageSize)).isEmpty()) {
+            assertEquals(Math.min(pageSize, expected.size() - paged.size()), page.size());
+            paged.addAll(page);
+        }
+        assertEquals(expected.size(), paged.size(), "task count");
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), paged.get(i), "task " + i);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that every change publishes the new versions of its project and of all projects, and
+ * that they, and the aggregates read from them, are read while a project is locked.
+ */
+class ProjectsSnapshotTest {
+    private final ProjectsManager manager = new ProjectsManager();
+
+    @Test
+    void everyChangeIsPublished() {
+        Project project = manager.addProject("Published", "");
+        assertSame(project.snapshot(), manager.snapshot().getProject(project.getId()));
+
+        Task task = project.addTask("Added", TaskPrio.HIGH);
+        long version = manager.snapshot().getVersion();
+        task.setState(TaskState.DONE);
+        ProjectsSnapshot snapshot = manager.snapshot();
+        assertTrue(snapshot.getVersion() > version);
+        assertSame(project.snapshot(), snapshot.getProject(project.getId()));
+        assertEquals(1, snapshot.getProject(project.getId()).getTaskCount(TaskState.DONE));
+
+        project.batch().add("Batched", TaskPrio.LOW).apply();
+        assertEquals(2, manager.snapshot().getProject(project.getId()).getTaskCount());
+
+        manager.removeProject(project);
+        assertNull(manager.snapshot().getProject(project.getId()));
+        // a removed project goes on publishing its own versions, but not to the manager
+        project.addTask("After the removal", TaskPrio.LOW);
+        assertEquals(3, project.snapshot().getTaskCount());
+        assertEquals(0, manager.snapshot().getProjectCount());
+    }
+
+    @Test
+    void setProjectsPublishesThemAll() {
+        Project first = Project.restore(3, "First", "", Dates.today(), 1);
+        Project second = Project.restore(9, "Second", "", Dates.today(), 1);
+        second.restoreTask(1, "Stored", TaskPrio.MEDIUM, TaskState.TO_DO, null, Dates.today(), Dates.today());
+        manager.addProject("Replaced", "");
+        manager.setProjects(List.of(first, second));
+
+        ProjectsSnapshot snapshot = manager.snapshot();
+        assertEquals(2, snapshot.getProjectCount());
+        assertSame(second.snapshot(), snapshot.getProject(9));
+        assertEquals(1, snapshot.getProject(9).getTaskCount());
+    }
+
+    @Test
+    void readersDoNotWaitForALockedProject() throws Exception {
+        Project project = manager.addProject("Locked", "");
+        project.addTask("Done", TaskPrio.HIGH).setState(TaskState.DONE);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            project.lock().lock();
+            try {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                project.lock().unlock();
+            }
+        });
+        holder.start();
+        try {
+            assertTrue(locked.await(10, TimeUnit.SECONDS));
+            // on another thread, so a reader that locks fails the test instead of hanging it
+            int count = CompletableFuture.supplyAsync(() -> {
+                ProjectsSnapshot snapshot = manager.snapshot();
+                return snapshot.getProject(project.getId()).getTaskCount()
+                        + project.getTaskCount(TaskState.DONE)
+                        + (project.getProjectState() == ProjectState.COMPLETED ? 1 : 0)
+                        + (project.getLastUpdated() != null ? 1 : 0);
+            }).get(10, TimeUnit.SECONDS);
+            assertEquals(4, count);
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+}
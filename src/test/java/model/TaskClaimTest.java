@@ -0,0 +1,181 @@
+package model;
+
+import model.matcher.ITaskMatcher;
+import model.matcher.TakenByMatcher;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lets several threads claim the same tasks at once, and checks that each task goes to
+ * exactly one of them, and that the indexes and snapshots of the project agree with the tasks.
+ */
+class TaskClaimTest {
+    private static final int THREADS = 8;
+
+    @Test
+    void onlyOneUserTakesATask() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            Project project = new ProjectsManager().addProject("Race " + round, "");
+            Task task = project.addTask("Wanted by everyone", TaskPrio.HIGH);
+            AtomicInteger failed = new AtomicInteger();
+            List<String> winners = Collections.synchronizedList(new ArrayList<>());
+            runAtOnce(THREADS, thread -> {
+                String user = "user" + thread;
+                try {
+                    task.setTakenBy(user);
+                    winners.add(user);
+                } catch (IllegalStateException e) {
+                    failed.incrementAndGet();
+                }
+                return null;
+            });
+            assertEquals(1, winners.size());
+            assertEquals(THREADS - 1, failed.get());
+            assertEquals(winners.get(0), task.getTakenBy());
+            assertEquals(List.of(task), project.findTasks(new TakenByMatcher(winners.get(0))));
+            assertSame(task.snapshot(), project.snapshot().getTask(task.getId()));
+        }
+    }
+
+    @Test
+    void claimingWorkersGetDifferentTasks() throws Exception {
+        Project project = new ProjectsManager().addProject("Queue", "");
+        int free = 0;
+        for (int i = 0; i < 5000; i++) {
+            Task task = project.addTask("Job " + i, TaskPrio.values()[i % 3]);
+            if (i % 7 == 0) {
+                task.setState(TaskState.DONE);
+            } else if (task.getPrio() == TaskPrio.MEDIUM) {
+                free++;
+            }
+        }
+        List<List<Task>> claims = runAtOnce(THREADS, thread -> {
+            List<Task> claimed = new ArrayList<>();
+            List<Task> page;
+            while (!(page = project.claimTasks("worker" + thread, TaskPrio.MEDIUM, 10)).isEmpty()) {
+                claimed.addAll(page);
+            }
+            return claimed;
+        });
+
+        Set<Task> all = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int thread = 0; thread < THREADS; thread++) {
+            for (Task task : claims.get(thread)) {
+                assertTrue(all.add(task), "task " + task.getId() + " claimed twice");
+                assertEquals("worker" + thread, task.getTakenBy());
+                assertEquals(TaskPrio.MEDIUM, task.getPrio());
+                assertFalse(task.getState() == TaskState.DONE);
+            }
+            assertEquals(claims.get(thread).size(), project.findTasks(new TakenByMatcher("worker" + thread)).size());
+        }
+        assertEquals(free, all.size());
+        assertEquals(List.of(), project.claimTasks("late", TaskPrio.MEDIUM, 10));
+        assertSnapshotMatchesTasks(project);
+    }
+
+    @Test
+    void claimsRacingWithChangesKeepTheIndexesRight() throws Exception {
+        Project project = new ProjectsManager().addProject("Busy", "");
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            tasks.add(project.addTask("Task " + i, TaskPrio.values()[i % 3]));
+        }
+        runAtOnce(THREADS, thread -> {
+            if (thread == 0) {
+                for (int i = 0; i < tasks.size(); i += 3) {
+                    project.removeTask(tasks.get(i));
+                }
+            } else if (thread == 1) {
+                for (int i = 1; i < tasks.size(); i += 3) {
+                    tasks.get(i).setPrio(TaskPrio.HIGH);
+                }
+            } else {
+                for (Task task : tasks) {
+                    task.claim("user" + (thread % 3));
+                }
+            }
+            return null;
+        });
+
+        Map<String, Integer> taken = new HashMap<>();
+        for (Task task : project.getTasks()) {
+            taken.merge(String.valueOf(task.getTakenBy()), 1, Integer::sum);
+        }
+        for (int user = 0; user < 3; user++) {
+            String name = "user" + user;
+            int count = taken.getOrDefault(name, 0);
+            assertEquals(count, project.findTasks(new TakenByMatcher(name)).size(), name);
+        }
+        for (int i = 0; i < tasks.size(); i += 3) {
+            assertNull(project.getTaskById(tasks.get(i).getId()));
+        }
+        assertEquals(2000, project.getTaskCount());
+        assertEquals(2000, project.findTasks(ITaskMatcher.all()).size());
+        assertSnapshotMatchesTasks(project);
+    }
+
+    /**
+     * Checks that the current snapshot holds the current values of every task of the project.
+     */
+    private static void assertSnapshotMatchesTasks(Project project) {
+        ProjectSnapshot snapshot = project.snapshot();
+        List<Task> tasks = project.getTasks();
+        assertEquals(tasks.size(), snapshot.getTasks().size());
+        for (Task task : tasks) {
+            assertSame(task.snapshot(), snapshot.getTask(task.getId()), "values of task " + task.getId());
+        }
+    }
+
+    /**
+     * Runs the task on the given number of threads, which all start at the same moment.
+     * @return The results, by thread number.
+     */
+    static <T> List<T> runAtOnce(int threads, ThreadTask<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                Callable<T> call = () -> {
+                    start.await();
+                    return task.run(thread);
+                };
+                futures.add(executor.submit(call));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(1, TimeUnit.MINUTES));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    interface ThreadTask<T> {
+        T run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,124 @@
+package model;
+
+import model.matcher.ITaskMatcher;
+import model.matcher.PrioMatcher;
+import model.matcher.TaskIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Changes tasks in every way that moves them between index buckets, and checks that all tasks
+ * and every bucket stay sorted in {@link TaskIndex#ORDER} and hold exactly the tasks they should.
+ */
+class TaskIndexesTest {
+    @Test
+    void bucketsStaySortedWhileTasksChange() {
+        Project project = new ProjectsManager().addProject("Sorted", "");
+        Random random = new Random(3);
+        List<Task> tasks = new ArrayList<>();
+        for (int step = 0; step < 3000; step++) {
+            int kind = tasks.isEmpty() ? 0 : random.nextInt(6);
+            Task task = tasks.isEmpty() ? null : tasks.get(random.nextInt(tasks.size()));
+            switch (kind) {
+                case 0 -> tasks.add(project.addTask("Task " + random.nextInt(20), TaskPrio.values()[random.nextInt(3)]));
+                case 1 -> task.setPrio(TaskPrio.values()[random.nextInt(3)]);
+                case 2 -> task.setState(TaskState.values()[random.nextInt(3)]);
+                case 3 -> task.claim("user" + random.nextInt(4));
+                case 4 -> {
+                    project.removeTask(task);
+                    tasks.removeIf(other -> other == task); // equal tasks are different tasks
+                }
+                default -> {
+                    TaskBatch batch = project.batch();
+                    batch.add("Batched " + random.nextInt(20), TaskPrio.values()[random.nextInt(3)]);
+                    batch.setPrio(task, TaskPrio.values()[random.nextInt(3)]);
+                    tasks.addAll(batch.apply());
+                }
+            }
+            if (step % 100 == 0) {
+                assertIndexed(project, tasks);
+            }
+        }
+        assertIndexed(project, tasks);
+    }
+
+    @Test
+    void equalTasksAreOrderedById() {
+        Project project = new ProjectsManager().addProject("Equal", "");
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(project.addTask("Same", TaskPrio.MEDIUM));
+        }
+        // moving a task out of the bucket and back puts it where its ID belongs
+        tasks.get(3).setPrio(TaskPrio.HIGH);
+        tasks.get(3).setPrio(TaskPrio.MEDIUM);
+        List<Task> found = project.findTasks(new PrioMatcher(TaskPrio.MEDIUM));
+        for (int i = 0; i < tasks.size(); i++) {
+            assertSame(tasks.get(i), found.get(i));
+        }
+    }
+
+    private static void assertIndexed(Project project, List<Task> tasks) {
+        TaskIndex index = indexOf(project);
+        List<Task> expected = new ArrayList<>(tasks);
+        expected.sort(TaskIndex.ORDER);
+        assertSameTasks(expected, index.all());
+        assertEquals(tasks.size(), index.size());
+        for (TaskState state : TaskState.values()) {
+            assertSameTasks(only(expected, task -> task.getState() == state), index.withState(state));
+        }
+        for (TaskPrio prio : TaskPrio.values()) {
+            assertSameTasks(only(expected, task -> task.getPrio() == prio), index.withPrio(prio));
+        }
+        for (int user = 0; user < 4; user++) {
+            String name = "user" + user;
+            assertSameTasks(only(expected, task -> name.equals(task.getTakenBy())), index.takenBy(name));
+        }
+        assertSameTasks(expected, project.findTasks(ITaskMatcher.all()));
+    }
+
+    /**
+     * @return The indexes of the project, as a matcher is given them to estimate its cost.
+     */
+    private static TaskIndex indexOf(Project project) {
+        TaskIndex[] index = new TaskIndex[1];
+        project.estimateCost(new ITaskMatcher() {
+            @Override
+            public int estimateCost(TaskIndex taskIndex) {
+                index[0] = taskIndex;
+                return 0;
+            }
+        });
+        return index[0];
+    }
+
+    private static List<Task> only(List<Task> tasks, Predicate<Task> matcher) {
+        List<Task> found = new ArrayList<>();
+        for (Task task : tasks) {
+            if (matcher.test(task)) {
+                found.add(task);
+            }
+        }
+        return found;
+    }
+
+    private static void assertSameTasks(List<Task> expected, Collection<Task> actual) {
+        List<Task> list = new ArrayList<>(actual);
+        assertEquals(expected.size(), list.size(), "task count");
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), list.get(i), "task " + i);
+        }
+        for (int i = 1; i < list.size(); i++) {
+            assertTrue(TaskIndex.ORDER.compare(list.get(i - 1), list.get(i)) < 0, "order at " + i);
+        }
+    }
+}
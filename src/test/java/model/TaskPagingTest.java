@@ -0,0 +1,184 @@
+package model;
+
+import model.matcher.ITaskMatcher;
+import model.matcher.NotDoneMatcher;
+import model.matcher.TaskIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static model.TaskClaimTest.runAtOnce;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pages through tasks and projects by key, also while they are added, changed and removed:
+ * the items that do not change must be seen exactly once, in order.
+ */
+class TaskPagingTest {
+    @Test
+    void pagesFollowEachOther() {
+        Project project = new ProjectsManager().addProject("Paged", "");
+        for (int i = 0; i < 95; i++) {
+            project.addTask("Task " + (i % 10), TaskPrio.values()[i % 3]);
+        }
+        List<Task> paged = new ArrayList<>();
+        TaskKey after = null;
+        List<Task> page;
+        while (!(page = project.findTasks(ITaskMatcher.all(), after, 10)).isEmpty()) {
+            assertTrue(page.size() <= 10);
+            paged.addAll(page);
+            after = TaskKey.of(page.get(page.size() - 1));
+        }
+        assertSameItems(project.findTasks(ITaskMatcher.all()), paged);
+        assertEquals(95, paged.size());
+    }
+
+    @Test
+    void pageResumesAfterARemovedTask() {
+        Project project = new ProjectsManager().addProject("Removed", "");
+        for (int i = 0; i < 30; i++) {
+            project.addTask(String.format("Task %02d", i), TaskPrio.MEDIUM);
+        }
+        List<Task> first = project.findTasks(ITaskMatcher.all(), null, 10);
+        Task last = first.get(9);
+        TaskKey after = TaskKey.decode(TaskKey.of(last).encode());
+        project.removeTask(last);
+
+        List<Task> second = project.findTasks(ITaskMatcher.all(), after, 10);
+        assertEquals("Task 10", second.get(0).getDescription());
+    }
+
+    @Test
+    void pagingWhileTasksChange() throws Exception {
+        Project project = new ProjectsManager().addProject("Changing", "");
+        List<Task> stable = new ArrayList<>();
+        List<Task> changing = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            Task task = project.addTask("Task " + (i % 100), TaskPrio.values()[i % 3]);
+            (i % 2 == 0 ? stable : changing).add(task);
+        }
+        stable.sort(TaskIndex.ORDER);
+        AtomicBoolean done = new AtomicBoolean();
+        List<List<List<Task>>> results = runAtOnce(2, thread -> {
+            if (thread == 1) {
+                // replaces, finishes and reopens the other tasks, which moves them in and out of the pages
+                int round = 0;
+                while (!done.get()) {
+                    int i = round % changing.size();
+                    Task task = changing.get(i);
+                    if (round % 3 == 0) {
+                        project.removeTask(task);
+                        changing.set(i, project.addTask(task.getDescription(), task.getPrio()));
+                    } else {
+                        task.setState(round % 3 == 1 ? TaskState.DONE : TaskState.TO_DO);
+                    }
+                    round++;
+                }
+                return List.of();
+            }
+            try {
+                List<List<Task>> passes = new ArrayList<>();
+                for (int pass = 0; pass < 20; pass++) {
+                    List<Task> seen = new ArrayList<>();
+                    TaskKey after = null;
+                    List<Task> page;
+                    while (!(page = project.findTasks(new NotDoneMatcher(), after, 37)).isEmpty()) {
+                        seen.addAll(page);
+                        after = TaskKey.of(page.get(page.size() - 1));
+                    }
+                    passes.add(seen);
+                }
+                return passes;
+            } finally {
+                done.set(true);
+            }
+        });
+
+        for (List<Task> seen : results.get(0)) {
+            assertSameItems(stable, only(seen, stable));
+        }
+    }
+
+    @Test
+    void projectPagesWhileProjectsChange() throws Exception {
+        ProjectsManager manager = new ProjectsManager();
+        List<Project> stable = new ArrayList<>();
+        List<Project> changing = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Project project = manager.addProject("Project " + i, "");
+            (i % 2 == 0 ? stable : changing).add(project);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        List<List<Project>> results = runAtOnce(2, thread -> {
+            if (thread == 1) {
+                int round = 0;
+                while (!done.get()) {
+                    Project project = changing.get(round % changing.size());
+                    manager.removeProject(project);
+                    changing.set(round % changing.size(), manager.addProject("New " + round, ""));
+                    round++;
+                }
+                return List.of();
+            }
+            try {
+                List<Project> seen = new ArrayList<>();
+                int after = 0;
+                List<Project> page;
+                while (!(page = manager.getProjects(after, 50)).isEmpty()) {
+                    seen.addAll(page);
+                    after = page.get(page.size() - 1).getId();
+                }
+                return seen;
+            } finally {
+                done.set(true);
+            }
+        });
+
+        assertSameItems(stable, only(results.get(0), stable));
+        for (int i = 1; i < results.get(0).size(); i++) {
+            assertTrue(results.get(0).get(i - 1).getId() < results.get(0).get(i).getId());
+        }
+        assertEquals(List.of(), manager.getProjects(Integer.MAX_VALUE, 10));
+    }
+
+    @Test
+    void malformedKeysAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TaskKey.decode("HIGH"));
+        assertThrows(IllegalArgumentException.class, () -> TaskKey.decode("URGENT:1:Task"));
+        assertThrows(IllegalArgumentException.class, () -> TaskKey.decode("HIGH:one:Task"));
+        TaskKey key = TaskKey.decode("LOW:12:Task: with a colon");
+        assertEquals(TaskPrio.LOW, key.getPrio());
+        assertEquals(12, key.getId());
+        assertEquals("Task: with a colon", key.getDescription());
+    }
+
+    /**
+     * @return The items of the list that are also in the other list, compared by identity.
+     */
+    private static <T> List<T> only(List<T> list, List<T> kept) {
+        Set<T> keep = Collections.newSetFromMap(new IdentityHashMap<>());
+        keep.addAll(kept);
+        List<T> found = new ArrayList<>();
+        for (T item : list) {
+            if (keep.contains(item)) {
+                found.add(item);
+            }
+        }
+        return found;
+    }
+
+    private static <T> void assertSameItems(List<T> expected, List<T> actual) {
+        assertEquals(expected.size(), actual.size(), "item count");
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i), "item " + i);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package model.matcher;
+
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskKey;
+import model.TaskPrio;
+import model.TaskState;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Combines matchers with and, or and not, and checks that queries planned on the indexes
+ * find the same tasks, in the same order, as checking every task, and that the plan looks
+ * at no more tasks than its most selective part.
+ */
+class TaskMatcherTest {
+    private final Project project = new ProjectsManager().addProject("Matched", "");
+
+    TaskMatcherTest() {
+        for (int i = 0; i < 300; i++) {
+            Task task = project.addTask("Task " + (i % 17), TaskPrio.values()[i % 3]);
+            if (i % 4 == 0) {
+                task.setState(TaskState.DONE);
+            } else if (i % 4 == 1) {
+                task.setState(TaskState.IN_PROGRESS);
+            }
+            if (i % 5 == 0) {
+                task.claim("anna");
+            } else if (i % 11 == 0) {
+                task.claim("ben");
+            }
+        }
+    }
+
+    @Test
+    void combinedMatchersFindWhatTheyMatch() {
+        ITaskMatcher high = new PrioMatcher(TaskPrio.HIGH);
+        ITaskMatcher anna = new TakenByMatcher("anna");
+        ITaskMatcher ben = new TakenByMatcher("ben");
+        ITaskMatcher notDone = new NotDoneMatcher();
+
+        assertFinds(high.and(anna), task -> task.getPrio() == TaskPrio.HIGH && "anna".equals(task.getTakenBy()));
+        assertFinds(anna.or(ben), task -> task.getTakenBy() != null);
+        assertFinds(high.negate(), task -> task.getPrio() != TaskPrio.HIGH);
+        assertFinds(ITaskMatcher.not(notDone).and(anna.or(high)),
+                task -> task.getState() == TaskState.DONE
+                        && ("anna".equals(task.getTakenBy()) || task.getPrio() == TaskPrio.HIGH));
+        assertFinds(new AndMatcher(high, new AndMatcher(notDone, ben.negate())),
+                task -> task.getPrio() == TaskPrio.HIGH && task.getState() != TaskState.DONE
+                        && !"ben".equals(task.getTakenBy()));
+        assertFinds(new TakenByMatcher("nobody"), task -> false);
+        assertFinds(new TakenByMatcher(null), task -> task.getTakenBy() == null);
+        assertFinds(ITaskMatcher.all(), task -> true);
+    }
+
+    @Test
+    void pagesOfCombinedMatchersFollowEachOther() {
+        ITaskMatcher matcher = new PrioMatcher(TaskPrio.LOW).or(new TakenByMatcher("anna")).and(new NotDoneMatcher());
+        List<Task> paged = new ArrayList<>();
+        TaskKey after = null;
+        List<Task> page;
+        while (!(page = project.findTasks(matcher, after, 7)).isEmpty()) {
+            paged.addAll(page);
+            after = TaskKey.of(page.get(page.size() - 1));
+        }
+        assertSameTasks(project.findTasks(matcher), paged);
+    }
+
+    @Test
+    void queriesArePlannedOnTheMostSelectiveIndex() {
+        int anna = project.findTasks(new TakenByMatcher("anna")).size();
+        int high = project.findTasks(new PrioMatcher(TaskPrio.HIGH)).size();
+        int done = project.findTasks(new NotDoneMatcher().negate()).size();
+
+        assertEquals(anna, project.estimateCost(new TakenByMatcher("anna")));
+        assertEquals(Math.min(anna, high),
+                project.estimateCost(new PrioMatcher(TaskPrio.HIGH).and(new TakenByMatcher("anna"))));
+        assertEquals(project.getTaskCount() - done, project.estimateCost(new NotDoneMatcher()));
+        assertEquals(Math.min(anna + high, project.getTaskCount()),
+                project.estimateCost(new PrioMatcher(TaskPrio.HIGH).or(new TakenByMatcher("anna"))));
+        // negations are not indexed, so they are checked against every task
+        assertEquals(project.getTaskCount(), project.estimateCost(new PrioMatcher(TaskPrio.HIGH).negate()));
+        assertEquals(0, project.estimateCost(new TakenByMatcher("nobody").and(new PrioMatcher(TaskPrio.HIGH))));
+    }
+
+    @Test
+    void combinatorsFlattenAndCancel() {
+        ITaskMatcher high = new PrioMatcher(TaskPrio.HIGH);
+        assertSame(high, high.negate().negate());
+        assertEquals("and[prio=HIGH, notDone, takenBy=anna]",
+                high.and(new NotDoneMatcher()).and(new TakenByMatcher("anna")).toString());
+        assertEquals("or[prio=HIGH, prio=LOW, prio=MEDIUM]",
+                high.or(new PrioMatcher(TaskPrio.LOW).or(new PrioMatcher(TaskPrio.MEDIUM))).toString());
+    }
+
+    private void assertFinds(ITaskMatcher matcher, Predicate<Task> expected) {
+        List<Task> all = new ArrayList<>(project.getTasks());
+        all.sort(TaskIndex.ORDER);
+        List<Task> matching = new ArrayList<>();
+        for (Task task : all) {
+            if (expected.test(task)) {
+                matching.add(task);
+            }
+        }
+        assertSameTasks(matching, project.findTasks(matcher));
+    }
+
+    private static void assertSameTasks(List<Task> expected, List<Task> actual) {
+        assertEquals(expected.size(), actual.size(), "task count");
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i), "task " + i);
+        }
+    }
+}
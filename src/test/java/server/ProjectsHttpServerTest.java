@@ -0,0 +1,263 @@
+package server;
+
+import com.sun.net.httpserver.HttpServer;
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskKey;
+import model.TaskPrio;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sends requests to a running server over HTTP and checks the status codes and JSON bodies of
+ * the answers, for the resources, paging, claims and errors, also while a body is streamed.
+ */
+class ProjectsHttpServerTest {
+    private ProjectsManager manager;
+    private ProjectsHttpServer server;
+
+    @BeforeEach
+    void start() throws IOException {
+        manager = new ProjectsManager();
+        server = ProjectsHttpServer.start(manager, new InetSocketAddress("localhost", 0));
+    }
+
+    @AfterEach
+    void stop() {
+        server.close();
+    }
+
+    @Test
+    void projectsAndTasksAreAddedAndFound() throws IOException {
+        Response added = request("POST", "/projects", "{\"title\":\"Website\",\"description\":\"Relaunch\"}");
+        assertEquals(201, added.status);
+        assertTrue(added.body.contains("\"title\":\"Website\""), added.body);
+        Project project = manager.findProjects("Website").get(0);
+
+        assertEquals(201, request("POST", "/projects/" + project.getId() + "/tasks",
+                "{\"description\":\"Write the text\",\"prio\":\"HIGH\"}").status);
+        assertEquals(201, request("POST", "/projects/" + project.getId() + "/tasks",
+                "{\"description\":\"Pick the colours\",\"prio\":\"LOW\"}").status);
+        assertEquals(1, project.getTaskCount(TaskPrio.HIGH));
+
+        Response high = request("GET", "/projects/" + project.getId() + "/tasks?prio=HIGH", null);
+        assertEquals(200, high.status);
+        assertTrue(high.body.startsWith("[{") && high.body.endsWith("}]"), high.body);
+        assertTrue(high.body.contains("Write the text"));
+        assertFalse(high.body.contains("Pick the colours"));
+
+        assertEquals(409, request("POST", "/projects", "{\"title\":\"Website\"}").status);
+        assertEquals(404, request("GET", "/projects/999", null).status);
+        assertEquals(400, request("POST", "/projects/" + project.getId() + "/tasks",
+                "{\"description\":\"Bad\",\"prio\":\"URGENT\"}").status);
+        assertEquals(405, request("PUT", "/projects/" + project.getId(), "{}").status);
+    }
+
+    @Test
+    void updateChangesAllFieldsOrNone() throws IOException {
+        Project project = manager.addProject("Updated", "");
+        Task task = project.addTask("Change me", TaskPrio.LOW);
+        String path = "/projects/" + project.getId() + "/tasks/" + task.getId();
+
+        assertEquals(400, request("PATCH", path, "{\"prio\":\"HIGH\",\"state\":\"FINISHED\"}").status);
+        assertEquals(TaskPrio.LOW, task.getPrio());
+
+        Response updated = request("PATCH", path, "{\"prio\":\"HIGH\",\"state\":\"DONE\",\"takenBy\":\"anna\"}");
+        assertEquals(200, updated.status, updated.body);
+        assertEquals(TaskPrio.HIGH, task.getPrio());
+        assertEquals("anna", task.getTakenBy());
+
+        assertEquals(204, request("DELETE", path, null).status);
+        assertEquals(404, request("GET", path, null).status);
+    }
+
+    @Test
+    void lostClaimAnswersTheOwner() throws IOException {
+        Project project = manager.addProject("Claimed", "");
+        Task task = project.addTask("Wanted", TaskPrio.HIGH);
+        String path = "/projects/" + project.getId() + "/tasks/" + task.getId() + "/claim";
+
+        assertEquals(200, request("POST", path, "{\"user\":\"anna\"}").status);
+        Response lost = request("POST", path, "{\"user\":\"ben\"}");
+        assertEquals(409, lost.status);
+        assertTrue(lost.body.contains("\"takenBy\":\"anna\""), lost.body);
+
+        project.addTask("Also wanted", TaskPrio.HIGH);
+        project.addTask("Not wanted", TaskPrio.LOW);
+        Response claimed = request("POST", "/projects/" + project.getId() + "/claims",
+                "{\"user\":\"ben\",\"prio\":\"HIGH\",\"count\":5}");
+        assertEquals(200, claimed.status);
+        assertTrue(claimed.body.contains("Also wanted") && !claimed.body.contains("Not wanted"), claimed.body);
+        assertEquals(400, request("POST", "/projects/" + project.getId() + "/claims",
+                "{\"user\":\"ben\",\"prio\":\"HIGH\",\"count\":0}").status);
+    }
+
+    @Test
+    void pagesLinkToTheNextOne() throws IOException {
+        Project project = manager.addProject("Paged", "");
+        for (int i = 0; i < 25; i++) {
+            project.addTask(String.format("Task %02d", i), TaskPrio.MEDIUM);
+        }
+        String path = "/projects/" + project.getId() + "/tasks?limit=10";
+        int pages = 0;
+        int tasks = 0;
+        String after = null;
+        do {
+            Response page = request("GET", after == null ? path : path + "&after=" + after, null);
+            assertEquals(200, page.status);
+            tasks += page.body.split("\"id\":", -1).length - 1;
+            after = page.nextAfter;
+            pages++;
+        } while (after != null);
+        assertEquals(3, pages);
+        assertEquals(25, tasks);
+
+        assertEquals(400, request("GET", path + "&after=nonsense", null).status);
+        assertEquals(400, request("GET", "/projects/" + project.getId() + "/tasks?limit=0", null).status);
+    }
+
+    @Test
+    void searchCannotBePaged() throws IOException {
+        Project project = manager.addProject("Searched", "");
+        Task task = project.addTask("Find the needle", TaskPrio.MEDIUM);
+        project.addTask("Hay", TaskPrio.MEDIUM);
+        String tasks = "/projects/" + project.getId() + "/tasks";
+
+        Response found = request("GET", tasks + "?q=needle", null);
+        assertEquals(200, found.status);
+        assertTrue(found.body.contains("Find the needle") && !found.body.contains("Hay"), found.body);
+
+        String after = URLEncoder.encode(TaskKey.of(task).encode(), StandardCharsets.UTF_8);
+        assertEquals(400, request("GET", tasks + "?q=needle&after=" + after, null).status);
+        assertEquals(400, request("GET", "/projects?q=Searched&afterId=0", null).status);
+    }
+
+    @Test
+    void failureWhileStreamingEndsTheBody() throws IOException {
+        Project project = manager.addProject("Streamed", "");
+        List<Task> tasks = List.of(project.addTask("First", TaskPrio.LOW), project.addTask("Second", TaskPrio.LOW));
+        HttpServer failing = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        AtomicReference<Exception> escaped = new AtomicReference<>();
+        failing.createContext("/", exchange -> {
+            try {
+                ProjectsHttpServer.respond(exchange, () -> {
+                    exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+                    ProjectsHttpServer.streamTasks(exchange, failAfter(tasks));
+                });
+            } catch (IOException | RuntimeException e) {
+                // such as sending the headers of an error response after those of the body
+                escaped.set(e);
+                throw e;
+            }
+        });
+        failing.start();
+        try {
+            URI uri = URI.create("http://localhost:" + failing.getAddress().getPort() + "/");
+            HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+            assertEquals(200, connection.getResponseCode());
+            String body;
+            try (InputStream in = connection.getInputStream()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                body = null; // the connection may also be cut before the end of the body
+            }
+            if (body != null) {
+                assertTrue(body.startsWith("[{") && body.contains("Second"), body);
+                assertFalse(body.endsWith("]"), "a cut off body must not look complete");
+            }
+        } finally {
+            failing.stop(0);
+        }
+        assertNull(escaped.get());
+        // the server goes on serving
+        assertEquals(200, request("GET", "/projects/" + project.getId() + "/tasks", null).status);
+    }
+
+    /**
+     * @return An iterator over the tasks that fails when they run out, as a failing index would.
+     */
+    private static Iterator<Task> failAfter(List<Task> tasks) {
+        Iterator<Task> iterator = tasks.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                if (!iterator.hasNext()) {
+                    throw new IllegalStateException("Index broken");
+                }
+                return true;
+            }
+
+            @Override
+            public Task next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return iterator.next();
+            }
+        };
+    }
+
+    private Response request(String method, String path, String body) throws IOException {
+        if (method.equals("PATCH")) {
+            return patch(path, body);
+        }
+        URI uri = URI.create("http://localhost:" + server.getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        String text = in == null ? "" : new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        if (in != null) {
+            in.close();
+        }
+        return new Response(status, text, connection.getHeaderField(ProjectsHttpServer.NEXT_PAGE_HEADER));
+    }
+
+    /**
+     * Sends a PATCH request, which {@link HttpURLConnection} does not support, on a socket of its own.
+     */
+    private Response patch(String path, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("PATCH " + path + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n"
+                    + "Content-Type: application/json\r\nContent-Length: " + bytes.length + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.write(bytes);
+            out.flush();
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            int headersEnd = response.indexOf("\r\n\r\n");
+            assertTrue(headersEnd > 0, response);
+            return new Response(Integer.parseInt(response.substring(9, 12)), response.substring(headersEnd + 4), null);
+        }
+    }
+
+    private record Response(int status, String body, String nextAfter) {}
+}
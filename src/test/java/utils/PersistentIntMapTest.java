@@ -0,0 +1,231 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Changes maps one key at a time and through builders, and checks them against a
+ * {@link TreeMap}: their values, their order, and that the versions they came from stay as they were.
+ */
+class PersistentIntMapTest {
+    /**
+     * Keys in every level of the trie, from the first slot to the largest key there is.
+     */
+    private static final int[] KEYS = {0, 1, 31, 32, 33, 1023, 1024, 1025, 32767, 32768,
+            1 << 20, (1 << 25) + 7, 1 << 30, Integer.MAX_VALUE - 1, Integer.MAX_VALUE};
+
+    @Test
+    void oldVersionsStayAsTheyWere() {
+        PersistentIntMap<String> empty = PersistentIntMap.empty();
+        PersistentIntMap<String> one = empty.with(5, "five");
+        PersistentIntMap<String> two = one.with(1000, "thousand");
+        PersistentIntMap<String> replaced = two.with(5, "FIVE");
+        PersistentIntMap<String> removed = replaced.without(1000);
+
+        assertTrue(empty.isEmpty());
+        assertNull(empty.get(5));
+        assertEquals(1, one.size());
+        assertEquals("five", one.get(5));
+        assertNull(one.get(1000));
+        assertEquals(2, two.size());
+        assertEquals("five", two.get(5));
+        assertEquals("thousand", two.get(1000));
+        assertEquals(2, replaced.size());
+        assertEquals("FIVE", replaced.get(5));
+        assertEquals(List.of("FIVE"), new ArrayList<>(removed.values()));
+        assertEquals(List.of("five", "thousand"), new ArrayList<>(two.values()));
+    }
+
+    @Test
+    void removingAnAbsentKeyKeepsTheMap() {
+        PersistentIntMap<String> map = PersistentIntMap.<String>empty().with(3, "three");
+        assertSame(map, map.without(4));
+        assertSame(map, map.without(1 << 20));
+        assertSame(map, map.without(-1));
+    }
+
+    @Test
+    void valuesAreInKeyOrderOnEveryLevel() {
+        PersistentIntMap<Integer> map = PersistentIntMap.empty();
+        for (int i = KEYS.length - 1; i >= 0; i--) {
+            map = map.with(KEYS[i], KEYS[i]);
+        }
+        List<Integer> expected = new ArrayList<>();
+        for (int key : KEYS) {
+            expected.add(key);
+            int value = map.get(key);
+            assertEquals(key, value);
+        }
+        assertEquals(expected, new ArrayList<>(map.values()));
+        assertEquals(expected, List.of(map.values().toArray()));
+        assertEquals(KEYS.length, map.size());
+    }
+
+    @Test
+    void valuesFromStartAtTheFirstKeyNotBelow() {
+        PersistentIntMap<Integer> map = PersistentIntMap.empty();
+        for (int key : KEYS) {
+            map = map.with(key, key);
+        }
+        for (int from : new int[]{-5, 0, 2, 32, 34, 1000, 1024, 40000, (1 << 25) + 8, Integer.MAX_VALUE}) {
+            List<Integer> expected = new ArrayList<>();
+            for (int key : KEYS) {
+                if (key >= from) {
+                    expected.add(key);
+                }
+            }
+            assertEquals(expected, list(map.valuesFrom(from)), "from " + from);
+        }
+
+        PersistentIntMap<Integer> small = PersistentIntMap.<Integer>empty().with(1, 1).with(40, 40);
+        assertEquals(List.of(), list(small.valuesFrom(41)));
+        assertEquals(List.of(), list(small.valuesFrom(1 << 20)));
+        assertEquals(List.of(), list(small.valuesFrom(Integer.MAX_VALUE)));
+        Iterator<Integer> done = small.valuesFrom(100);
+        assertFalse(done.hasNext());
+        assertThrows(NoSuchElementException.class, done::next);
+    }
+
+    @Test
+    void removingEveryKeyLeavesAnEmptyMap() {
+        PersistentIntMap<Integer> map = PersistentIntMap.empty();
+        for (int key : KEYS) {
+            map = map.with(key, key);
+        }
+        PersistentIntMap<Integer> full = map;
+        for (int key : KEYS) {
+            map = map.without(key);
+        }
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.size());
+        assertEquals(List.of(), new ArrayList<>(map.values()));
+        assertFalse(map.valuesFrom(0).hasNext());
+        assertEquals(KEYS.length, full.size());
+
+        // the emptied map grows again like a new one
+        map = map.with(7, 7).with(1 << 30, 1 << 30);
+        assertEquals(List.of(7, 1 << 30), new ArrayList<>(map.values()));
+    }
+
+    @Test
+    void invalidEntriesAreRejected() {
+        PersistentIntMap<String> map = PersistentIntMap.empty();
+        assertThrows(IllegalArgumentException.class, () -> map.with(-1, "negative"));
+        assertThrows(IllegalArgumentException.class, () -> map.with(Integer.MIN_VALUE, "negative"));
+        assertThrows(IllegalArgumentException.class, () -> map.with(1, null));
+        PersistentIntMap.Builder<String> builder = map.builder();
+        assertThrows(IllegalArgumentException.class, () -> builder.put(-1, "negative"));
+        assertThrows(IllegalArgumentException.class, () -> builder.put(1, null));
+        assertTrue(builder.build().isEmpty());
+    }
+
+    @Test
+    void builderLeavesItsSourceAndBuiltMapsAlone() {
+        PersistentIntMap<String> source = PersistentIntMap.<String>empty().with(1, "one").with(64, "sixty-four");
+        PersistentIntMap.Builder<String> builder = source.builder();
+        builder.put(2, "two").put(64, "SIXTY-FOUR").remove(1);
+        assertEquals(2, builder.size());
+        assertEquals("two", builder.get(2));
+        assertNull(builder.get(1));
+
+        PersistentIntMap<String> first = builder.build();
+        builder.put(3, "three").put(2, "TWO").remove(64).put(1 << 20, "million");
+        PersistentIntMap<String> second = builder.build();
+
+        assertEquals(List.of("one", "sixty-four"), new ArrayList<>(source.values()));
+        assertEquals(List.of("two", "SIXTY-FOUR"), new ArrayList<>(first.values()));
+        assertEquals(List.of("TWO", "three", "million"), new ArrayList<>(second.values()));
+        assertEquals(2, first.size());
+        assertEquals(3, second.size());
+    }
+
+    @Test
+    void randomChangesMatchATreeMap() {
+        Random random = new Random(42);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        PersistentIntMap<Integer> map = PersistentIntMap.empty();
+        List<PersistentIntMap<Integer>> versions = new ArrayList<>();
+        List<TreeMap<Integer, Integer>> expectedVersions = new ArrayList<>();
+        for (int step = 0; step < 20000; step++) {
+            // mostly small keys, which share nodes, and now and then a large one
+            int key = random.nextInt(10) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                Integer first = expected.ceilingKey(key);
+                int removed = first == null ? key : first;
+                expected.remove(removed);
+                map = map.without(removed);
+            } else {
+                expected.put(key, step);
+                map = map.with(key, step);
+            }
+            if (step % 1000 == 0) {
+                versions.add(map);
+                expectedVersions.add(new TreeMap<>(expected));
+            }
+        }
+        assertMatches(expected, map);
+        for (int i = 0; i < versions.size(); i++) {
+            assertMatches(expectedVersions.get(i), versions.get(i));
+        }
+    }
+
+    @Test
+    void randomBuilderChangesMatchATreeMap() {
+        Random random = new Random(7);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        PersistentIntMap.Builder<Integer> builder = PersistentIntMap.<Integer>empty().builder();
+        PersistentIntMap<Integer> built = builder.build();
+        TreeMap<Integer, Integer> expectedBuilt = new TreeMap<>();
+        for (int step = 0; step < 20000; step++) {
+            int key = random.nextInt(10) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                builder.remove(key);
+            } else {
+                expected.put(key, step);
+                builder.put(key, step);
+            }
+            assertEquals(expected.size(), builder.size());
+            if (step % 500 == 0) {
+                // the map built before must not see the changes made since
+                assertMatches(expectedBuilt, built);
+                built = builder.build();
+                expectedBuilt = new TreeMap<>(expected);
+            }
+        }
+        assertMatches(expectedBuilt, built);
+        assertMatches(expected, builder.build());
+    }
+
+    private static void assertMatches(TreeMap<Integer, Integer> expected, PersistentIntMap<Integer> map) {
+        assertEquals(expected.size(), map.size());
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(map.values()));
+        assertEquals(new ArrayList<>(expected.values()), List.of(map.values().toArray()));
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        for (int from : new int[]{0, 1, 31, 32, 500, 1999, 2000, 1 << 16, 1 << 28}) {
+            assertEquals(new ArrayList<>(expected.tailMap(from).values()), list(map.valuesFrom(from)), "from " + from);
+        }
+    }
+
+    private static <V> List<V> list(Iterator<V> values) {
+        List<V> list = new ArrayList<>();
+        values.forEachRemaining(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,153 @@
+package utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Indexes short texts and checks which of them a query finds and how they are ranked, for
+ * exact and prefix terms, filters and limits, and against checking every text.
+ */
+class TextIndexTest {
+    private final TextIndex<String> index = new TextIndex<>(Comparator.naturalOrder());
+
+    @Test
+    void textIsSplitIntoLowerCaseWords() {
+        assertEquals(List.of("e", "mail", "an", "jürgen", "2024"), TextIndex.tokens("E-Mail an Jürgen, 2024!"));
+        assertEquals(List.of(), TextIndex.tokens(" -- "));
+    }
+
+    @Test
+    void allTermsMustMatch() {
+        add(1, "release notes");
+        add(2, "release the notes draft");
+        add(3, "release plan");
+        add(4, "notes");
+
+        assertEquals(List.of("release notes", "release the notes draft"), sorted(index.search("notes release", 10)));
+        assertEquals(List.of(), index.search("release missing", 10));
+        assertEquals(List.of("release notes", "release plan", "release the notes draft"),
+                sorted(index.search("RELEASE", 10)));
+        assertEquals(List.of(), index.search("  ", 10));
+        assertEquals(List.of(), index.search("release", 0));
+    }
+
+    @Test
+    void prefixTermsMatchLongerWords() {
+        add(1, "deploy the server");
+        add(2, "deployment script");
+        add(3, "dep");
+        add(4, "e-mail template");
+
+        assertEquals(List.of("dep", "deploy the server", "deployment script"), sorted(index.search("dep*", 10)));
+        assertEquals(List.of("deploy the server", "deployment script"), sorted(index.search("deploy*", 10)));
+        assertEquals(List.of("deploy the server"), index.search("deploy", 10));
+        // only the last word of a hyphenated term is a prefix
+        assertEquals(List.of("e-mail template"), index.search("e-ma*", 10));
+        assertEquals(List.of(), index.search("e-ma", 10));
+    }
+
+    @Test
+    void rareAndRepeatedWordsRankFirst() {
+        add(1, "bug in the login");
+        add(2, "bug bug bug in the report");
+        add(3, "bug in the export");
+        add(4, "login page");
+        add(5, "reporting");
+        add(6, "logs");
+
+        assertEquals("bug bug bug in the report", index.search("bug", 10).get(0));
+        // the exact word counts more than a longer word with the prefix
+        assertEquals(List.of("bug bug bug in the report", "reporting"), index.search("report*", 10));
+        // "logs" is rarer than "login", so it ranks first
+        assertEquals(List.of("logs", "bug in the login", "login page"), index.search("lo*", 10));
+        // equal scores are ordered by the given order
+        assertEquals(List.of("bug bug bug in the report", "bug in the export", "bug in the login"),
+                index.search("the in", 10));
+    }
+
+    @Test
+    void filterIsAppliedBeforeTheLimit() {
+        for (int i = 0; i < 20; i++) {
+            add(i, "task " + (char) ('a' + i));
+        }
+        assertEquals(List.of("task a", "task b", "task c"), index.search("task", 3));
+        assertEquals(List.of("task p", "task q", "task r"), index.search("task", text -> text.compareTo("task p") >= 0, 3));
+        assertEquals(List.of(), index.search("task", text -> false, 3));
+    }
+
+    @Test
+    void removedTextsAreNotFound() {
+        add(1, "old name");
+        add(2, "old school");
+        index.remove(1, "old name");
+        assertEquals(1, index.size());
+        assertEquals(List.of("old school"), index.search("old", 10));
+        assertEquals(List.of(), index.search("name", 10));
+        assertEquals(List.of(), index.search("na*", 10));
+        // removing what is not there changes nothing
+        index.remove(1, "old name");
+        index.remove(7, "school");
+        assertEquals(1, index.size());
+        index.clear();
+        assertEquals(List.of(), index.search("old", 10));
+    }
+
+    @Test
+    void searchesFindWhatCheckingEveryTextFinds() {
+        String[] words = {"alpha", "alps", "beta", "bet", "gamma", "game", "delta"};
+        Random random = new Random(13);
+        Map<Integer, String> texts = new HashMap<>();
+        for (int id = 0; id < 400; id++) {
+            StringBuilder text = new StringBuilder("t" + id);
+            for (int i = random.nextInt(4); i >= 0; i--) {
+                text.append(' ').append(words[random.nextInt(words.length)]);
+            }
+            texts.put(id, text.toString());
+            add(id, text.toString());
+        }
+        for (int id = 0; id < 400; id += 3) {
+            index.remove(id, texts.remove(id));
+        }
+        for (String query : List.of("alpha", "alp*", "bet", "bet* gam*", "game delta", "a*", "delta alps beta")) {
+            List<String> expected = new ArrayList<>();
+            for (String text : texts.values()) {
+                if (matchesAll(text, query)) {
+                    expected.add(text);
+                }
+            }
+            List<String> found = index.search(query, 1000);
+            assertEquals(sorted(expected), sorted(found), query);
+            assertEquals(found.subList(0, Math.min(5, found.size())), index.search(query, 5), query);
+        }
+    }
+
+    private static boolean matchesAll(String text, String query) {
+        List<String> tokens = TextIndex.tokens(text);
+        for (String term : query.split(" ")) {
+            boolean prefix = term.endsWith("*");
+            String word = prefix ? term.substring(0, term.length() - 1) : term;
+            if (tokens.stream().noneMatch(token -> prefix ? token.startsWith(word) : token.equals(word))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(int id, String text) {
+        index.add(id, text, text);
+    }
+
+    private static List<String> sorted(List<String> texts) {
+        List<String> copy = new ArrayList<>(texts);
+        copy.sort(Comparator.naturalOrder());
+        return copy;
+    }
+}